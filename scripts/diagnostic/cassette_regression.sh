@@ -0,0 +1,92 @@
+#!/usr/bin/env bash
+
+# Deterministic performance regression run over every agent pattern, driven by an LLM cassette.
+#
+#   record: runs one request per pattern against the live provider, writing target/cassettes/regression.jsonl
+#           and the wall time of each run to target/cassettes/baseline.tsv
+#   replay: reruns the same requests answered from the cassette (no provider or API key needed) and fails when a
+#           pattern takes more than MAX_REGRESSION percent (default 20) longer than its baseline
+#
+#   ./scripts/diagnostic/cassette_regression.sh record
+#   LATENCY_SCALE=0 ./scripts/diagnostic/cassette_regression.sh replay
+#
+# LATENCY_SCALE (default 1.0) scales the recorded model latencies on replay; 0 measures only the application's own
+# overhead, in which case the baseline should be a replay with LATENCY_SCALE=0 as well (BASELINE=replay).
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.." || exit 1
+
+mode="${1:-replay}"
+cassette_dir=target/cassettes
+cassette="$cassette_dir/regression.jsonl"
+baseline="$cassette_dir/baseline.tsv"
+max_regression="${MAX_REGRESSION:-20}"
+
+commands=(
+    "intent-hierarchical 'Tell me a joke about Java'"
+    "intent-state-pattern 'Show me a banana and tell me where bananas come from'"
+    "intent-scatter-gather 'Give me a fortune and a joke'"
+    "intent-orchestrated 'What is the capital of Portugal?'"
+    "intent-chatbot 'Show me a simple banana'"
+)
+
+case "$mode" in
+    record) cassette_args=(--demo.cassette.mode=record --demo.cassette.overwrite=true) ;;
+    replay)
+        if [ ! -f "$cassette" ] || [ ! -f "$baseline" ]; then
+            echo "ERROR: no recorded run in $cassette_dir; run '$0 record' first"
+            exit 1
+        fi
+        cassette_args=(--demo.cassette.mode=replay "--demo.cassette.latency-scale=${LATENCY_SCALE:-1.0}")
+        ;;
+    *)
+        echo "Usage: $0 record|replay"
+        exit 1
+        ;;
+esac
+
+echo "Building jar..."
+./mvnw -q -Dmaven.test.skip=true package
+jar=$(ls target/*.jar | head -1)
+mkdir -p "$cassette_dir"
+
+results=$(mktemp)
+for i in "${!commands[@]}"; do
+    # Each pattern gets its own cassette section: records append to per-pattern files merged below
+    part="$cassette_dir/part-$i.jsonl"
+    [ "$mode" = replay ] && part="$cassette"
+    start=$(date +%s.%N)
+    java --enable-preview -jar "$jar" --demo.warm-pool.enabled=false --server.port=0 \
+        "${cassette_args[@]}" "--demo.cassette.file=$part" "${commands[$i]}" > /dev/null
+    end=$(date +%s.%N)
+    printf '%s\t%s\n' "${commands[$i]%% *}" "$(echo "$end - $start" | bc)" >> "$results"
+done
+
+if [ "$mode" = record ] || [ "${BASELINE:-}" = replay ]; then
+    if [ "$mode" = record ]; then
+        cat "$cassette_dir"/part-*.jsonl > "$cassette" && rm -f "$cassette_dir"/part-*.jsonl
+    fi
+    mv "$results" "$baseline"
+    echo "Baseline written to $baseline"
+    column -t "$baseline"
+    exit 0
+fi
+
+echo
+printf '%-24s %10s %10s %8s\n' "pattern" "baseline_s" "replay_s" "change"
+failed=0
+while IFS=$'\t' read -r pattern seconds; do
+    base=$(awk -F'\t' -v p="$pattern" '$1 == p { print $2 }' "$baseline")
+    change=$(echo "scale=1; ($seconds - $base) * 100 / $base" | bc)
+    printf '%-24s %10.2f %10.2f %7s%%\n' "$pattern" "$base" "$seconds" "$change"
+    if [ "$(echo "$change > $max_regression" | bc)" = 1 ]; then
+        failed=1
+    fi
+done < "$results"
+rm -f "$results"
+
+if [ "$failed" = 1 ]; then
+    echo "FAIL: at least one pattern regressed by more than ${max_regression}%"
+    exit 1
+fi
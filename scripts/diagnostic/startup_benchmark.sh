@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+
+# Compares the plain jar against the fast-startup build (Spring AOT + class-data archive).
+# Each run starts the shell non-interactively with a single built-in command and exits, so wall time is
+# time-to-first-command; max RSS comes from GNU time. Reports the median of RUNS runs (default 5).
+#
+#   ./scripts/diagnostic/startup_benchmark.sh
+#   RUNS=10 CACHE=aot COMMAND=version ./scripts/diagnostic/startup_benchmark.sh
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.." || exit 1
+
+runs="${RUNS:-5}"
+command="${COMMAND:-help}"
+baseline_dir=target/startup-baseline
+# Keep the background warm-pool refill and the HTTP port out of the measurement
+app_args=(--demo.warm-pool.enabled=false --server.port=0 "$command")
+
+if [ ! -x /usr/bin/time ]; then
+    echo "ERROR: GNU time (/usr/bin/time) is required"
+    exit 1
+fi
+
+echo "Building baseline jar..."
+./mvnw -q -Dmaven.test.skip=true clean package
+rm -rf "$baseline_dir" && mkdir -p "$baseline_dir"
+cp "$(ls target/*.jar | head -1)" "$baseline_dir/application.jar"
+
+echo "Building fast-startup jar and ${CACHE:-cds} archive..."
+./scripts/fast-startup.sh build > /dev/null
+
+# measure <label> <java args...>: prints "<label> <median seconds> <median max RSS MB>"
+measure() {
+    local label=$1; shift
+    local times=() rss=() log
+    log=$(mktemp)
+    for _ in $(seq "$runs"); do
+        /usr/bin/time -v "$@" "${app_args[@]}" > /dev/null 2> "$log"
+        times+=("$(awk -F': ' '/Elapsed \(wall clock\)/ { n = split($2, p, ":"); s = 0; for (i = 1; i <= n; i++) s = s * 60 + p[i]; print s }' "$log")")
+        rss+=("$(awk -F': ' '/Maximum resident set size/ { printf "%.0f", $2 / 1024 }' "$log")")
+    done
+    rm -f "$log"
+    printf '%-14s %10s %12s\n' "$label" \
+        "$(printf '%s\n' "${times[@]}" | sort -n | awk '{ a[NR] = $1 } END { print a[int((NR + 1) / 2)] }')" \
+        "$(printf '%s\n' "${rss[@]}" | sort -n | awk '{ a[NR] = $1 } END { print a[int((NR + 1) / 2)] }')"
+}
+
+case "${CACHE:-cds}" in
+    cds) cache_opt="-XX:SharedArchiveFile=target/fast-startup/application.jsa" ;;
+    aot) cache_opt="-XX:AOTCache=target/fast-startup/application.aot" ;;
+esac
+
+echo
+printf '%-14s %10s %12s\n' "build" "startup_s" "max_rss_mb"
+measure baseline java --enable-preview -jar "$baseline_dir/application.jar"
+measure aot java --enable-preview -Dspring.aot.enabled=true -jar target/fast-startup/*.jar
+measure aot+cache java --enable-preview "$cache_opt" -Dspring.aot.enabled=true -jar target/fast-startup/*.jar
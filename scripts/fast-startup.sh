@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+
+# Builds the AOT-processed jar (fast-startup profile), extracts it, records a class-data archive from a
+# training run that exits once the context has refreshed, then starts the shell with both enabled.
+#
+#   ./scripts/fast-startup.sh            build if needed, then run the shell
+#   ./scripts/fast-startup.sh build      (re)build jar and archive only
+#   ./scripts/fast-startup.sh run [args] run from the existing build
+#
+# CACHE=cds (default) records an AppCDS archive; CACHE=aot records a JDK 24+ AOT cache instead.
+
+set -euo pipefail
+
+script_dir="$(cd "$(dirname "$0")" && pwd)"
+project_dir="$(cd "$script_dir/.." && pwd)"
+out_dir="$project_dir/target/fast-startup"
+cache="${CACHE:-cds}"
+
+case "$cache" in
+    cds) archive="$out_dir/application.jsa"
+         train_opts="-XX:ArchiveClassesAtExit=$archive"
+         run_opts="-XX:SharedArchiveFile=$archive" ;;
+    aot) archive="$out_dir/application.aot"
+         train_opts="-XX:AOTCacheOutput=$archive"
+         run_opts="-XX:AOTCache=$archive" ;;
+    *)   echo "ERROR: CACHE must be cds or aot"; exit 1 ;;
+esac
+
+build() {
+    "$project_dir/mvnw" -q -f "$project_dir/pom.xml" -Pfast-startup -Dmaven.test.skip=true clean package
+    local jar
+    jar=$(ls "$project_dir"/target/*.jar | grep -v -- '-plain' | head -1)
+    java -Djarmode=tools -jar "$jar" extract --force --destination "$out_dir"
+    # Training run: loads every class needed up to a refreshed context, then exits
+    java --enable-preview $train_opts -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+        -jar "$out_dir/$(basename "$jar")"
+}
+
+run() {
+    java --enable-preview $run_opts -Dspring.aot.enabled=true -jar "$out_dir"/*.jar "$@"
+}
+
+command="${1:-}"
+case "$command" in
+    build) build ;;
+    run)   shift; run "$@" ;;
+    *)     [ -f "$archive" ] || build
+           run "$@" ;;
+esac
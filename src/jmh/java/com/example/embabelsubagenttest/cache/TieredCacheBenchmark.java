@@ -0,0 +1,86 @@
+package com.example.embabelsubagenttest.cache;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stress test for {@link TieredCache} single-flight: 32 threads read random keys through several
+ * caches standing in for nodes, all over one {@link LocalSharedCacheTier}, with a slow loader.
+ * Teardown fails the run if any key was loaded more than once across the "cluster". The score is
+ * the read cost, dominated by near-cache hits once every key is loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class TieredCacheBenchmark {
+
+    private static final int KEYS = 64;
+
+    @Param({"1", "4"})
+    public int nodes;
+
+    private final List<TieredCache<String>> caches = new ArrayList<>();
+    private final AtomicIntegerArray loads = new AtomicIntegerArray(KEYS);
+
+    @Setup
+    public void setUp() {
+        CacheProperties properties = new CacheProperties("local", KEYS * 2, Map.of(), Duration.ofHours(1),
+                Duration.ofHours(1), 10_000, Duration.ofSeconds(30), Duration.ofMillis(5));
+        SharedCacheTier shared = new LocalSharedCacheTier(properties);
+        LiveStats stats = new LiveStats();
+        for (int i = 0; i < nodes; i++) {
+            caches.add(new TieredCache<>("bench", String.class, KEYS * 2, shared, properties,
+                    stats.cache("bench-" + i + ".near"), stats.cache("bench-" + i + ".shared")));
+        }
+    }
+
+    @TearDown
+    public void verify() {
+        for (int key = 0; key < KEYS; key++) {
+            if (loads.get(key) > 1) {
+                throw new IllegalStateException("key " + key + " was loaded " + loads.get(key) + " times");
+            }
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(KEYS);
+        return caches.get(random.nextInt(nodes)).get("key-" + key, () -> load(key));
+    }
+
+    private String load(int key) {
+        loads.incrementAndGet(key);
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "value-" + key;
+    }
+}
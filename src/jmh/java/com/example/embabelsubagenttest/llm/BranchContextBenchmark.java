@@ -0,0 +1,105 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.service.AsyncSteps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stress test for {@link BranchContext}: many request threads at once, each forking branches onto
+ * a shared executor that record model calls directly and across an {@link AsyncSteps} thread hop.
+ * Every operation checks that each branch saw exactly its own calls and that joining rolled the
+ * total into the request's branch; a lost or misattributed call fails the run. The score is the
+ * overhead of forking and joining without any model latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class BranchContextBenchmark {
+
+    private static final int DIRECT_CALLS = 8;
+    private static final int ASYNC_CALLS = 2;
+
+    @Param({"3", "32"})
+    public int branches;
+
+    private ExecutorService executor;
+    private Ai ai;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        ai = mock(Ai.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public BranchContext.ForkUsage forkAndJoin() {
+        BranchContext request = BranchContext.fork("request", () -> ai).branch("root");
+        BranchContext.ForkUsage usage = request.run(_ -> {
+            BranchContext.Fork fork = BranchContext.fork("fan-out", () -> ai);
+            List<CompletableFuture<Void>> tasks = IntStream.range(0, branches)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(fork.branch("branch-" + i).bind(_ -> callModel()), executor))
+                    .toList();
+            tasks.forEach(CompletableFuture::join);
+            return fork.join();
+        });
+        verify(usage, request.usage());
+        return usage;
+    }
+
+    private static Void callModel() {
+        for (int i = 0; i < DIRECT_CALLS; i++) {
+            BranchContext.record(1);
+        }
+        AsyncSteps steps = new AsyncSteps();
+        for (int i = 0; i < ASYNC_CALLS; i++) {
+            steps.run(() -> {
+                BranchContext.record(1);
+                return null;
+            }).join();
+        }
+        return null;
+    }
+
+    private void verify(BranchContext.ForkUsage usage, BranchContext.Usage request) {
+        long perBranch = DIRECT_CALLS + ASYNC_CALLS;
+        for (BranchContext.Usage branch : usage.branches()) {
+            if (branch.llmCalls() != perBranch) {
+                throw new IllegalStateException(branch + " recorded " + branch.llmCalls() + " calls, expected " + perBranch);
+            }
+        }
+        if (usage.branches().size() != branches || usage.total().llmCalls() != branches * perBranch
+                || request.llmCalls() != usage.total().llmCalls()) {
+            throw new IllegalStateException("Join lost calls: " + usage + ", request " + request);
+        }
+    }
+}
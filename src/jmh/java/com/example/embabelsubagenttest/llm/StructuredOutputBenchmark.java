@@ -0,0 +1,82 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.example.embabelsubagenttest.agent.chatbot.ChatbotTypes.ChatIntent;
+import com.example.embabelsubagenttest.agent.hierarchical.HierarchicalIntentAgent.UserIntent;
+import com.example.embabelsubagenttest.service.JokeService.JokeStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.converter.BeanOutputConverter;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call schema derivation and parsing, as {@code creating(Type.class)} does it, against the
+ * specs precomputed by {@link StructuredOutputRegistry}. Run with {@code -prof gc} to compare
+ * allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StructuredOutputBenchmark {
+
+    private static final Map<String, Class<?>> TYPES = Map.of(
+            "UserIntent", UserIntent.class,
+            "ChatIntent", ChatIntent.class,
+            "JokeStyle", JokeStyle.class
+    );
+
+    private static final Map<String, String> RESPONSES = Map.of(
+            "UserIntent", """
+                    {"intent": "COMPOSITE",
+                     "commands": [{"description": "banana art"}, {"description": "dad joke"}],
+                     "queries": [{"question": "where do bananas come from"}]}""",
+            "ChatIntent", """
+                    {"intent": "SERVICES",
+                     "calls": [{"service": "bananaArt", "description": "a banana"},
+                               {"service": "joke", "description": "a dad joke about bananas"}]}""",
+            "JokeStyle", """
+                    {"domain": "JAVA", "format": "PUN"}"""
+    );
+
+    @Param({"UserIntent", "ChatIntent", "JokeStyle"})
+    public String type;
+
+    private Class<?> outputType;
+    private String response;
+    private StructuredOutputRegistry registry;
+
+    @Setup
+    public void setUp() {
+        outputType = TYPES.get(type);
+        response = RESPONSES.get(type);
+        registry = new StructuredOutputRegistry(LlmCalls.passThrough());
+    }
+
+    @Benchmark
+    public void perCall(Blackhole blackhole) {
+        var converter = new BeanOutputConverter<>(outputType);
+        blackhole.consume(converter.getFormat());
+        blackhole.consume(converter.convert(response));
+    }
+
+    @Benchmark
+    public void precomputed(Blackhole blackhole) throws Exception {
+        OutputSpec<?> spec = registry.spec(outputType);
+        blackhole.consume(spec.formatInstructions());
+        blackhole.consume(spec.read(response));
+    }
+}
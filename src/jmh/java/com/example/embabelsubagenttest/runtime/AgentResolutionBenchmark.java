@@ -0,0 +1,78 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.core.Agent;
+import com.embabel.agent.core.AgentPlatform;
+import com.example.embabelsubagenttest.agent.scattergather.ScatterGatherQueryAgent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-child-process agent lookup: the linear scan over {@code agents()} that the intent agents
+ * used to do, against {@link DeployedAgents}. Planning time itself is measured on live traffic
+ * by {@link PlanningMetrics} ({@code planner-stats} in the shell). Agents are Mockito mocks, so
+ * {@code getName()} costs more than on a real agent and the scan figure is an upper bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentResolutionBenchmark {
+
+    private static final int DEPLOYED_AGENTS = 20;
+
+    private AgentPlatform agentPlatform;
+    private DeployedAgents deployedAgents;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        List<Agent> agents = new ArrayList<>();
+        for (int i = 0; i < DEPLOYED_AGENTS - 1; i++) {
+            agents.add(agent("Agent" + i));
+        }
+        agents.add(agent(ScatterGatherQueryAgent.class.getSimpleName()));
+        agentPlatform = mock(AgentPlatform.class);
+        when(agentPlatform.agents()).thenReturn(agents);
+        ObjectProvider<AgentPlatform> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(agentPlatform);
+        deployedAgents = new DeployedAgents(provider);
+    }
+
+    @Benchmark
+    public Agent scan() {
+        String name = ScatterGatherQueryAgent.class.getSimpleName();
+        return agentPlatform.agents().stream()
+                .filter(a -> a.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Benchmark
+    public Agent cached() {
+        return deployedAgents.resolve(ScatterGatherQueryAgent.class);
+    }
+
+    private static Agent agent(String name) {
+        Agent agent = mock(Agent.class);
+        when(agent.getName()).thenReturn(name);
+        return agent;
+    }
+}
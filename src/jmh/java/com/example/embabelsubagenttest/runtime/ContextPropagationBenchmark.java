@@ -0,0 +1,74 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of carrying a {@link RequestContext} across an async hop. {@code capture*} isolate the
+ * wrapper on one thread (scoped-value read, rebinding and the three MDC entries); {@code hop*}
+ * put it next to what it rides on, a task handed to a virtual thread and joined. Run with
+ * {@code -prof gc} to see the allocation per capture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextPropagationBenchmark {
+
+    private final Supplier<Integer> task = () -> 42;
+
+    private RequestContext context;
+    private ExecutorService plain;
+    private ExecutorService propagating;
+
+    @Setup
+    public void setUp() {
+        context = RequestContext.start("bench", AgentPattern.ORCHESTRATED, Duration.ofMinutes(1));
+        plain = Executors.newVirtualThreadPerTaskExecutor();
+        propagating = ContextPropagatingExecutor.wrap(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @TearDown
+    public void tearDown() {
+        plain.shutdownNow();
+        propagating.shutdownNow();
+    }
+
+    @Benchmark
+    public Integer captureOutsideRequest() {
+        return ContextPropagatingExecutor.capture(task).get();
+    }
+
+    @Benchmark
+    public Integer captureInRequest() {
+        return context.call(() -> ContextPropagatingExecutor.capture(task)).get();
+    }
+
+    @Benchmark
+    public Integer hopPlain() {
+        return context.call(() -> CompletableFuture.supplyAsync(task, plain)).join();
+    }
+
+    @Benchmark
+    public Integer hopPropagating() {
+        return context.call(() -> CompletableFuture.supplyAsync(task, propagating)).join();
+    }
+}
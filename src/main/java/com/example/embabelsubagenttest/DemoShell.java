@@ -1,110 +1,83 @@
 package com.example.embabelsubagenttest;
 
-import com.embabel.agent.api.channel.MessageOutputChannelEvent;
-import com.embabel.agent.api.channel.OutputChannel;
-import com.embabel.agent.api.channel.OutputChannelEvent;
-import com.embabel.agent.api.identity.SimpleUser;
-import com.embabel.agent.api.identity.User;
-import com.embabel.agent.api.invocation.AgentInvocation;
-import com.embabel.agent.core.AgentPlatform;
-import com.embabel.agent.domain.io.UserInput;
-import com.embabel.chat.AssistantMessage;
-import com.embabel.chat.Chatbot;
-import com.embabel.chat.Message;
-import com.embabel.chat.UserMessage;
-import com.example.embabelsubagenttest.agent.hierarchical.HierarchicalIntentAgent;
-import com.example.embabelsubagenttest.agent.orchestrated.OrchestratedIntentAgent;
-import com.example.embabelsubagenttest.agent.scattergather.ScatterGatherIntentAgent;
-import com.example.embabelsubagenttest.agent.statepattern.StatePatternIntentAgent;
-import org.jspecify.annotations.NonNull;
+import com.example.embabelsubagenttest.runtime.ActivePatterns;
+import com.example.embabelsubagenttest.runtime.AdmissionRejectedException;
+import com.example.embabelsubagenttest.runtime.AgentPattern;
+import com.example.embabelsubagenttest.runtime.PatternRunner;
+import org.springframework.shell.Availability;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
-
-import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import org.springframework.shell.standard.ShellMethodAvailability;
 
 @ShellComponent
-record DemoShell(AgentPlatform agentPlatform, Chatbot chatbot) {
-
-    private static final User DEMO_USER = new SimpleUser(
-            "demo",
-            "Demo User",
-            "demo",
-            null
-    );
+record DemoShell(PatternRunner patternRunner, ActivePatterns activePatterns) {
 
     @ShellMethod("Hierarchical Intent (Main)")
     String intentHierarchical(final String content) {
-        HierarchicalIntentAgent.IntentAgentResponse response = AgentInvocation
-                .create(agentPlatform, HierarchicalIntentAgent.IntentAgentResponse.class)
-                .invoke(new UserInput(content));
-        return response.message();
+        return run(AgentPattern.HIERARCHICAL, content);
     }
 
     @ShellMethod("State Pattern Intent")
     String intentStatePattern(final String content) {
-        StatePatternIntentAgent.IntentAgentResponse response = AgentInvocation
-                .create(agentPlatform, StatePatternIntentAgent.IntentAgentResponse.class)
-                .invoke(new UserInput(content));
-        return response.message();
+        return run(AgentPattern.STATE_PATTERN, content);
     }
 
     @ShellMethod("Scatter Gather Intent (Parallel GOAP)")
     String intentScatterGather(final String content) {
-        ScatterGatherIntentAgent.IntentAgentResponse response = AgentInvocation
-                .create(agentPlatform, ScatterGatherIntentAgent.IntentAgentResponse.class)
-                .invoke(new UserInput(content));
-        return response.message();
+        return run(AgentPattern.SCATTER_GATHER, content);
     }
 
     @ShellMethod("Orchestrated Intent (Refactored)")
     String intentOrchestrated(final String content) {
-        OrchestratedIntentAgent.FinalResponse response = AgentInvocation
-                .create(agentPlatform, OrchestratedIntentAgent.FinalResponse.class)
-                .invoke(new UserInput(content));
-        return response.message();
+        return run(AgentPattern.ORCHESTRATED, content);
     }
 
     @ShellMethod("Chatbot single message (Utility AI) - For multi-turn, use the built-in 'chat' command")
     String intentChatbot(final String content) {
-        // Create a queue to receive responses
-        BlockingQueue<Message> responseQueue = new ArrayBlockingQueue<>(10);
-        OutputChannel outputChannel = new QueueingOutputChannel(responseQueue);
+        // Creates a new session for this single message and waits for the reply
+        return run(AgentPattern.CHATBOT, content);
+    }
 
-        // Create a new session for this single message
-        var session = chatbot.createSession(DEMO_USER, outputChannel, UUID.randomUUID().toString());
+    @ShellMethodAvailability("intent-hierarchical")
+    Availability hierarchicalAvailability() {
+        return availability(AgentPattern.HIERARCHICAL);
+    }
 
-        // Send a user message
-        session.onUserMessage(new UserMessage(content));
+    @ShellMethodAvailability("intent-state-pattern")
+    Availability statePatternAvailability() {
+        return availability(AgentPattern.STATE_PATTERN);
+    }
 
-        // Wait for response (with timeout)
-        try {
-            Message response = responseQueue.poll(60, TimeUnit.SECONDS);
-            if (response != null) {
-                return response.getContent();
-            } else {
-                return "Response timed out";
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return "Interrupted while waiting for response";
-        }
+    @ShellMethodAvailability("intent-scatter-gather")
+    Availability scatterGatherAvailability() {
+        return availability(AgentPattern.SCATTER_GATHER);
+    }
+
+    @ShellMethodAvailability("intent-orchestrated")
+    Availability orchestratedAvailability() {
+        return availability(AgentPattern.ORCHESTRATED);
+    }
+
+    @ShellMethodAvailability("intent-chatbot")
+    Availability chatbotAvailability() {
+        return availability(AgentPattern.CHATBOT);
+    }
+
+    private Availability availability(AgentPattern pattern) {
+        return activePatterns.isActive(pattern)
+                ? Availability.available()
+                : Availability.unavailable("the " + pattern.id() + " pattern is disabled (" + pattern.enabledProperty() + "=false)");
     }
 
     /**
-     * OutputChannel that queues assistant messages for retrieval.
+     * Runs a pattern through admission control, turning a shed request
+     * into an immediate answer rather than a long wait.
      */
-    private record QueueingOutputChannel(BlockingQueue<Message> queue) implements OutputChannel {
-        @Override
-        public void send(@NonNull OutputChannelEvent event) {
-            if (event instanceof MessageOutputChannelEvent msgEvent) {
-                Message msg = msgEvent.getMessage();
-                if (msg instanceof AssistantMessage) {
-                    final boolean _ = queue.offer(msg);
-                }
-            }
+    private String run(AgentPattern pattern, String content) {
+        try {
+            return patternRunner.run(pattern, content);
+        } catch (AdmissionRejectedException e) {
+            return e.getMessage();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.example.embabelsubagenttest;
+
+import com.example.embabelsubagenttest.load.Arrival;
+import com.example.embabelsubagenttest.load.LoadGenerator;
+import com.example.embabelsubagenttest.load.LoadPlan;
+import com.example.embabelsubagenttest.load.LoadReport;
+import com.example.embabelsubagenttest.load.Stage;
+import com.example.embabelsubagenttest.runtime.AgentPattern;
+import org.HdrHistogram.Histogram;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Load generation against the pattern entry points.
+ */
+@ShellComponent
+record LoadShell(LoadGenerator generator) {
+
+    private static final DateTimeFormatter RUN_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @ShellMethod("Drive a pattern with open-loop (poisson, constant) or closed-loop arrivals and report request and model call latency")
+    String load(
+            @ShellOption(help = "hierarchical, state-pattern, scatter-gather, orchestrated or chatbot") String pattern,
+            @ShellOption(defaultValue = "poisson", help = "poisson, constant or closed") String arrival,
+            @ShellOption(defaultValue = "1.0", help = "requests per second; for closed, the pace across all workers (0 = unpaced)") double rate,
+            @ShellOption(defaultValue = "4", help = "workers for closed-loop runs") int concurrency,
+            @ShellOption(defaultValue = "60", help = "seconds of arrivals; in-flight requests are then drained") int duration,
+            @ShellOption(defaultValue = "eval/load/mixed.txt", help = "one request per line") String file,
+            @ShellOption(defaultValue = "target/load", help = "directory for the .hgrm files") String output) throws IOException {
+        AgentPattern agentPattern = AgentPattern.fromId(pattern).orElseThrow(() -> new IllegalArgumentException(
+                "Unknown pattern " + pattern + "; one of " + Arrays.stream(AgentPattern.values())
+                        .map(AgentPattern::id).collect(Collectors.joining(", "))));
+        List<String> corpus;
+        try (var reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            corpus = LoadGenerator.parseCorpus(reader);
+        }
+        var plan = new LoadPlan(agentPattern, Arrival.parse(arrival), rate, concurrency, Duration.ofSeconds(duration), corpus);
+
+        LoadReport report = generator.run(plan);
+        List<Path> files = report.export(Path.of(output, agentPattern.id() + "-" + RUN_STAMP.format(LocalDateTime.now())));
+
+        var out = new StringBuilder(String.format(
+                "%s %s: sent=%d ok=%d shed=%d failed=%d unfinished=%d in %.1fs (%.2f req/s completed)%n",
+                agentPattern.id(), plan.arrival().name().toLowerCase(), report.sent(), report.succeeded(), report.shed(),
+                report.failed(), report.unfinished(), report.elapsed().toMillis() / 1000.0, report.achievedRate()));
+        out.append(String.format("%-20s %7s %9s %9s %9s %9s %9s%n", "latency (ms)", "count", "p50", "p90", "p99", "p99.9", "max"));
+        report.stages().forEach((stage, histogram) ->
+                out.append(row(stage == Stage.TOTAL && !plan.corrected() ? "total (closed)" : stage.fileName(), histogram)));
+        out.append(row("total-uncorrected", report.uncorrectedTotal()));
+        out.append("total rows are per request; *-calls rows are model time per call, not stage latency, and leave out\n")
+                .append("classifications answered by the local router (see route-stats)\n");
+        if (!plan.corrected()) {
+            out.append("Unpaced closed loop: totals are not corrected for coordinated omission; give --rate to pace the workers\n");
+        }
+        out.append("Wrote ").append(files.size()).append(" histograms to ").append(files.getFirst().getParent()).append('\n');
+        return out.toString();
+    }
+
+    private static String row(String label, Histogram h) {
+        return String.format("%-20s %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", label, h.getTotalCount(),
+                h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.embabelsubagenttest;
+
+import com.example.embabelsubagenttest.cache.TieredCache;
+import com.example.embabelsubagenttest.cache.TieredCaches;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.remote.RemoteAgentExecutor;
+import com.example.embabelsubagenttest.remote.WorkerNode;
+import com.example.embabelsubagenttest.routing.LocalIntentRouter;
+import com.example.embabelsubagenttest.runtime.AgentProcessLifecycleManager;
+import com.example.embabelsubagenttest.runtime.DegradationController;
+import com.example.embabelsubagenttest.runtime.DegradationLevel;
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import com.example.embabelsubagenttest.runtime.PlanningMetrics;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Operational commands for inspecting the running application.
+ */
+@ShellComponent
+record RuntimeShell(PlanningMetrics planningMetrics, AgentProcessLifecycleManager lifecycle, LocalIntentRouter router,
+                   ModelCascade cascade, LlmCalls llm, LiveStats liveStats, DegradationController degradation,
+                   RemoteAgentExecutor remoteAgents, WorkerNode worker, TieredCaches caches) {
+
+    @ShellMethod("Live rate, latency and in-flight requests per pattern and model interaction, model usage per request and branch, and cache hit rates")
+    String stats(@ShellOption(defaultValue = "false") boolean reset) {
+        var snapshot = liveStats.snapshot();
+        if (reset) {
+            liveStats.reset();
+        }
+        var out = new StringBuilder(String.format(
+                "Since start: %.0fs, last minute: %.0fs. Model calls per request %.1f (last minute %.1f)%n",
+                snapshot.uptimeSeconds(), snapshot.lastMinuteSeconds(),
+                snapshot.llmCallsPerRequest(), snapshot.lastMinuteLlmCallsPerRequest()));
+        appendRows(out, "pattern", snapshot.patterns());
+        snapshot.patterns().stream()
+                .filter(r -> !Double.isNaN(r.llmCallsPerRequest()))
+                .forEach(r -> out.append(String.format("  %s: %.1f model calls per request%n", r.name(), r.llmCallsPerRequest())));
+        appendRows(out, "interaction", snapshot.interactions());
+        appendUsage(out, "request model usage", snapshot.requestUsage());
+        appendUsage(out, "branch model usage", snapshot.branchUsage());
+        if (!snapshot.caches().isEmpty()) {
+            out.append(String.format("%n%-28s %8s %8s %7s %10s%n", "cache", "hits", "misses", "hit %", "1m hit %"));
+            for (var c : snapshot.caches()) {
+                out.append(String.format("%-28s %8d %8d %7.1f %10.1f%n",
+                        c.name(), c.hits(), c.misses(), c.hitRate() * 100, c.lastMinuteHitRate() * 100));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendRows(StringBuilder out, String title, List<LiveStats.Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        out.append(String.format("%n%-32s %6s | %7s %8s %8s %8s | %7s %8s %8s %8s%n", title, "active",
+                "qps", "p50 ms", "p95 ms", "p99 ms", "1m qps", "1m p50", "1m p95", "1m p99"));
+        for (var r : rows) {
+            out.append(String.format("%-32s %6d | %7.2f %8.1f %8.1f %8.1f | %7.2f %8.1f %8.1f %8.1f%n", r.name(), r.inFlight(),
+                    r.qps(), r.sinceStart().p50() / 1000.0, r.sinceStart().p95() / 1000.0, r.sinceStart().p99() / 1000.0,
+                    r.lastMinuteQps(), r.lastMinute().p50() / 1000.0, r.lastMinute().p95() / 1000.0, r.lastMinute().p99() / 1000.0));
+        }
+    }
+
+    private static void appendUsage(StringBuilder out, String title, List<LiveStats.UsageRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        out.append(String.format("%n%-32s %8s %8s %10s %12s%n", title, "runs", "calls", "calls/run", "model ms/run"));
+        for (var r : rows) {
+            out.append(String.format("%-32s %8d %8d %10.1f %12.1f%n",
+                    r.name(), r.runs(), r.llmCalls(), r.llmCallsPerRun(), r.llmMillisPerRun()));
+        }
+    }
+
+    @ShellMethod("Current degradation level, the signals behind it, and time spent and stages shed per level")
+    String degradation(
+            @ShellOption(defaultValue = ShellOption.NULL, help = "hold a level (normal, skip-style, skip-translation, canned) or 'auto' to release it") String pin) {
+        if ("auto".equalsIgnoreCase(pin)) {
+            degradation.unpin();
+        } else if (pin != null) {
+            degradation.pin(DegradationLevel.fromId(pin));
+        }
+        var snapshot = degradation.snapshot();
+        var signals = snapshot.signals();
+        var out = new StringBuilder(String.format("level=%s%s queued=%d recent p95=%dms%s%n",
+                snapshot.level().id(), snapshot.pinned() ? " (pinned)" : "", signals.queued(), signals.p95().toMillis(),
+                signals.pattern() == null ? "" : " (" + signals.pattern() + ")"));
+        out.append(String.format("%-18s %8s %10s %8s%n", "level", "entered", "time s", "shed"));
+        for (var row : snapshot.levels()) {
+            out.append(String.format("%-18s %8d %10.1f %8d%n",
+                    row.level().id(), row.entered(), row.time().toMillis() / 1000.0, row.shed()));
+        }
+        return out.toString();
+    }
+
+    @ShellMethod("GOAP planning time per agent, bound blackboard types and goal")
+    String plannerStats(@ShellOption(defaultValue = "false") boolean reset) {
+        var summaries = planningMetrics.snapshot();
+        if (reset) {
+            planningMetrics.reset();
+        }
+        if (summaries.isEmpty()) {
+            return "No plans formulated yet";
+        }
+        var out = new StringBuilder(String.format("%-28s %-44s %-28s %6s %9s %9s %8s%n",
+                "agent", "bound types", "goal", "plans", "mean µs", "max µs", "repeats"));
+        for (var s : summaries) {
+            out.append(String.format("%-28s %-44s %-28s %6d %9.1f %9d %8d%n",
+                    s.key().agent(), s.key().boundTypes(), s.key().goal(),
+                    s.count(), s.meanMicros(), s.maxMicros(), s.repeatedPlans()));
+        }
+        return out.toString();
+    }
+
+    @ShellMethod("Agent processes held by this node: running, retained for debugging, and released")
+    String processes() {
+        return String.format("running=%d retained=%d retainedBlackboardBytes~%d released=%d",
+                lifecycle.runningProcesses(), lifecycle.retainedCount(),
+                lifecycle.retainedBlackboardBytes(), lifecycle.releasedProcesses());
+    }
+
+    @ShellMethod("Child processes dispatched through the work queue, and what this node's worker has run")
+    String remote() {
+        var dispatch = remoteAgents.stats();
+        var work = worker.stats();
+        return String.format("dispatch %s: dispatched=%d failed=%d timedOut=%d queued=%d%nworker %s: busy=%d completed=%d failed=%d",
+                dispatch.enabled() ? "on" : "off", dispatch.dispatched(), dispatch.failed(), dispatch.timedOut(), dispatch.queued(),
+                work.worker(), work.busy(), work.completed(), work.failed());
+    }
+
+    @ShellMethod("Drop a key, or a whole cache, from the shared tier and every node's near cache")
+    String cacheInvalidate(String cache, @ShellOption(defaultValue = ShellOption.NULL) String key) {
+        TieredCache<?> tiered = caches.find(cache).orElse(null);
+        if (tiered == null) {
+            return "No cache named " + cache;
+        }
+        if (key == null) {
+            tiered.invalidateAll();
+            return "Invalidated " + cache;
+        }
+        tiered.invalidate(key);
+        return "Invalidated " + cache + " key " + key;
+    }
+
+    @ShellMethod("LLM cassette mode and interactions recorded, replayed and missed")
+    String cassetteStats() {
+        var stats = llm.stats();
+        return stats.file() == null
+                ? "Cassette off"
+                : String.format("mode=%s file=%s recorded=%d replayed=%d misses=%d",
+                stats.mode(), stats.file(), stats.recorded(), stats.replayed(), stats.misses());
+    }
+
+    @ShellMethod("Local intent routing per route: inputs answered locally, LLM fallbacks and margins")
+    String routeStats(@ShellOption(defaultValue = "false") boolean reset) {
+        var stats = router.stats();
+        if (reset) {
+            router.resetStats();
+        }
+        var out = new StringBuilder(String.format("%-22s %6s %7s %7s %10s %9s %7s %10s %13s  %s%n",
+                "route", "margin", "local", "local%", "lowMargin", "llmLabel", "agreed", "localMean", "fallbackMean", "local by label"));
+        for (var s : stats) {
+            out.append(String.format("%-22s %6.2f %7d %6.1f%% %10d %9d %7d %10.3f %13.3f  %s%n",
+                    s.route(), s.margin(), s.local(), s.localRate() * 100, s.lowMargin(), s.llmOnlyLabel(),
+                    s.fallbackAgreed(), s.meanLocalMargin(), s.meanFallbackMargin(), s.localByLabel()));
+        }
+        return out.toString();
+    }
+
+    @ShellMethod("Offline margin calibration for a local route, over its seeds (leave-one-out) or a labelled LABEL|text file")
+    String routeCalibrate(
+            String route,
+            @ShellOption(defaultValue = ShellOption.NULL) String file,
+            @ShellOption(defaultValue = "0.95") double targetPrecision) throws IOException {
+        List<LocalIntentRouter.Example> heldOut = List.of();
+        if (file != null) {
+            try (var reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                heldOut = LocalIntentRouter.parseExamples(reader, file);
+            }
+        }
+        var calibration = router.calibrate(route, heldOut, targetPrecision);
+        var out = new StringBuilder(String.format("%s: %d %s examples, current margin %.2f%n",
+                calibration.route(), calibration.examples(),
+                calibration.leaveOneOut() ? "seed (leave-one-out)" : "held-out", calibration.currentMargin()));
+        out.append(String.format("%8s %9s %10s%n", "margin", "coverage", "precision"));
+        for (var row : calibration.rows()) {
+            out.append(String.format("%8.2f %8.1f%% %9.1f%%%n", row.margin(), row.coverage() * 100, row.precision() * 100));
+        }
+        out.append(calibration.suggestedMargin() == null
+                ? String.format("No margin reaches %.0f%% precision; keep this route on the LLM%n", targetPrecision * 100)
+                : String.format("Suggested: demo.routing.margins.%s=%.2f%n", calibration.route(), calibration.suggestedMargin()));
+        return out.toString();
+    }
+
+    @ShellMethod("Classification cascade per classifier: fast-path share, escalations and shadowed accuracy")
+    String cascadeStats(@ShellOption(defaultValue = "false") boolean reset) {
+        var stats = cascade.snapshot();
+        if (reset) {
+            cascade.reset();
+        }
+        if (stats.isEmpty()) {
+            return "No classifications yet";
+        }
+        var out = new StringBuilder(String.format("%-32s %9s %6s %9s %8s %8s %9s %9s %9s%n",
+                "classifier", "threshold", "fast", "escalated", "esc%", "agreed", "failures", "shadow%", "fast/strong ms"));
+        for (var s : stats) {
+            out.append(String.format("%-32s %9.2f %6d %9d %7.1f%% %8d %9d %8.1f%% %7.0f/%.0f%n",
+                    s.classifier(), s.threshold(), s.fastPath(), s.escalated(), s.escalationRate() * 100,
+                    s.escalationAgreed(), s.fastFailures(), s.shadowAccuracy() * 100,
+                    s.meanFastMillis(), s.meanStrongMillis()));
+        }
+        return out.toString();
+    }
+
+    @ShellMethod("Replay a labelled LABEL|text corpus through both cascade tiers to tune a classifier's threshold (calls the LLM)")
+    String cascadeEval(
+            String classifier,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "defaults to eval/cascade/<classifier>.txt") String file,
+            @ShellOption(defaultValue = "0.01") double maxAccuracyLoss) throws IOException {
+        Path corpus = Path.of(file != null ? file : "eval/cascade/" + classifier + ".txt");
+        List<ModelCascade.LabelledInput> inputs;
+        try (var reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            inputs = LocalIntentRouter.parseExamples(reader, corpus.toString()).stream()
+                    .map(e -> new ModelCascade.LabelledInput(e.label(), e.text()))
+                    .toList();
+        }
+        var evaluation = cascade.evaluate(classifier, inputs, maxAccuracyLoss);
+        var out = new StringBuilder(String.format(
+                "%s: %d inputs, fast %.1f%% accurate (%.0f ms), strong %.1f%% accurate (%.0f ms), current threshold %.2f%n",
+                evaluation.classifier(), evaluation.inputs(), evaluation.fastAccuracy() * 100, evaluation.meanFastMillis(),
+                evaluation.strongAccuracy() * 100, evaluation.meanStrongMillis(), evaluation.currentThreshold()));
+        out.append(String.format("%9s %11s %9s%n", "threshold", "escalation", "accuracy"));
+        for (var row : evaluation.rows()) {
+            out.append(String.format("%9.2f %10.1f%% %8.1f%%%n", row.threshold(), row.escalationRate() * 100, row.accuracy() * 100));
+        }
+        out.append(evaluation.suggestedThreshold() == null
+                ? "No threshold keeps accuracy close enough to the strong model\n"
+                : String.format("Suggested: demo.cascade.thresholds.%s=%.2f%n", evaluation.classifier(), evaluation.suggestedThreshold()));
+        return out.toString();
+    }
+}
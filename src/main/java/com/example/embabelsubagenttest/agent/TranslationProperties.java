@@ -0,0 +1,19 @@
+package com.example.embabelsubagenttest.agent;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for translating multi-part answers, bound from {@code demo.translation.*}.
+ *
+ * @param pipelined translate each sub-agent's answer as soon as it arrives, while its siblings are still
+ *                  running, instead of translating the joined answer once every sub-agent has finished
+ * @param cacheSize translations this node keeps on heap, in front of the shared cache tier; also what is served while
+ *                  translation is shed under load
+ */
+@ConfigurationProperties("demo.translation")
+public record TranslationProperties(
+        @DefaultValue("false") boolean pipelined,
+        @DefaultValue("512") int cacheSize
+) {
+}
@@ -0,0 +1,81 @@
+package com.example.embabelsubagenttest.agent;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.cache.TieredCache;
+import com.example.embabelsubagenttest.cache.TieredCaches;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
+import com.example.embabelsubagenttest.runtime.DegradationController;
+import com.example.embabelsubagenttest.runtime.DegradationLevel;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Portuguese translation of agent answers. In pipelined mode the composite handlers translate
+ * every sub-agent's answer on its own as it arrives, so a request takes as long as its slowest
+ * branch plus that branch's translation, rather than the slowest branch plus one translation of
+ * everything. It costs one translation call per part instead of one per request.
+ *
+ * <p>Translations are cached by original text, ignoring case and whitespace like the style caches,
+ * in a {@link TieredCache} shared across nodes, which mostly pays off for canned answers. While the {@link DegradationController} sheds
+ * translation, answers the cache does not have are served untranslated.
+ */
+@Component
+public class Translator {
+
+    public static final String PART_SEPARATOR = "\n\n---\n\n";
+
+    private final LlmCalls llm;
+    private final boolean pipelined;
+    private final DegradationController degradation;
+    private final TieredCache<String> cache;
+    private final ExecutorService executor = ContextPropagatingExecutor.wrap(Executors.newVirtualThreadPerTaskExecutor());
+
+    public Translator(LlmCalls llm, TranslationProperties properties, DegradationController degradation, TieredCaches caches) {
+        this.llm = llm;
+        this.pipelined = properties.pipelined();
+        this.degradation = degradation;
+        this.cache = caches.create("translation", String.class, properties.cacheSize());
+    }
+
+    public boolean pipelined() {
+        return pipelined;
+    }
+
+    public String translate(Ai ai, String message) {
+        return translate(message, () -> llm.generateText(ai.withAutoLlm(), "translate-to-portuguese", """
+                Translate the following response into Portuguese.
+                Keep the same tone and style, but make it natural Portuguese.
+                If there's ASCII art, keep it intact.
+                
+                Original response:
+                %s""".formatted(message)));
+    }
+
+    /**
+     * Translates {@code message} with a caller-specific model call, going through the cache and
+     * the degradation check like {@link #translate(Ai, String)}.
+     */
+    public String translate(String message, Supplier<String> translation) {
+        String key = TieredCaches.textKey(message);
+        if (degradation.sheds(DegradationLevel.SKIP_TRANSLATION)) {
+            String cached = cache.getIfPresent(key);
+            return cached != null ? cached : message;
+        }
+        return cache.get(key, translation);
+    }
+
+    public CompletableFuture<String> translateAsync(Ai ai, String message) {
+        return CompletableFuture.supplyAsync(() -> translate(ai, message), executor);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -7,16 +7,16 @@ import com.embabel.chat.AssistantMessage;
 import com.embabel.chat.Conversation;
 import com.embabel.chat.UserMessage;
 import com.example.embabelsubagenttest.agent.chatbot.ChatbotTypes.ChatIntent;
-import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.BananaArtRequest;
-import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.FortuneRequest;
-import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.JokeRequest;
-import com.example.embabelsubagenttest.service.BananaArtService;
-import com.example.embabelsubagenttest.service.FortuneService;
-import com.example.embabelsubagenttest.service.JokeService;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.runtime.AdmissionController;
+import com.example.embabelsubagenttest.runtime.AdmissionRejectedException;
+import com.example.embabelsubagenttest.runtime.Lane;
+import com.example.embabelsubagenttest.service.FanOutResults;
+import com.example.embabelsubagenttest.service.ServiceFanOut;
+import com.example.embabelsubagenttest.service.ServiceRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 /**
  * Chatbot actions using Embabel's Utility AI planning.
@@ -32,7 +32,9 @@ import java.util.concurrent.CompletableFuture;
  * - Uses {@code canRerun = true} to allow the action to fire on every message
  * - Uses {@code context.sendMessage()} to send responses back to the conversation
  * - Supports parallel execution of multiple services
+ * - Runs every turn through the interactive admission lane, answering immediately when shed
  */
+@ConditionalOnProperty(name = "demo.patterns.chatbot.enabled", havingValue = "true", matchIfMissing = true)
 @EmbabelComponent
 public class ChatbotActions {
 
@@ -46,17 +48,27 @@ public class ChatbotActions {
             Be friendly and concise in your responses.
             """;
 
-    private final BananaArtService bananaArtService;
-    private final FortuneService fortuneService;
-    private final JokeService jokeService;
+    private final ServiceRegistry serviceRegistry;
+    private final ServiceFanOut fanOut;
+    private final AdmissionController admissionController;
+    private final Classifier<ChatIntent> intentClassifier;
+    private final LlmCalls llm;
 
     public ChatbotActions(
-            BananaArtService bananaArtService,
-            FortuneService fortuneService,
-            JokeService jokeService) {
-        this.bananaArtService = bananaArtService;
-        this.fortuneService = fortuneService;
-        this.jokeService = jokeService;
+            ServiceRegistry serviceRegistry,
+            ServiceFanOut fanOut,
+            AdmissionController admissionController,
+            ModelCascade cascade,
+            LlmCalls llm) {
+        this.serviceRegistry = serviceRegistry;
+        this.fanOut = fanOut;
+        this.admissionController = admissionController;
+        this.intentClassifier = cascade.classifier("classify-chat-intent", ChatIntent.class, this::createClassifyIntentPrompt,
+                intent -> switch (intent) {
+                    case ChatIntent.Services s -> "SERVICES:" + s.selection().label();
+                    case ChatIntent.GeneralQuery _ -> "GENERAL_QUERY";
+                });
+        this.llm = llm;
     }
 
     /**
@@ -72,101 +84,61 @@ public class ChatbotActions {
             description = "Respond to user messages in the chatbot"
     )
     public void respond(Conversation conversation, ActionContext context) {
-        String lastMessage = getLastUserMessage(conversation);
-
-        // Classify intent using LLM
-        ChatIntent intent = context.ai().withAutoLlm()
-                .withId("classify-chat-intent")
-                .creating(ChatIntent.class)
-                .fromPrompt("""
-                        Classify the user's intent into one of:
-                        
-                        - BANANA_ART: User wants to see ASCII art of a banana
-                        - FORTUNE: User wants a fortune cookie message or inspirational quote
-                        - JOKE: User wants a dad joke (programming/tech themed)
-                        - GENERAL_QUERY: User is asking a general question
-                        - MULTIPLE: User wants more than one of banana art, fortune, or joke
-                        
-                        User message: %s
-                        
-                        For MULTIPLE: populate only the fields the user is asking for.
-                        Example: "show me a banana and tell me a joke" -> bananaArt and joke fields populated
-                        """.formatted(lastMessage));
-
-        // Route to appropriate handler based on intent
-        String response = switch (intent) {
-            case ChatIntent.BananaArt b -> handleBananaArt(b.description(), context);
-            case ChatIntent.Fortune f -> handleFortune(f.description(), context);
-            case ChatIntent.Joke j -> handleJoke(j.description(), context);
-            case ChatIntent.GeneralQuery q -> handleQuery(q.question(), conversation, context);
-            case ChatIntent.Multiple m -> handleMultiple(m, context);
-        };
+        String response;
+        try {
+            response = admissionController.call(Lane.INTERACTIVE, () -> answer(conversation, context));
+        } catch (AdmissionRejectedException e) {
+            response = e.getMessage();
+        }
 
         // Send response back to conversation
         var assistantMessage = new AssistantMessage(response);
         context.sendMessage(conversation.addMessage(assistantMessage));
     }
 
-    // --- Intent handlers ---
-
-    private String handleBananaArt(String description, ActionContext context) {
-        var result = bananaArtService.generate(
-                new BananaArtRequest(description != null ? description : "banana"),
-                context.ai());
-        return result.isSuccess() ? result.art() : "Error generating banana art: " + result.errorMessage();
-    }
+    private String answer(Conversation conversation, ActionContext context) {
+        String lastMessage = getLastUserMessage(conversation);
 
-    private String handleFortune(String description, ActionContext context) {
-        var result = fortuneService.generate(
-                new FortuneRequest(description != null ? description : "fortune"),
-                context.ai());
-        return result.isSuccess() ? result.fortune() : "Error generating fortune: " + result.errorMessage();
-    }
+        // Classify intent using LLM
+        ChatIntent intent = intentClassifier.classify(context.ai(), lastMessage);
 
-    private String handleJoke(String description, ActionContext context) {
-        var result = jokeService.generate(
-                new JokeRequest(description != null ? description : "joke"),
-                context.ai());
-        return result.isSuccess() ? result.joke() : "Error generating joke: " + result.errorMessage();
+        // Route to appropriate handler based on intent
+        return switch (intent) {
+            case ChatIntent.Services s -> handleServices(s, context);
+            case ChatIntent.GeneralQuery q -> handleQuery(q.question(), conversation, context);
+        };
     }
 
-    private String handleQuery(String question, Conversation conversation, ActionContext context) {
-        // Use conversation history for context-aware responses
-        return context.ai().withAutoLlm()
-                .withId("answer-query")
-                .withSystemPrompt(SYSTEM_PROMPT)
-                .respond(conversation.getMessages())
-                .getContent();
+    String createClassifyIntentPrompt(String message) {
+        return """
+                Classify the user's intent into one of:
+                
+                - SERVICES: User wants one or more of the services below
+                - GENERAL_QUERY: User is asking a general question
+                
+                Services (use the key as "service"):
+                %s
+                
+                User message: %s
+                
+                For SERVICES: add one call per requested service, with a description taken from the message.
+                Example: "show me a banana and tell me a joke" -> two calls, one per service
+                """.formatted(serviceRegistry.serviceGuide(), message);
     }
 
-    private String handleMultiple(ChatIntent.Multiple intent, ActionContext context) {
-        List<CompletableFuture<String>> futures = new ArrayList<>();
-
-        if (intent.bananaArt() != null) {
-            futures.add(CompletableFuture.supplyAsync(() ->
-                    handleBananaArt(intent.bananaArt(), context)));
-        }
-        if (intent.fortune() != null) {
-            futures.add(CompletableFuture.supplyAsync(() ->
-                    handleFortune(intent.fortune(), context)));
-        }
-        if (intent.joke() != null) {
-            futures.add(CompletableFuture.supplyAsync(() ->
-                    handleJoke(intent.joke(), context)));
-        }
+    // --- Intent handlers ---
 
-        if (futures.isEmpty()) {
+    private String handleServices(ChatIntent.Services intent, ActionContext context) {
+        FanOutResults results = fanOut.run(intent.selection(), context::ai);
+        if (results.isEmpty()) {
             return "I didn't understand what you wanted. Try asking for a banana, fortune, or joke!";
         }
+        return results.summarize("\n\n---\n\n");
+    }
 
-        // Wait for all to complete and join results
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-
-        List<String> results = futures.stream()
-                .map(CompletableFuture::join)
-                .toList();
-
-        return String.join("\n\n---\n\n", results);
+    private String handleQuery(String question, Conversation conversation, ActionContext context) {
+        // Use conversation history for context-aware responses
+        return llm.respond(context.ai().withAutoLlm().withSystemPrompt(SYSTEM_PROMPT), "answer-query", conversation.getMessages());
     }
 
     // --- Helper methods ---
@@ -4,8 +4,10 @@ import com.embabel.agent.core.AgentPlatform;
 import com.embabel.agent.core.Verbosity;
 import com.embabel.chat.Chatbot;
 import com.embabel.chat.agent.AgentProcessChatbot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 /**
  * Configuration for the chatbot pattern using Utility AI planning.
@@ -17,6 +19,7 @@ import org.springframework.context.annotation.Configuration;
  * <p>
  * The chatbot can be accessed via the shell using the 'chat' command.
  */
+@ConditionalOnProperty(name = "demo.patterns.chatbot.enabled", havingValue = "true", matchIfMissing = true)
 @Configuration
 public class ChatbotConfiguration {
 
@@ -26,11 +29,14 @@ public class ChatbotConfiguration {
      * Utility AI planning evaluates all available actions and selects the one
      * with the highest value (lowest cost) whose preconditions are satisfied.
      * This allows for flexible routing without explicit if-else chains.
+     * <p>
+     * Lazy, so deployments that never chat don't build the utility planner over the platform's actions.
      *
      * @param agentPlatform The agent platform containing all registered agents and actions
      * @return A configured Chatbot instance
      */
     @Bean
+    @Lazy
     Chatbot chatbot(AgentPlatform agentPlatform) {
         return AgentProcessChatbot.utilityFromPlatform(
                 agentPlatform,
@@ -1,9 +1,10 @@
 package com.example.embabelsubagenttest.agent.chatbot;
 
-import com.embabel.agent.api.common.SomeOf;
+import com.example.embabelsubagenttest.service.ServiceSelection;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import org.springframework.lang.Nullable;
+
+import java.util.List;
 
 /**
  * Domain types for the chatbot pattern.
@@ -17,47 +18,24 @@ public class ChatbotTypes {
      */
     @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "intent")
     @JsonSubTypes({
-            @JsonSubTypes.Type(value = ChatIntent.BananaArt.class, name = "BANANA_ART"),
-            @JsonSubTypes.Type(value = ChatIntent.Fortune.class, name = "FORTUNE"),
-            @JsonSubTypes.Type(value = ChatIntent.Joke.class, name = "JOKE"),
-            @JsonSubTypes.Type(value = ChatIntent.GeneralQuery.class, name = "GENERAL_QUERY"),
-            @JsonSubTypes.Type(value = ChatIntent.Multiple.class, name = "MULTIPLE")
+            @JsonSubTypes.Type(value = ChatIntent.Services.class, name = "SERVICES"),
+            @JsonSubTypes.Type(value = ChatIntent.GeneralQuery.class, name = "GENERAL_QUERY")
     })
     public sealed interface ChatIntent {
-        record BananaArt(String description) implements ChatIntent {
-        }
-
-        record Fortune(String description) implements ChatIntent {
-        }
-
-        record Joke(String description) implements ChatIntent {
-        }
-
-        record GeneralQuery(String question) implements ChatIntent {
-        }
+        /**
+         * One or more registered command services, one call per service.
+         */
+        record Services(List<ServiceSelection.Call> calls) implements ChatIntent {
+            public Services {
+                calls = calls == null ? List.of() : calls;
+            }
 
-        record Multiple(
-                @Nullable String bananaArt,
-                @Nullable String fortune,
-                @Nullable String joke
-        ) implements ChatIntent, SomeOf {
-            public boolean isEmpty() {
-                return bananaArt == null && fortune == null && joke == null;
+            public ServiceSelection selection() {
+                return new ServiceSelection(calls);
             }
         }
-    }
 
-    /**
-     * Request for multiple services.
-     * Implements SomeOf - LLM populates only applicable fields.
-     */
-    public record MultiServiceRequest(
-            @Nullable String bananaArt,
-            @Nullable String fortune,
-            @Nullable String joke
-    ) implements SomeOf {
-        public boolean isEmpty() {
-            return bananaArt == null && fortune == null && joke == null;
+        record GeneralQuery(String question) implements ChatIntent {
         }
     }
 }
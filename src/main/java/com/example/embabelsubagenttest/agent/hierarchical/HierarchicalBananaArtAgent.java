@@ -3,7 +3,9 @@ package com.example.embabelsubagenttest.agent.hierarchical;
 import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.hierarchical.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Creates ASCII art of bananas")
 public class HierarchicalBananaArtAgent {
     @AchievesGoal(description = "ASCII art created")
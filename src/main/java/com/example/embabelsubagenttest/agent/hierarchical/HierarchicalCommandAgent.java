@@ -5,29 +5,44 @@ import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.annotation.RunSubagent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.routing.LocalIntentRouter;
+import com.example.embabelsubagenttest.routing.Route;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.hierarchical.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Routes commands to specialized command handlers")
 public class HierarchicalCommandAgent {
+    public static final Route<CommandIntent> COMMAND_ROUTE = Route.of("hierarchical-command", CommandIntent.class, "commands")
+            .direct(CommandIntent.BananaArt.class, CommandIntent.BananaArt::new)
+            .direct(CommandIntent.FortuneCookie.class, CommandIntent.FortuneCookie::new)
+            .direct(CommandIntent.DadJoke.class, CommandIntent.DadJoke::new);
+
     private final HierarchicalBananaArtAgent bananaArtAgent;
     private final HierarchicalFortuneCookieAgent fortuneCookieAgent;
     private final HierarchicalDadJokeAgent dadJokeAgent;
+    private final Classifier<CommandIntent> commandClassifier;
+    private final LocalIntentRouter router;
 
-    public HierarchicalCommandAgent(HierarchicalBananaArtAgent bananaArtAgent, HierarchicalFortuneCookieAgent fortuneCookieAgent, HierarchicalDadJokeAgent dadJokeAgent) {
+    public HierarchicalCommandAgent(HierarchicalBananaArtAgent bananaArtAgent, HierarchicalFortuneCookieAgent fortuneCookieAgent, HierarchicalDadJokeAgent dadJokeAgent, ModelCascade cascade, LocalIntentRouter router) {
         this.bananaArtAgent = bananaArtAgent;
         this.fortuneCookieAgent = fortuneCookieAgent;
         this.dadJokeAgent = dadJokeAgent;
+        this.commandClassifier = cascade.classifier("classify-hierarchical-command", CommandIntent.class, this::createClassifyCommandPrompt);
+        this.router = router;
+        router.register(COMMAND_ROUTE);
     }
 
     @Action
     public CommandIntent executeCommand(HierarchicalIntentAgent.UserIntent.Command command, Ai ai) {
-        return ai.withAutoLlm()
-                .creating(CommandIntent.class)
-                .fromPrompt(createClassifyCommandPrompt(command));
+        return router.route(COMMAND_ROUTE, command.description(),
+                () -> commandClassifier.classify(ai, command.description()));
     }
 
-    String createClassifyCommandPrompt(HierarchicalIntentAgent.UserIntent.Command command) {
+    String createClassifyCommandPrompt(String description) {
         return String.format("""
                         Classify the user's command into one of these categories:
                         - BANANA_ART: User wants to see ASCII art of bananas
@@ -38,7 +53,7 @@ public class HierarchicalCommandAgent {
                         User command: %s
                         
                         Return the appropriate type with a description or reason.""",
-                command.description()).trim();
+                description).trim();
     }
 
     @Action
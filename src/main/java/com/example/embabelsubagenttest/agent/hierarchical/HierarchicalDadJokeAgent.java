@@ -4,20 +4,46 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.service.NearDuplicateIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+import java.util.ArrayList;
+import java.util.List;
+
+@ConditionalOnProperty(name = "demo.patterns.hierarchical.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Tells dad jokes")
 public class HierarchicalDadJokeAgent {
+    private final NearDuplicateIndex nearDuplicates;
+    private final LlmCalls llm;
+
+    public HierarchicalDadJokeAgent(NearDuplicateIndex nearDuplicates, LlmCalls llm) {
+        this.nearDuplicates = nearDuplicates;
+        this.llm = llm;
+    }
+
     @AchievesGoal(description = "Dad joke told")
     @Action
     public JokeResponse tellJoke(HierarchicalCommandAgent.CommandIntent.DadJoke request, Ai ai) {
-        return ai.withAutoLlm()
-                .withId("tell-dad-joke")
-                .creating(JokeResponse.class)
-                .fromPrompt(String.format("""
+        // Retell if this audience was recently told a near-identical joke
+        List<String> rejected = new ArrayList<>();
+        String audience = NearDuplicateIndex.currentAudience();
+        JokeResponse joke = generateJoke(request, ai, rejected);
+        while (nearDuplicates.seenRecently(audience, joke.message())
+                && rejected.size() < nearDuplicates.maxRegenerations()) {
+            rejected.add(joke.message());
+            joke = generateJoke(request, ai, rejected);
+        }
+        nearDuplicates.record(audience, joke.message());
+        return joke;
+    }
+
+    private JokeResponse generateJoke(HierarchicalCommandAgent.CommandIntent.DadJoke request, Ai ai, List<String> avoid) {
+        return llm.createObject(ai.withAutoLlm(), "tell-dad-joke", JokeResponse.class, String.format("""
                         Tell a classic dad joke about the topic: %s
                         Make it wholesome and groan-worthy.
                         Include both the setup and punchline.
-                        """, request.description()));
+                        """, request.description()) + NearDuplicateIndex.avoidInstructions(avoid));
     }
 
     public record JokeResponse(String message) implements HierarchicalCommandAgent.CommandSubagentResponse {
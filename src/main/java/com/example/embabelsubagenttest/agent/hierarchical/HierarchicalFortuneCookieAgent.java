@@ -4,16 +4,22 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.hierarchical.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Generates fortune cookie messages")
 public class HierarchicalFortuneCookieAgent {
+    private final LlmCalls llm;
+
+    public HierarchicalFortuneCookieAgent(LlmCalls llm) {
+        this.llm = llm;
+    }
+
     @AchievesGoal(description = "Fortune cookie message generated")
     @Action
     public FortuneResponse generateFortune(HierarchicalCommandAgent.CommandIntent.FortuneCookie request, Ai ai) {
-        return ai.withAutoLlm()
-                .withId("generate-fortune")
-                .creating(FortuneResponse.class)
-                .fromPrompt(String.format("""
+        return llm.createObject(ai.withAutoLlm(), "generate-fortune", FortuneResponse.class, String.format("""
                         Generate a creative and inspiring fortune cookie message based on the user's description.
                         Make it wise, optimistic, and slightly mysterious.
                         Keep it under 30 words.
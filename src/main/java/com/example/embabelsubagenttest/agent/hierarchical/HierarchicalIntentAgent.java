@@ -6,31 +6,60 @@ import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.annotation.RunSubagent;
 import com.embabel.agent.api.common.Ai;
 import com.embabel.agent.api.common.OperationContext;
-import com.embabel.agent.core.AgentPlatform;
-import com.embabel.agent.core.AgentProcess;
-import com.embabel.agent.core.ProcessOptions;
 import com.embabel.agent.domain.io.UserInput;
+import com.example.embabelsubagenttest.agent.Translator;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.remote.RemoteAgentExecutor;
+import com.example.embabelsubagenttest.routing.LocalIntentRouter;
+import com.example.embabelsubagenttest.routing.Route;
+import com.example.embabelsubagenttest.runtime.DagExecutor;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+@ConditionalOnProperty(name = "demo.patterns.hierarchical.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Routes user requests to the appropriate specialist agent")
 public class HierarchicalIntentAgent {
+    /**
+     * Commands and queries are built from the raw input when the local router is confident;
+     * composites always need the LLM to split them.
+     */
+    public static final Route<UserIntent> INTENT_ROUTE = Route.of("hierarchical-intent", UserIntent.class, "hierarchical-intent")
+            .direct(UserIntent.Command.class, UserIntent.Command::new)
+            .direct(UserIntent.Query.class, UserIntent.Query::new);
+
     private final HierarchicalCommandAgent commandAgent;
     private final HierarchicalQueryAgent queryAgent;
-    private final AgentPlatform agentPlatform;
-
-    public HierarchicalIntentAgent(HierarchicalCommandAgent commandAgent, HierarchicalQueryAgent queryAgent, AgentPlatform agentPlatform) {
+    private final Classifier<UserIntent> intentClassifier;
+    private final RemoteAgentExecutor agents;
+    private final DagExecutor dagExecutor;
+    private final LocalIntentRouter router;
+    private final LlmCalls llm;
+    private final Translator translator;
+
+    public HierarchicalIntentAgent(HierarchicalCommandAgent commandAgent, HierarchicalQueryAgent queryAgent, ModelCascade cascade, RemoteAgentExecutor agents, DagExecutor dagExecutor, LocalIntentRouter router, LlmCalls llm, Translator translator) {
         this.commandAgent = commandAgent;
         this.queryAgent = queryAgent;
-        this.agentPlatform = agentPlatform;
+        this.intentClassifier = cascade.classifier("classify-hierarchical-intent", UserIntent.class, this::createClassifyIntentPrompt);
+        this.agents = agents;
+        this.dagExecutor = dagExecutor;
+        this.router = router;
+        router.register(INTENT_ROUTE);
+        this.llm = llm;
+        this.translator = translator;
     }
 
-    String createClassifyIntentPrompt(UserInput userInput) {
+    String createClassifyIntentPrompt(String message) {
         return String.format("""
                         Classify the user's intent:
                         - COMMAND: User wants to change or edit something like channel names, colors, and routes (single request)
@@ -42,67 +71,73 @@ public class HierarchicalIntentAgent {
                         For COMMAND: Return with a clear description of what they want to change
                         For QUERY: Return with the question they're asking
                         For COMPOSITE: Return with lists of commands and queries. Parse out each distinct request.
+                        If a request needs the result of another one, add a dependency {from, to} using positions
+                        in the combined list: commands first (0, 1, ...), then queries continuing the numbering.
+                        Leave dependencies empty when the requests are independent.
                         
                         Examples of COMPOSITE:
-                        - "Show me a banana and tell me where they come from" -> commands: [banana art], queries: [where do bananas come from]
-                        - "Give me a fortune cookie and a dad joke" -> commands: [fortune cookie, dad joke], queries: []
-                        - "What is the mixer state and show me a banana" -> commands: [banana art], queries: [mixer state]""",
-                userInput.getContent()).trim();
+                        - "Show me a banana and tell me where they come from" -> commands: [banana art], queries: [where do bananas come from], dependencies: []
+                        - "Give me a fortune cookie and a dad joke" -> commands: [fortune cookie, dad joke], queries: [], dependencies: []
+                        - "What is the mixer state and show me a banana" -> commands: [banana art], queries: [mixer state], dependencies: []
+                        - "Tell me a joke and explain why it's funny" -> commands: [dad joke], queries: [explain why the joke is funny], dependencies: [{from: 0, to: 1}]""",
+                message).trim();
     }
 
     @Action
     public UserIntent classifyIntent(UserInput userInput, Ai ai) {
-        return ai.withAutoLlm()
-                .creating(UserIntent.class)
-                .fromPrompt(createClassifyIntentPrompt(userInput));
+        return router.route(INTENT_ROUTE, userInput.getContent(),
+                () -> intentClassifier.classify(ai, userInput.getContent()));
     }
 
+    /**
+     * Runs the composite's commands and queries as a dependency graph: independent requests run
+     * in parallel (bounded by {@code demo.dag.max-parallelism}), and a request that depends on
+     * others runs after them with their answers appended as context. With
+     * {@code demo.translation.pipelined} each answer is also translated as soon as it is ready,
+     * while the rest of the graph runs; dependents still get the untranslated answer.
+     */
     @Action
     public CompositeIntentResult handleCompositeIntent(UserIntent.Composite composite, OperationContext context) {
-        List<CompletableFuture<AgentMessageResponse>> tasks = new ArrayList<>();
-
-        for (UserIntent.Command command : composite.commands()) {
-            tasks.add(CompletableFuture.supplyAsync(() -> {
-                com.embabel.agent.core.Agent agentWrapper = agentPlatform.agents().stream()
-                        .filter(a -> a.getName().equals(commandAgent.getClass().getSimpleName()))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalStateException("CommandAgent wrapper not found"));
-
-                AgentProcess agentProcess = agentPlatform.createAgentProcessFrom(
-                        agentWrapper,
-                        ProcessOptions.DEFAULT,
-                        command
-                );
-                AgentProcess completedProcess = agentProcess.run();
-                return completedProcess.last(AgentMessageResponse.class);
-            }));
-        }
+        List<UserIntent> requests = new ArrayList<>(composite.commands());
+        requests.addAll(composite.queries());
+        List<DagExecutor.Edge> edges = composite.dependencies().stream()
+                .map(d -> new DagExecutor.Edge(d.from(), d.to()))
+                .toList();
+        AtomicReferenceArray<CompletableFuture<String>> translations = new AtomicReferenceArray<>(requests.size());
+
+        List<AgentMessageResponse> responses = dagExecutor.<AgentMessageResponse>run(requests.size(), edges, (index, upstream) -> {
+            AgentMessageResponse response = switch (withUpstream(requests.get(index), upstream.values())) {
+                case UserIntent.Command command ->
+                        agents.run(HierarchicalCommandAgent.class, command, AgentMessageResponse.class);
+                case UserIntent.Query query ->
+                        agents.run(HierarchicalQueryAgent.class, query, AgentMessageResponse.class);
+                case UserIntent.Composite nested ->
+                        throw new IllegalStateException("Nested composite intents are not supported");
+            };
+            if (translator.pipelined()) {
+                translations.set(index, translator.translateAsync(context.ai(), response.message()));
+            }
+            return response;
+        });
+        String consolidatedMessage = IntStream.range(0, responses.size())
+                .mapToObj(i -> translator.pipelined() ? translations.get(i).join() : responses.get(i).message())
+                .collect(Collectors.joining(Translator.PART_SEPARATOR));
+
+        return new CompositeIntentResult(consolidatedMessage, responses.size(), translator.pipelined());
+    }
 
-        for (UserIntent.Query query : composite.queries()) {
-            tasks.add(CompletableFuture.supplyAsync(() -> {
-                var agentWrapper = agentPlatform.agents().stream()
-                        .filter(a -> a.getName().equals(queryAgent.getClass().getSimpleName()))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalStateException("QueryAgent wrapper not found"));
-
-                AgentProcess agentProcess = agentPlatform.createAgentProcessFrom(
-                        agentWrapper,
-                        ProcessOptions.DEFAULT,
-                        query
-                );
-                AgentProcess completedProcess = agentProcess.run();
-                return completedProcess.last(AgentMessageResponse.class);
-            }));
+    private static UserIntent withUpstream(UserIntent request, Collection<AgentMessageResponse> upstream) {
+        if (upstream.isEmpty()) {
+            return request;
         }
-
-        List<AgentMessageResponse> responses = tasks.stream()
-                .map(CompletableFuture::join)
-                .toList();
-        String consolidatedMessage = responses.stream()
+        String context = upstream.stream()
                 .map(AgentMessageResponse::message)
-                .collect(Collectors.joining("\n\n---\n\n"));
-
-        return new CompositeIntentResult(consolidatedMessage, responses.size());
+                .collect(Collectors.joining("\n\n", "\n\nUse these earlier results:\n", ""));
+        return switch (request) {
+            case UserIntent.Command command -> new UserIntent.Command(command.description() + context);
+            case UserIntent.Query query -> new UserIntent.Query(query.question() + context);
+            case UserIntent.Composite composite -> composite;
+        };
     }
 
     @Action
@@ -117,16 +152,18 @@ public class HierarchicalIntentAgent {
 
     @Action
     public TranslatedResponse translateToPortuguese(AgentMessageResponse subagentResponse, Ai ai) {
-        return ai.withAutoLlm()
-                .withId("translate-to-portuguese")
-                .creating(TranslatedResponse.class)
-                .fromPrompt("""
+        if (subagentResponse instanceof CompositeIntentResult result && result.translated()) {
+            return new TranslatedResponse(result.message());
+        }
+        String message = subagentResponse.message();
+        return new TranslatedResponse(translator.translate(message, () -> llm.createObject(ai.withAutoLlm(),
+                "translate-to-portuguese", TranslatedResponse.class, """
                         Translate the following response into Portuguese.
                         Keep the same tone and style, but make it natural Portuguese.
                         If there's ASCII art, keep it intact.
                         
                         Original response:
-                        %s""".formatted(subagentResponse.message()));
+                        %s""".formatted(message)).message()));
     }
 
     @AchievesGoal(description = "User request satisfied")
@@ -148,14 +185,28 @@ public class HierarchicalIntentAgent {
         record Query(String question) implements UserIntent {
         }
 
-        record Composite(List<Command> commands, List<Query> queries) implements UserIntent {
+        /**
+         * Dependencies index into commands followed by queries; {@code from} must finish before {@code to}.
+         */
+        record Composite(List<Command> commands, List<Query> queries, List<Dependency> dependencies) implements UserIntent {
+            public Composite {
+                commands = commands == null ? List.of() : commands;
+                queries = queries == null ? List.of() : queries;
+                dependencies = dependencies == null ? List.of() : dependencies;
+            }
+        }
+
+        record Dependency(int from, int to) {
         }
     }
 
     public record IntentAgentResponse(String message) {
     }
 
-    public record CompositeIntentResult(String message, int responseCount) implements AgentMessageResponse {
+    /**
+     * @param translated the parts were already translated one by one (pipelined translation)
+     */
+    public record CompositeIntentResult(String message, int responseCount, boolean translated) implements AgentMessageResponse {
     }
 
     public record TranslatedResponse(String message) {
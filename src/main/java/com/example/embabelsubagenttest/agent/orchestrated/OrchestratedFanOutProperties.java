@@ -0,0 +1,38 @@
+package com.example.embabelsubagenttest.agent.orchestrated;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Structured fan-out settings for the orchestrated pattern, bound from {@code demo.orchestrated.fan-out.*}.
+ *
+ * @param policy       whether one failed service cancels its siblings
+ * @param callTimeout  a service still running after this is cancelled and reported as timed out
+ * @param callTimeouts per-service overrides of {@code callTimeout}, keyed by service key
+ * @param deadline     the whole wave is cancelled after this, keeping whatever finished
+ */
+@ConfigurationProperties("demo.orchestrated.fan-out")
+public record OrchestratedFanOutProperties(
+        @DefaultValue("collect-partial") Policy policy,
+        @DefaultValue("30s") Duration callTimeout,
+        @DefaultValue Map<String, Duration> callTimeouts,
+        @DefaultValue("45s") Duration deadline
+) {
+    public OrchestratedFanOutProperties {
+        callTimeouts = callTimeouts == null ? Map.of() : Map.copyOf(callTimeouts);
+    }
+
+    public Duration callTimeoutFor(String service) {
+        return callTimeouts.getOrDefault(service, callTimeout);
+    }
+
+    public enum Policy {
+        /** Every service runs to completion or its own timeout; failures are reported per service. */
+        COLLECT_PARTIAL,
+        /** The first failed service cancels the services still running. */
+        FAIL_FAST
+    }
+}
@@ -7,43 +7,51 @@ import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
 import com.embabel.agent.domain.io.UserInput;
 import com.example.embabelsubagenttest.agent.AgentMessageResponse;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.ModelCascade;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 /**
  * Top-level agent that classifies user intent and routes to either
  * OrchestratedCommandAgent (for actions) or OrchestratedQueryAgent (for information).
  */
+@ConditionalOnProperty(name = "demo.patterns.orchestrated.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Routes user requests to either a command orchestrator or a query agent")
 public class OrchestratedIntentAgent {
 
     private final OrchestratedCommandAgent commandAgent;
     private final OrchestratedQueryAgent queryAgent;
+    private final Classifier<UserIntent> intentClassifier;
 
     public OrchestratedIntentAgent(
             OrchestratedCommandAgent commandAgent,
-            OrchestratedQueryAgent queryAgent) {
+            OrchestratedQueryAgent queryAgent,
+            ModelCascade cascade) {
         this.commandAgent = commandAgent;
         this.queryAgent = queryAgent;
+        this.intentClassifier = cascade.classifier("classify-orchestrated-intent", UserIntent.class, this::createClassifyIntentPrompt);
     }
 
     @Action
     public UserIntent classifyIntent(UserInput userInput, Ai ai) {
-        return ai.withAutoLlm()
-                .withId("classify-orchestrated-intent")
-                .creating(UserIntent.class)
-                .fromPrompt("""
-                        Classify the user's intent into one of the following:
+        return intentClassifier.classify(ai, userInput.getContent());
+    }
+
+    String createClassifyIntentPrompt(String message) {
+        return """
+                Classify the user's intent into one of the following:
 
-                        - COMMAND: The user wants to perform an action like seeing a banana, hearing a joke, or getting a fortune.
-                        - QUERY: The user is asking a general question or seeking information.
-                        - UNKNOWN: The intent is unclear.
+                - COMMAND: The user wants to perform an action like seeing a banana, hearing a joke, or getting a fortune.
+                - QUERY: The user is asking a general question or seeking information.
+                - UNKNOWN: The intent is unclear.
 
-                        For COMMAND, provide a description of what they want.
-                        For QUERY, provide the question they're asking.
-                        For UNKNOWN, provide a message explaining why it's unclear.
+                For COMMAND, provide a description of what they want.
+                For QUERY, provide the question they're asking.
+                For UNKNOWN, provide a message explaining why it's unclear.
 
-                        User message: %s""".formatted(userInput.getContent()));
+                User message: %s""".formatted(message);
     }
 
     @Action
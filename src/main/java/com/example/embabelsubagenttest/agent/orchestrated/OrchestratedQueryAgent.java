@@ -6,16 +6,22 @@ import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
 import com.example.embabelsubagenttest.agent.AgentMessageResponse;
 import com.example.embabelsubagenttest.agent.orchestrated.OrchestratedIntentAgent.UserIntent;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.orchestrated.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Respond to general queries")
 public class OrchestratedQueryAgent {
+    private final LlmCalls llm;
+
+    public OrchestratedQueryAgent(LlmCalls llm) {
+        this.llm = llm;
+    }
 
     @AchievesGoal(description = "User question is answered.")
     @Action
     public QueryResponse answerUserQuestion(UserIntent.Query query, Ai ai) {
-        String answer = ai.withAutoLlm()
-                .withId("orchestrated-query")
-                .generateText("""
+        String answer = llm.generateText(ai.withAutoLlm(), "orchestrated-query", """
                         You are a helpful assistant. Answer the user's question clearly and concisely.
                         
                         User question: %s""".formatted(query.question()));
@@ -0,0 +1,130 @@
+package com.example.embabelsubagenttest.agent.orchestrated;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.BranchContext;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
+import com.example.embabelsubagenttest.runtime.RequestContext;
+import com.example.embabelsubagenttest.service.CommandService;
+import com.example.embabelsubagenttest.service.FanOutResults;
+import com.example.embabelsubagenttest.service.ServiceFanOut;
+import com.example.embabelsubagenttest.service.ServiceRegistry;
+import com.example.embabelsubagenttest.service.ServiceResult;
+import com.example.embabelsubagenttest.service.ServiceSelection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.StructuredTaskScope.Joiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calls of a {@link ServiceSelection} as subtasks of one {@link StructuredTaskScope}, one per
+ * call even when a service is selected twice.
+ * Each call is bounded by its {@link OrchestratedFanOutProperties#callTimeoutFor call timeout} and
+ * the whole wave by the {@link OrchestratedFanOutProperties#deadline() deadline}; under {@code fail-fast} the first failed service
+ * also ends the wave. Subtasks still running when the scope ends are interrupted, which cancels
+ * their model call, and are reported as failed. The scope and its threads are named after the
+ * services, so {@code jcmd <pid> Thread.dump_to_file -format=json <file>} shows what a stuck request
+ * is waiting on.
+ */
+@ConditionalOnProperty(name = "demo.patterns.orchestrated.enabled", havingValue = "true", matchIfMissing = true)
+@Component
+public class StructuredFanOut {
+
+    private static final String SCOPE_NAME = "orchestrated-fan-out";
+
+    private final ServiceRegistry registry;
+    private final ServiceFanOut fanOut;
+    private final OrchestratedFanOutProperties properties;
+
+    public StructuredFanOut(ServiceRegistry registry, ServiceFanOut fanOut, OrchestratedFanOutProperties properties) {
+        this.registry = registry;
+        this.fanOut = fanOut;
+        this.properties = properties;
+    }
+
+    /**
+     * @param aiSource called once per service; {@code context::ai} gives each subtask its own {@link Ai}
+     */
+    public FanOutResults run(ServiceSelection selection, Supplier<Ai> aiSource) {
+        BranchContext.Fork fork = BranchContext.fork(SCOPE_NAME, aiSource);
+        Map<Integer, CommandService<?>> started = new LinkedHashMap<>();
+        // Keyed by call index, since a service can be selected twice. Written by the subtasks, read
+        // only after the scope has closed and every subtask has ended
+        Map<Integer, ServiceFanOut.Keyed> finished = new ConcurrentHashMap<>();
+        String unfinished;
+        try (var scope = StructuredTaskScope.open(joiner(),
+                config -> config.withName(SCOPE_NAME).withTimeout(RequestContext.cap(properties.deadline())))) {
+            List<ServiceSelection.Call> calls = selection.calls();
+            for (int i = 0; i < calls.size(); i++) {
+                int index = i;
+                ServiceSelection.Call call = calls.get(i);
+                registry.find(call.service()).ifPresent(service -> {
+                    started.put(index, service);
+                    BranchContext branch = fork.branch(service.key());
+                    // Scoped values reach subtasks on their own; the MDC has to be carried over
+                    scope.fork(ContextPropagatingExecutor.capture(() -> call(index, service, call.description(), branch, finished)));
+                });
+            }
+            scope.join();
+            unfinished = "cancelled";
+        } catch (StructuredTaskScope.FailedException e) {
+            unfinished = "cancelled because " + e.getCause().getMessage();
+        } catch (StructuredTaskScope.TimeoutException e) {
+            unfinished = "did not finish before the deadline";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unfinished = "interrupted";
+        }
+        fork.join();
+
+        for (var call : started.entrySet()) {
+            finished.putIfAbsent(call.getKey(), new ServiceFanOut.Keyed(call.getKey(), call.getValue(), ServiceResult.failed(unfinished)));
+        }
+        return fanOut.gather(finished.values());
+    }
+
+    private <T> Joiner<T, Void> joiner() {
+        return properties.policy() == OrchestratedFanOutProperties.Policy.FAIL_FAST
+                ? Joiner.awaitAllSuccessfulOrThrow()
+                : Joiner.awaitAll();
+    }
+
+    /**
+     * One subtask. Waits interruptibly on the service so that scope cancellation reaches the model call.
+     */
+    private void call(int index, CommandService<?> service, String description, BranchContext branch,
+                      Map<Integer, ServiceFanOut.Keyed> finished) {
+        Thread.currentThread().setName(SCOPE_NAME + "/" + service.key());
+        CompletableFuture<? extends ServiceResult> pending =
+                branch.run(ai -> service.executeAsync(description, ai).toCompletableFuture());
+        Duration timeout = RequestContext.cap(properties.callTimeoutFor(service.key()));
+        ServiceResult result;
+        try {
+            result = pending.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // The scope is ending; run() reports this service
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            result = ServiceResult.failed("timed out after " + timeout.toSeconds() + "s");
+        } catch (ExecutionException e) {
+            result = ServiceResult.failed(e.getCause().getMessage());
+        }
+        finished.put(index, new ServiceFanOut.Keyed(index, service, result));
+        if (!result.isSuccess() && properties.policy() == OrchestratedFanOutProperties.Policy.FAIL_FAST) {
+            throw new IllegalStateException(service.displayName() + " failed: " + result.errorMessage());
+        }
+    }
+}
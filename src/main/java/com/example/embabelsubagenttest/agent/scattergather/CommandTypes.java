@@ -1,11 +1,11 @@
 package com.example.embabelsubagenttest.agent.scattergather;
 
-import com.embabel.agent.api.common.SomeOf;
+import com.example.embabelsubagenttest.service.ServiceResult;
 import org.springframework.lang.Nullable;
 
 /**
- * Shared types for command orchestration.
- * Uses SomeOf pattern to allow LLM to determine which services to invoke.
+ * Shared request and result types for the banana art, fortune and joke services.
+ * Results implement {@link ServiceResult} so the fan-out engine can gather them generically.
  */
 public class CommandTypes {
 
@@ -19,25 +19,11 @@ public class CommandTypes {
     public record JokeRequest(String description) {
     }
 
-    /**
-     * CommandRequest implements SomeOf - LLM populates applicable fields.
-     * This allows a single LLM call to determine which services should be invoked.
-     */
-    public record CommandRequest(
-            @Nullable BananaArtRequest bananaArt,
-            @Nullable FortuneRequest fortune,
-            @Nullable JokeRequest joke
-    ) implements SomeOf {
-        public boolean isEmpty() {
-            return bananaArt == null && fortune == null && joke == null;
-        }
-    }
-
     // Result types (output from services)
     public record BananaArtResult(
             @Nullable String art,
             @Nullable String errorMessage
-    ) {
+    ) implements ServiceResult {
         public static BananaArtResult success(String art) {
             return new BananaArtResult(art, null);
         }
@@ -46,15 +32,17 @@ public class CommandTypes {
             return new BananaArtResult(null, message);
         }
 
-        public boolean isSuccess() {
-            return errorMessage == null;
+        @Override
+        @Nullable
+        public String content() {
+            return art;
         }
     }
 
     public record FortuneResult(
             @Nullable String fortune,
             @Nullable String errorMessage
-    ) {
+    ) implements ServiceResult {
         public static FortuneResult success(String fortune) {
             return new FortuneResult(fortune, null);
         }
@@ -63,15 +51,17 @@ public class CommandTypes {
             return new FortuneResult(null, message);
         }
 
-        public boolean isSuccess() {
-            return errorMessage == null;
+        @Override
+        @Nullable
+        public String content() {
+            return fortune;
         }
     }
 
     public record JokeResult(
             @Nullable String joke,
             @Nullable String errorMessage
-    ) {
+    ) implements ServiceResult {
         public static JokeResult success(String joke) {
             return new JokeResult(joke, null);
         }
@@ -80,19 +70,10 @@ public class CommandTypes {
             return new JokeResult(null, message);
         }
 
-        public boolean isSuccess() {
-            return errorMessage == null;
+        @Override
+        @Nullable
+        public String content() {
+            return joke;
         }
     }
-
-    /**
-     * Aggregated results from parallel execution.
-     * Contains results from all invoked services.
-     */
-    public record CommandResults(
-            @Nullable BananaArtResult bananaArt,
-            @Nullable FortuneResult fortune,
-            @Nullable JokeResult joke
-    ) {
-    }
 }
@@ -5,12 +5,15 @@ import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.annotation.RunSubagent;
 import com.embabel.agent.api.common.Ai;
-import com.embabel.agent.core.AgentPlatform;
-import com.embabel.agent.core.AgentProcess;
-import com.embabel.agent.core.ProcessOptions;
 import com.embabel.agent.domain.io.UserInput;
+import com.example.embabelsubagenttest.agent.Translator;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.remote.RemoteAgentExecutor;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,27 +25,30 @@ import java.util.stream.Collectors;
  * Uses pattern matching on UserIntent sealed interface for routing.
  * CommandOrchestrator uses ScatterGatherBuilder internally for parallel service execution.
  */
+@ConditionalOnProperty(name = "demo.patterns.scattergather.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Routes user requests to the appropriate specialist agent")
 public class ScatterGatherIntentAgent {
 
     private final CommandOrchestrator commandOrchestrator;
     private final ScatterGatherQueryAgent queryAgent;
-    private final AgentPlatform agentPlatform;
+    private final Classifier<UserIntent> intentClassifier;
+    private final RemoteAgentExecutor agents;
+    private final Translator translator;
 
-    public ScatterGatherIntentAgent(CommandOrchestrator commandOrchestrator, ScatterGatherQueryAgent queryAgent, AgentPlatform agentPlatform) {
+    public ScatterGatherIntentAgent(CommandOrchestrator commandOrchestrator, ScatterGatherQueryAgent queryAgent, ModelCascade cascade, RemoteAgentExecutor agents, Translator translator) {
         this.commandOrchestrator = commandOrchestrator;
         this.queryAgent = queryAgent;
-        this.agentPlatform = agentPlatform;
+        this.intentClassifier = cascade.classifier("classify-scattergather-intent", UserIntent.class, this::createClassifyIntentPrompt);
+        this.agents = agents;
+        this.translator = translator;
     }
 
     @Action
     public UserIntent classifyIntent(UserInput userInput, Ai ai) {
-        return ai.withAutoLlm()
-                .creating(UserIntent.class)
-                .fromPrompt(createClassifyIntentPrompt(userInput));
+        return intentClassifier.classify(ai, userInput.getContent());
     }
 
-    String createClassifyIntentPrompt(UserInput userInput) {
+    String createClassifyIntentPrompt(String message) {
         return String.format("""
                         Classify the user's intent:
                         - COMMAND: User wants to see banana ASCII art, get a fortune cookie message, or hear a dad joke (single action)
@@ -63,12 +69,12 @@ public class ScatterGatherIntentAgent {
                         - Query with the question they're asking
                         - Multiple with both commandDescription and queryQuestion filled in
                         - Unknown with the reason""",
-                userInput.getContent()).trim();
+                message).trim();
     }
 
     // Route based on intent type - RunSubagent puts intent on blackboard for subagent to access
     @Action
-    public AgentMessageResponse routeIntent(UserIntent intent) {
+    public AgentMessageResponse routeIntent(UserIntent intent, Ai ai) {
         return switch (intent) {
             case UserIntent.Command command -> RunSubagent
                     .fromAnnotatedInstance(commandOrchestrator, CommandOrchestrator.CommandOrchestratorResponse.class);
@@ -76,74 +82,49 @@ public class ScatterGatherIntentAgent {
                     .fromAnnotatedInstance(queryAgent, ScatterGatherQueryAgent.QuerySubagentResponse.class);
             case UserIntent.Unknown unknown ->
                     new UnknownResponse("I'm not sure what you're asking for: " + unknown.reason());
-            case UserIntent.Multiple multiple -> handleMultipleIntents(multiple);
+            case UserIntent.Multiple multiple -> handleMultipleIntents(multiple, ai);
         };
     }
 
+    /**
+     * Runs the command and the query in parallel. With {@code demo.translation.pipelined} each
+     * answer is translated as soon as it arrives and the result is marked as already translated.
+     */
     @Action
-    public MultipleIntentsResult handleMultipleIntents(UserIntent.Multiple multiple) {
-        List<CompletableFuture<AgentMessageResponse>> tasks = new ArrayList<>();
+    public MultipleIntentsResult handleMultipleIntents(UserIntent.Multiple multiple, Ai ai) {
+        List<CompletableFuture<String>> tasks = new ArrayList<>();
 
         // Add command task if present
         if (multiple.commandDescription() != null && !multiple.commandDescription().isBlank()) {
-            tasks.add(CompletableFuture.supplyAsync(() -> {
-                var agentWrapper = agentPlatform.agents().stream()
-                        .filter(a -> a.getName().equals(commandOrchestrator.getClass().getSimpleName()))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalStateException("CommandOrchestrator wrapper not found"));
-
-                AgentProcess agentProcess = agentPlatform.createAgentProcessFrom(
-                        agentWrapper,
-                        ProcessOptions.DEFAULT,
-                        new UserIntent.Command(multiple.commandDescription())
-                );
-                AgentProcess completedProcess = agentProcess.run();
-                return completedProcess.last(AgentMessageResponse.class);
-            }));
+            tasks.add(pipeline(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(() ->
+                    agents.run(CommandOrchestrator.class, new UserIntent.Command(multiple.commandDescription()), AgentMessageResponse.class))), ai));
         }
 
         // Add query task if present
         if (multiple.queryQuestion() != null && !multiple.queryQuestion().isBlank()) {
-            tasks.add(CompletableFuture.supplyAsync(() -> {
-                var agentWrapper = agentPlatform.agents().stream()
-                        .filter(a -> a.getName().equals(queryAgent.getClass().getSimpleName()))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalStateException("ScatterGatherQueryAgent wrapper not found"));
-
-                AgentProcess agentProcess = agentPlatform.createAgentProcessFrom(
-                        agentWrapper,
-                        ProcessOptions.DEFAULT,
-                        new UserIntent.Query(multiple.queryQuestion())
-                );
-                AgentProcess completedProcess = agentProcess.run();
-                return completedProcess.last(AgentMessageResponse.class);
-            }));
+            tasks.add(pipeline(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(() ->
+                    agents.run(ScatterGatherQueryAgent.class, new UserIntent.Query(multiple.queryQuestion()), AgentMessageResponse.class))), ai));
         }
 
-        // Wait for all tasks to complete and consolidate results
-        List<AgentMessageResponse> responses = tasks.stream()
+        // Wait for all tasks to complete and consolidate results in their original order
+        String consolidatedMessage = tasks.stream()
                 .map(CompletableFuture::join)
-                .toList();
+                .collect(Collectors.joining(Translator.PART_SEPARATOR));
 
-        String consolidatedMessage = responses.stream()
-                .map(AgentMessageResponse::message)
-                .collect(Collectors.joining("\n\n---\n\n"));
+        return new MultipleIntentsResult(consolidatedMessage, tasks.size(), translator.pipelined());
+    }
 
-        return new MultipleIntentsResult(consolidatedMessage, responses.size());
+    private CompletableFuture<String> pipeline(CompletableFuture<AgentMessageResponse> response, Ai ai) {
+        CompletableFuture<String> message = response.thenApply(AgentMessageResponse::message);
+        return translator.pipelined() ? message.thenCompose(m -> translator.translateAsync(ai, m)) : message;
     }
 
     @Action
     public TranslatedResponse translateToPortuguese(AgentMessageResponse response, Ai ai) {
-        String formatted = ai.withAutoLlm()
-                .withId("translate-to-portuguese")
-                .generateText("""
-                        Translate the following response into Portuguese.
-                        Keep the same tone and style, but make it natural Portuguese.
-                        If there's ASCII art, keep it intact.
-                        
-                        Original response:
-                        %s""".formatted(response.message()));
-        return new TranslatedResponse(formatted);
+        if (response instanceof MultipleIntentsResult result && result.translated()) {
+            return new TranslatedResponse(result.message());
+        }
+        return new TranslatedResponse(translator.translate(ai, response.message()));
     }
 
     @AchievesGoal(description = "User request satisfied")
@@ -183,6 +164,9 @@ public class ScatterGatherIntentAgent {
     public record UnknownResponse(String message) implements AgentMessageResponse {
     }
 
-    public record MultipleIntentsResult(String message, int responseCount) implements AgentMessageResponse {
+    /**
+     * @param translated the parts were already translated one by one (pipelined translation)
+     */
+    public record MultipleIntentsResult(String message, int responseCount, boolean translated) implements AgentMessageResponse {
     }
 }
@@ -4,20 +4,27 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.statepattern.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Generates ASCII art of fruits with various styles and sizes")
 public class StatePatternBananaArtAgent {
 
+    private final StructuredOutputRegistry structuredOutputs;
+
+    public StatePatternBananaArtAgent(StructuredOutputRegistry structuredOutputs) {
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(ArtStyle.class);
+    }
+
     @AchievesGoal(description = "ASCII art generated")
     @Action
     public ArtResponse generateArt(ArtRequest request, Ai ai) {
         // Classify the style preference
-        ArtStyle style = ai.withAutoLlm()
-                .withId("classify-art-style")
-                .creating(ArtStyle.class)
-                .fromPrompt("""
+        ArtStyle style = structuredOutputs.create(ai.withAutoLlm(), "classify-art-style", ArtStyle.class, """
                         Classify the user's art style preference:
                         - CLASSIC: Traditional detailed ASCII art (default if not specified)
                         - SIMPLE: Minimalist, small ASCII art
@@ -4,18 +4,34 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import com.example.embabelsubagenttest.service.NearDuplicateIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+import java.util.ArrayList;
+import java.util.List;
+
+@ConditionalOnProperty(name = "demo.patterns.statepattern.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Tells dad jokes")
 public class StatePatternDadJokeAgent {
 
+    private final NearDuplicateIndex nearDuplicates;
+    private final StructuredOutputRegistry structuredOutputs;
+    private final LlmCalls llm;
+
+    public StatePatternDadJokeAgent(NearDuplicateIndex nearDuplicates, StructuredOutputRegistry structuredOutputs, LlmCalls llm) {
+        this.nearDuplicates = nearDuplicates;
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(JokeStyle.class);
+        this.llm = llm;
+    }
+
     @AchievesGoal(description = "Dad joke told")
     @Action
     public JokeResponse tellJoke(JokeRequest request, Ai ai) {
         // Classify the domain and format
-        JokeStyle style = ai.withAutoLlm()
-                .withId("classify-joke-style")
-                .creating(JokeStyle.class)
-                .fromPrompt("""
+        JokeStyle style = structuredOutputs.create(ai.withAutoLlm(), "classify-joke-style", JokeStyle.class, """
                         Classify the user's joke preferences:
                         
                         Domains:
@@ -34,9 +50,22 @@ public class StatePatternDadJokeAgent {
                         
                         Return both domain and format.""".formatted(request.description()));
 
-        String joke = ai.withAutoLlm()
-                .withId("generate-joke")
-                .generateText("""
+        // Regenerate if this audience was recently told a near-identical joke
+        List<String> rejected = new ArrayList<>();
+        String audience = NearDuplicateIndex.currentAudience();
+        String joke = generateJoke(style, ai, rejected);
+        while (nearDuplicates.seenRecently(audience, joke)
+                && rejected.size() < nearDuplicates.maxRegenerations()) {
+            rejected.add(joke);
+            joke = generateJoke(style, ai, rejected);
+        }
+        nearDuplicates.record(audience, joke);
+
+        return new JokeResponse(joke);
+    }
+
+    private String generateJoke(JokeStyle style, Ai ai, List<String> avoid) {
+        return llm.generateText(ai.withAutoLlm(), "generate-joke", """
                         Generate a dad joke with these characteristics:
                         Domain: %s
                         Format: %s
@@ -53,9 +82,7 @@ public class StatePatternDadJokeAgent {
                                 getDomainDescription(style.domain()),
                                 getFormatDescription(style.format()),
                                 getFormatInstructions(style.format())
-                        ));
-
-        return new JokeResponse(joke);
+                        ) + NearDuplicateIndex.avoidInstructions(avoid));
     }
 
     private String getDomainDescription(JokeDomain domain) {
@@ -4,18 +4,28 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.statepattern.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Generates contextual fortune cookie messages with various tones and categories")
 public class StatePatternFortuneCookieAgent {
 
+    private final StructuredOutputRegistry structuredOutputs;
+    private final LlmCalls llm;
+
+    public StatePatternFortuneCookieAgent(StructuredOutputRegistry structuredOutputs, LlmCalls llm) {
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(FortuneStyle.class);
+        this.llm = llm;
+    }
+
     @AchievesGoal(description = "Fortune cookie message generated")
     @Action
     public FortuneResponse generateFortune(FortuneRequest request, Ai ai) {
         // Classify the category and tone
-        FortuneStyle style = ai.withAutoLlm()
-                .withId("classify-fortune-style")
-                .creating(FortuneStyle.class)
-                .fromPrompt("""
+        FortuneStyle style = structuredOutputs.create(ai.withAutoLlm(), "classify-fortune-style", FortuneStyle.class, """
                         Classify the user's fortune cookie preferences:
                         
                         Categories:
@@ -34,9 +44,7 @@ public class StatePatternFortuneCookieAgent {
                         
                         Return both category and tone.""".formatted(request.description()));
 
-        String fortune = ai.withAutoLlm()
-                .withId("generate-fortune-message")
-                .generateText("""
+        String fortune = llm.generateText(ai.withAutoLlm(), "generate-fortune-message", """
                         Generate a fortune cookie message with these characteristics:
                         Category: %s
                         Tone: %s
@@ -4,49 +4,90 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.annotation.State;
+import com.embabel.agent.api.common.ActionContext;
 import com.embabel.agent.api.common.Ai;
 import com.embabel.agent.api.common.SomeOf;
-import com.embabel.agent.api.invocation.AgentInvocation;
-import com.embabel.agent.core.AgentPlatform;
 import com.embabel.agent.domain.io.UserInput;
+import com.example.embabelsubagenttest.agent.Translator;
+import com.example.embabelsubagenttest.llm.BranchContext;
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import com.example.embabelsubagenttest.remote.RemoteAgentExecutor;
+import com.example.embabelsubagenttest.routing.LocalIntentRouter;
+import com.example.embabelsubagenttest.routing.Route;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+@ConditionalOnProperty(name = "demo.patterns.statepattern.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Routes user requests to the appropriate specialist agent")
 public class StatePatternIntentAgent {
 
-    private final AgentPlatform agentPlatform;
-
-    public StatePatternIntentAgent(AgentPlatform agentPlatform) {
-        this.agentPlatform = agentPlatform;
+    /**
+     * Single commands and queries are built from the raw input when the local router is confident;
+     * multiple and unknown intents always go to the LLM.
+     */
+    public static final Route<UserIntent> INTENT_ROUTE = Route.of("statepattern-intent", UserIntent.class, "statepattern-intent")
+            .direct(UserIntent.Command.class, UserIntent.Command::new)
+            .direct(UserIntent.Query.class, UserIntent.Query::new);
+
+    public static final Route<CommandType> COMMAND_ROUTE = Route.of("statepattern-command", CommandType.class, "commands", "multiple-commands")
+            .direct(CommandType.BananaArt.class, _ -> new CommandType.BananaArt())
+            .direct(CommandType.FortuneCookie.class, _ -> new CommandType.FortuneCookie())
+            .direct(CommandType.DadJoke.class, _ -> new CommandType.DadJoke());
+
+    private final RemoteAgentExecutor agents;
+    private final StructuredOutputRegistry structuredOutputs;
+    private final LocalIntentRouter router;
+    private final LlmCalls llm;
+    private final Translator translator;
+    private final Classifier<UserIntent> intentClassifier;
+
+    public StatePatternIntentAgent(RemoteAgentExecutor agents, StructuredOutputRegistry structuredOutputs, LocalIntentRouter router, LlmCalls llm, Translator translator, ModelCascade cascade) {
+        this.agents = agents;
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(CommandType.class);
+        this.router = router;
+        router.register(INTENT_ROUTE);
+        router.register(COMMAND_ROUTE);
+        this.llm = llm;
+        this.translator = translator;
+        this.intentClassifier = cascade.classifier("classify-statepattern-intent", UserIntent.class, this::createClassifyIntentPrompt);
     }
 
     @Action
     public IntentState classifyAndRoute(UserInput userInput, Ai ai) {
-        UserIntent intent = ai.withAutoLlm()
-                .creating(UserIntent.class)
-                .fromPrompt(createClassifyIntentPrompt(userInput));
+        UserIntent intent = router.route(INTENT_ROUTE, userInput.getContent(),
+                () -> intentClassifier.classify(ai, userInput.getContent()));
 
         return switch (intent) {
-            case UserIntent.Query query -> new QueryState(query);
-            case UserIntent.Command command -> new CommandState(command, agentPlatform);
-            case UserIntent.Unknown unknown -> new UnknownState(unknown);
+            case UserIntent.Query query -> new QueryState(query, llm, translator);
+            case UserIntent.Command command -> new CommandState(command, agents, structuredOutputs, router, llm, translator);
+            case UserIntent.Unknown unknown -> new UnknownState(unknown, translator);
             case UserIntent.Multiple multiple -> new MultiIntentState(
                     new MultipleIntents(
                             new UserIntent.Command(multiple.commandDescription()),
                             new UserIntent.Query(multiple.queryQuestion())
                     ),
-                    agentPlatform
+                    agents,
+                    structuredOutputs,
+                    router,
+                    llm,
+                    translator
             );
         };
     }
 
-    String createClassifyIntentPrompt(UserInput userInput) {
+    String createClassifyIntentPrompt(String message) {
         return String.format("""
                         Classify the user's intent:
                         - COMMAND: User wants to see banana ASCII art, get a fortune cookie message, or hear a dad joke (single action)
@@ -67,7 +108,7 @@ public class StatePatternIntentAgent {
                         - Query with the question they're asking
                         - Multiple with both commandDescription and queryQuestion filled in
                         - Unknown with the reason""",
-                userInput.getContent()).trim();
+                message).trim();
     }
 
     @State
@@ -124,25 +165,22 @@ public class StatePatternIntentAgent {
     }
 
     @State
-    public record QueryState(UserIntent.Query query) implements IntentState {
+    public record QueryState(UserIntent.Query query, LlmCalls llm, Translator translator) implements IntentState {
         @Action
         public PreTranslationState processQuery(Ai ai) {
-            StatePatternQueryAgent.QuerySubagentResponse response = ai.withAutoLlm()
-                    .withId("respond-to-query")
-                    .creating(StatePatternQueryAgent.QuerySubagentResponse.class)
-                    .fromPrompt("""
+            StatePatternQueryAgent.QuerySubagentResponse response = llm.createObject(ai.withAutoLlm(), "respond-to-query", StatePatternQueryAgent.QuerySubagentResponse.class, """
                             You are a helpful assistant. Answer the user's question.
                             
                             User question: %s""".formatted(query.question()));
-            return new PreTranslationState(response.message());
+            return new PreTranslationState(response.message(), translator);
         }
     }
 
     @State
-    public record UnknownState(UserIntent.Unknown unknown) implements IntentState {
+    public record UnknownState(UserIntent.Unknown unknown, Translator translator) implements IntentState {
         @Action
         public PreTranslationState handleUnknown() {
-            return new PreTranslationState("I'm not sure what you're asking for: " + unknown.reason());
+            return new PreTranslationState("I'm not sure what you're asking for: " + unknown.reason(), translator);
         }
     }
 
@@ -158,19 +196,10 @@ public class StatePatternIntentAgent {
     }
 
     @State
-    public record PreTranslationState(String message) implements IntentState {
+    public record PreTranslationState(String message, Translator translator) implements IntentState {
         @Action
         public FinalState translate(Ai ai) {
-            String translated = ai.withAutoLlm()
-                    .withId("translate-to-portuguese")
-                    .generateText("""
-                            Translate the following response into Portuguese.
-                            Keep the same tone and style, but make it natural Portuguese.
-                            If there's ASCII art, keep it intact.
-                            
-                            Original response:
-                            %s""".formatted(message));
-            return new FinalState(translated);
+            return new FinalState(translator.translate(ai, message));
         }
     }
 
@@ -184,42 +213,45 @@ public class StatePatternIntentAgent {
     }
 
     /**
-     * Handles multiple intents by executing them in parallel using CompletableFuture.
+     * Handles multiple intents by executing them in parallel using CompletableFuture, one
+     * {@link BranchContext} branch per intent so each keeps its own {@link Ai} and LLM usage.
      * This pattern can be reused for any scenario requiring parallel agent execution.
      */
     @State
-    public record MultiIntentState(MultipleIntents intents, AgentPlatform agentPlatform) implements IntentState {
+    public record MultiIntentState(MultipleIntents intents, RemoteAgentExecutor agents, StructuredOutputRegistry structuredOutputs, LocalIntentRouter router, LlmCalls llm, Translator translator) implements IntentState {
         @Action
-        public PreTranslationState processMultipleIntents(Ai ai) {
+        public PreTranslationState processMultipleIntents(ActionContext context) {
+            BranchContext.Fork fork = BranchContext.fork("multi-intent", context::ai);
             List<CompletableFuture<String>> futures = new ArrayList<>();
 
             // Add command processing task if present
             if (intents.command() != null) {
-                futures.add(CompletableFuture.supplyAsync(() ->
-                        processCommand(intents.command(), ai)
-                ));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("command").bind(branchAi ->
+                        processCommand(intents.command(), branchAi, context::ai)
+                ))));
             }
 
             // Add query processing task if present
             if (intents.query() != null) {
-                futures.add(CompletableFuture.supplyAsync(() ->
-                        processQuery(intents.query(), ai)
-                ));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("query").bind(branchAi ->
+                        processQuery(intents.query(), branchAi)
+                ))));
             }
 
             // Wait for all tasks to complete and combine results
-            String combinedMessage = futures.stream()
-                    .map(CompletableFuture::join)
-                    .collect(Collectors.joining("\n\n"));
-
-            return new PreTranslationState(combinedMessage);
+            try {
+                String combinedMessage = futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.joining("\n\n"));
+                return new PreTranslationState(combinedMessage, translator);
+            } finally {
+                fork.join();
+            }
         }
 
-        private String processCommand(UserIntent.Command command, Ai ai) {
+        private String processCommand(UserIntent.Command command, Ai ai, Supplier<Ai> aiSource) {
             // Classify and route the command
-            CommandType commandType = ai.withAutoLlm()
-                    .creating(CommandType.class)
-                    .fromPrompt("""
+            CommandType commandType = router.route(COMMAND_ROUTE, command.description(), () -> structuredOutputs.create(ai.withAutoLlm(), "classify-statepattern-command", CommandType.class, """
                             Classify the user's command into one of these categories:
                             - BANANA_ART: User wants ONLY to see ASCII art of bananas
                             - FORTUNE_COOKIE: User wants ONLY a fortune cookie message or inspirational quote
@@ -229,40 +261,43 @@ public class StatePatternIntentAgent {
                             
                             User command: %s
                             
-                            Return the appropriate type.""".formatted(command.description()));
+                            Return the appropriate type.""".formatted(command.description())));
 
             return switch (commandType) {
                 case CommandType.BananaArt ignored -> invokeStatePatternBananaArtAgent(command);
                 case CommandType.FortuneCookie ignored -> invokeStatePatternFortuneCookieAgent(command);
                 case CommandType.DadJoke ignored -> invokeStatePatternDadJokeAgent(command);
-                case CommandType.Multiple multiple -> processMultipleCommandsInternal(multiple, command);
+                case CommandType.Multiple multiple -> processMultipleCommandsInternal(multiple, command, aiSource);
                 case CommandType.Unknown unknown -> "Sorry, I don't understand that command: " + unknown.reason();
             };
         }
 
-        private String processMultipleCommandsInternal(CommandType.Multiple multiple, UserIntent.Command command) {
+        private String processMultipleCommandsInternal(CommandType.Multiple multiple, UserIntent.Command command, Supplier<Ai> aiSource) {
+            // Nested under the command branch, which receives these branches' usage on join
+            BranchContext.Fork fork = BranchContext.fork("commands", aiSource);
             List<CompletableFuture<String>> futures = new ArrayList<>();
 
             if (multiple.wantsBanana()) {
-                futures.add(CompletableFuture.supplyAsync(() -> invokeStatePatternBananaArtAgent(command)));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("banana").bind(_ -> invokeStatePatternBananaArtAgent(command)))));
             }
             if (multiple.wantsFortune()) {
-                futures.add(CompletableFuture.supplyAsync(() -> invokeStatePatternFortuneCookieAgent(command)));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("fortune").bind(_ -> invokeStatePatternFortuneCookieAgent(command)))));
             }
             if (multiple.wantsJoke()) {
-                futures.add(CompletableFuture.supplyAsync(() -> invokeStatePatternDadJokeAgent(command)));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("joke").bind(_ -> invokeStatePatternDadJokeAgent(command)))));
             }
 
-            return futures.stream()
-                    .map(CompletableFuture::join)
-                    .collect(Collectors.joining("\n\n"));
+            try {
+                return futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.joining("\n\n"));
+            } finally {
+                fork.join();
+            }
         }
 
         private String processQuery(UserIntent.Query query, Ai ai) {
-            StatePatternQueryAgent.QuerySubagentResponse response = ai.withAutoLlm()
-                    .withId("respond-to-query")
-                    .creating(StatePatternQueryAgent.QuerySubagentResponse.class)
-                    .fromPrompt("""
+            StatePatternQueryAgent.QuerySubagentResponse response = llm.createObject(ai.withAutoLlm(), "respond-to-query", StatePatternQueryAgent.QuerySubagentResponse.class, """
                             You are a helpful assistant. Answer the user's question.
                             
                             User question: %s""".formatted(query.question()));
@@ -270,34 +305,29 @@ public class StatePatternIntentAgent {
         }
 
         private String invokeStatePatternBananaArtAgent(UserIntent.Command command) {
-            StatePatternBananaArtAgent.ArtResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternBananaArtAgent.ArtResponse.class)
-                    .invoke(new StatePatternBananaArtAgent.ArtRequest(command.description()));
+            StatePatternBananaArtAgent.ArtResponse response = agents.run(StatePatternBananaArtAgent.class,
+                    new StatePatternBananaArtAgent.ArtRequest(command.description()), StatePatternBananaArtAgent.ArtResponse.class);
             return response.message();
         }
 
         private String invokeStatePatternFortuneCookieAgent(UserIntent.Command command) {
-            StatePatternFortuneCookieAgent.FortuneResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternFortuneCookieAgent.FortuneResponse.class)
-                    .invoke(new StatePatternFortuneCookieAgent.FortuneRequest(command.description()));
+            StatePatternFortuneCookieAgent.FortuneResponse response = agents.run(StatePatternFortuneCookieAgent.class,
+                    new StatePatternFortuneCookieAgent.FortuneRequest(command.description()), StatePatternFortuneCookieAgent.FortuneResponse.class);
             return response.message();
         }
 
         private String invokeStatePatternDadJokeAgent(UserIntent.Command command) {
-            StatePatternDadJokeAgent.JokeResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternDadJokeAgent.JokeResponse.class)
-                    .invoke(new StatePatternDadJokeAgent.JokeRequest(command.description()));
+            StatePatternDadJokeAgent.JokeResponse response = agents.run(StatePatternDadJokeAgent.class,
+                    new StatePatternDadJokeAgent.JokeRequest(command.description()), StatePatternDadJokeAgent.JokeResponse.class);
             return response.message();
         }
     }
 
     @State
-    public record CommandState(UserIntent.Command command, AgentPlatform agentPlatform) implements IntentState {
+    public record CommandState(UserIntent.Command command, RemoteAgentExecutor agents, StructuredOutputRegistry structuredOutputs, LocalIntentRouter router, LlmCalls llm, Translator translator) implements IntentState {
         @Action
-        public PreTranslationState processCommand(Ai ai) {
-            CommandType commandType = ai.withAutoLlm()
-                    .creating(CommandType.class)
-                    .fromPrompt("""
+        public PreTranslationState processCommand(ActionContext context) {
+            CommandType commandType = router.route(COMMAND_ROUTE, command.description(), () -> structuredOutputs.create(context.ai().withAutoLlm(), "classify-statepattern-command", CommandType.class, """
                             Classify the user's command into one of these categories:
                             - BANANA_ART: User wants ONLY to see ASCII art of bananas
                             - FORTUNE_COOKIE: User wants ONLY a fortune cookie message or inspirational quote
@@ -314,60 +344,62 @@ public class StatePatternIntentAgent {
                             
                             User command: %s
                             
-                            Return the appropriate type.""".formatted(command.description()));
+                            Return the appropriate type.""".formatted(command.description())));
 
             String message = switch (commandType) {
                 case CommandType.BananaArt ignored -> invokeStatePatternBananaArtAgent();
                 case CommandType.FortuneCookie ignored -> invokeStatePatternFortuneCookieAgent();
                 case CommandType.DadJoke ignored -> invokeStatePatternDadJokeAgent();
-                case CommandType.Multiple multiple -> processMultipleCommands(multiple);
+                case CommandType.Multiple multiple -> processMultipleCommands(multiple, context);
                 case CommandType.Unknown unknown -> "Sorry, I don't understand that command: " + unknown.reason();
             };
 
-            return new PreTranslationState(message);
+            return new PreTranslationState(message, translator);
         }
 
         /**
-         * Processes multiple commands in parallel using CompletableFuture.
+         * Processes multiple commands in parallel using CompletableFuture, one branch context per command.
          * This allows requests like "show me a banana and tell me a joke" to execute concurrently.
          */
-        private String processMultipleCommands(CommandType.Multiple multiple) {
+        private String processMultipleCommands(CommandType.Multiple multiple, ActionContext context) {
+            BranchContext.Fork fork = BranchContext.fork("commands", context::ai);
             List<CompletableFuture<String>> futures = new ArrayList<>();
 
             if (multiple.wantsBanana()) {
-                futures.add(CompletableFuture.supplyAsync(this::invokeStatePatternBananaArtAgent));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("banana").bind(_ -> invokeStatePatternBananaArtAgent()))));
             }
             if (multiple.wantsFortune()) {
-                futures.add(CompletableFuture.supplyAsync(this::invokeStatePatternFortuneCookieAgent));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("fortune").bind(_ -> invokeStatePatternFortuneCookieAgent()))));
             }
             if (multiple.wantsJoke()) {
-                futures.add(CompletableFuture.supplyAsync(this::invokeStatePatternDadJokeAgent));
+                futures.add(CompletableFuture.supplyAsync(ContextPropagatingExecutor.capture(fork.branch("joke").bind(_ -> invokeStatePatternDadJokeAgent()))));
             }
 
             // Wait for all commands to complete and combine results
-            return futures.stream()
-                    .map(CompletableFuture::join)
-                    .collect(Collectors.joining("\n\n"));
+            try {
+                return futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.joining("\n\n"));
+            } finally {
+                fork.join();
+            }
         }
 
         private String invokeStatePatternBananaArtAgent() {
-            StatePatternBananaArtAgent.ArtResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternBananaArtAgent.ArtResponse.class)
-                    .invoke(new StatePatternBananaArtAgent.ArtRequest(command.description()));
+            StatePatternBananaArtAgent.ArtResponse response = agents.run(StatePatternBananaArtAgent.class,
+                    new StatePatternBananaArtAgent.ArtRequest(command.description()), StatePatternBananaArtAgent.ArtResponse.class);
             return response.message();
         }
 
         private String invokeStatePatternFortuneCookieAgent() {
-            StatePatternFortuneCookieAgent.FortuneResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternFortuneCookieAgent.FortuneResponse.class)
-                    .invoke(new StatePatternFortuneCookieAgent.FortuneRequest(command.description()));
+            StatePatternFortuneCookieAgent.FortuneResponse response = agents.run(StatePatternFortuneCookieAgent.class,
+                    new StatePatternFortuneCookieAgent.FortuneRequest(command.description()), StatePatternFortuneCookieAgent.FortuneResponse.class);
             return response.message();
         }
 
         private String invokeStatePatternDadJokeAgent() {
-            StatePatternDadJokeAgent.JokeResponse response = AgentInvocation
-                    .create(agentPlatform, StatePatternDadJokeAgent.JokeResponse.class)
-                    .invoke(new StatePatternDadJokeAgent.JokeRequest(command.description()));
+            StatePatternDadJokeAgent.JokeResponse response = agents.run(StatePatternDadJokeAgent.class,
+                    new StatePatternDadJokeAgent.JokeRequest(command.description()), StatePatternDadJokeAgent.JokeResponse.class);
             return response.message();
         }
     }
@@ -4,16 +4,22 @@ import com.embabel.agent.api.annotation.AchievesGoal;
 import com.embabel.agent.api.annotation.Action;
 import com.embabel.agent.api.annotation.Agent;
 import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+@ConditionalOnProperty(name = "demo.patterns.statepattern.enabled", havingValue = "true", matchIfMissing = true)
 @Agent(description = "Respond to query")
 public class StatePatternQueryAgent {
+    private final LlmCalls llm;
+
+    public StatePatternQueryAgent(LlmCalls llm) {
+        this.llm = llm;
+    }
+
     @AchievesGoal(description = "User question is answered.")
     @Action
     public QuerySubagentResponse answerUserQuestion(StatePatternIntentAgent.UserIntent.Query query, Ai ai) {
-        return ai.withAutoLlm()
-                .withId("respond-to-query")
-                .creating(QuerySubagentResponse.class)
-                .fromPrompt("""
+        return llm.createObject(ai.withAutoLlm(), "respond-to-query", QuerySubagentResponse.class, """
                         You are a helpful assistant. Answer the user's question.
                         
                         User question: %s""".formatted(query.question()));
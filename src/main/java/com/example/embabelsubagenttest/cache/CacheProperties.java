@@ -0,0 +1,40 @@
+package com.example.embabelsubagenttest.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Two-level cache settings, bound from {@code demo.cache.*}.
+ *
+ * @param shared           shared tier implementation; {@code local} is the embedded in-process tier
+ * @param nearSize         entries each node keeps on heap per cache
+ * @param nearSizes        per-cache overrides of {@code nearSize}, keyed by cache name
+ * @param nearTtl          how long a node serves an entry from its heap before asking the shared tier again; bounds
+ *                         staleness if an invalidation is missed
+ * @param sharedTtl        how long the shared tier keeps an entry
+ * @param sharedMaxEntries entries the embedded shared tier holds before evicting the least recently used
+ * @param lockLease        how long a node may hold a key's load lock; others wait at most this long, then load themselves
+ * @param lockPoll         how often a waiting node checks whether the lock holder has published the value
+ */
+@ConfigurationProperties("demo.cache")
+public record CacheProperties(
+        @DefaultValue("local") String shared,
+        @DefaultValue("256") int nearSize,
+        @DefaultValue Map<String, Integer> nearSizes,
+        @DefaultValue("10m") Duration nearTtl,
+        @DefaultValue("1h") Duration sharedTtl,
+        @DefaultValue("10000") int sharedMaxEntries,
+        @DefaultValue("30s") Duration lockLease,
+        @DefaultValue("50ms") Duration lockPoll
+) {
+    public CacheProperties {
+        nearSizes = nearSizes == null ? Map.of() : Map.copyOf(nearSizes);
+    }
+
+    public int nearSizeFor(String cache) {
+        return nearSizes.getOrDefault(cache, nearSize);
+    }
+}
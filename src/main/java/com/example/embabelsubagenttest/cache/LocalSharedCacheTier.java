@@ -0,0 +1,110 @@
+package com.example.embabelsubagenttest.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Embedded shared tier: a bounded LRU map, lease-based locks and synchronous invalidation
+ * callbacks, all in this JVM. Several {@link TieredCache}s on top of one instance behave like
+ * nodes sharing a cluster tier, which makes cross-node single-flight testable on one machine.
+ */
+@Component
+@ConditionalOnProperty(name = "demo.cache.shared", havingValue = "local", matchIfMissing = true)
+public class LocalSharedCacheTier implements SharedCacheTier {
+
+    private final Map<String, Entry> entries;
+    private final Map<String, Lease> locks = new ConcurrentHashMap<>();
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    public LocalSharedCacheTier(CacheProperties properties) {
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > properties.sharedMaxEntries();
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<String> get(String cache, String key) {
+        String id = id(cache, key);
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresNanos() - System.nanoTime() < 0) {
+            entries.remove(id);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value());
+    }
+
+    @Override
+    public void put(String cache, String key, String value, Duration ttl) {
+        long now = System.nanoTime();
+        Entry previous;
+        synchronized (this) {
+            previous = entries.put(id(cache, key), new Entry(value, now + ttl.toNanos()));
+        }
+        if (previous != null && previous.expiresNanos() - now >= 0 && !previous.value().equals(value)) {
+            publish(new Invalidation(cache, key));
+        }
+    }
+
+    @Override
+    public Optional<String> tryLock(String cache, String key, Duration lease) {
+        String token = UUID.randomUUID().toString();
+        long now = System.nanoTime();
+        Lease mine = new Lease(token, now + lease.toNanos());
+        Lease holder = locks.compute(id(cache, key), (_, current) ->
+                current == null || current.expiresNanos() - now < 0 ? mine : current);
+        return holder == mine ? Optional.of(token) : Optional.empty();
+    }
+
+    @Override
+    public void unlock(String cache, String key, String token) {
+        locks.computeIfPresent(id(cache, key), (_, current) -> current.token().equals(token) ? null : current);
+    }
+
+    @Override
+    public void invalidate(String cache, @Nullable String key) {
+        synchronized (this) {
+            if (key != null) {
+                entries.remove(id(cache, key));
+            } else {
+                entries.keySet().removeIf(id -> id.startsWith(cache + '\u0000'));
+            }
+        }
+        publish(new Invalidation(cache, key));
+    }
+
+    @Override
+    public void onInvalidation(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(Invalidation invalidation) {
+        listeners.forEach(listener -> listener.accept(invalidation));
+    }
+
+    private static String id(String cache, String key) {
+        return cache + '\u0000' + key;
+    }
+
+    private record Entry(String value, long expiresNanos) {
+    }
+
+    private record Lease(String token, long expiresNanos) {
+    }
+}
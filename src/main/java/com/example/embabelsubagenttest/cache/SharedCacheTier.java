@@ -0,0 +1,52 @@
+package com.example.embabelsubagenttest.cache;
+
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The cluster-wide level of a {@link TieredCache}: values, load locks and invalidations shared by
+ * every node. Values are strings (JSON) so any key-value store can hold them. {@link LocalSharedCacheTier}
+ * is the embedded implementation; a networked one (Redis, a database table) implements the same
+ * calls and is selected with {@code demo.cache.shared}.
+ */
+public interface SharedCacheTier {
+
+    Optional<String> get(String cache, String key);
+
+    /**
+     * Stores the value. Replacing a different live value also notifies the {@link #onInvalidation}
+     * listeners, so nodes drop the old one from their near caches.
+     */
+    void put(String cache, String key, String value, Duration ttl);
+
+    /**
+     * Takes the load lock of a key for at most {@code lease}, so only one node computes a missing value.
+     *
+     * @return a token for {@link #unlock}, or empty if another node holds the lock
+     */
+    Optional<String> tryLock(String cache, String key, Duration lease);
+
+    /**
+     * Releases the lock if {@code token} still owns it; a lock whose lease ran out may belong to someone else by now.
+     */
+    void unlock(String cache, String key, String token);
+
+    /**
+     * Drops the key, or with a null key the whole cache, here and in every node's near cache.
+     */
+    void invalidate(String cache, @Nullable String key);
+
+    /**
+     * Registers a node-local listener for invalidations, including ones issued by other nodes.
+     */
+    void onInvalidation(Consumer<Invalidation> listener);
+
+    /**
+     * @param key null when the whole cache was invalidated
+     */
+    record Invalidation(String cache, @Nullable String key) {
+    }
+}
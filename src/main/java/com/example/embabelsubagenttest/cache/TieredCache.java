@@ -0,0 +1,246 @@
+package com.example.embabelsubagenttest.cache;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A named cache with two levels: a bounded LRU near cache on this node's heap, in front of the
+ * {@link SharedCacheTier} every node reads and writes. A miss in both is loaded once: concurrent
+ * callers on this node wait for the first, and across nodes the loader holds the key's lock in the
+ * shared tier while the others poll for the value it publishes. Invalidations reach every node's
+ * near cache through the shared tier. Obtained from {@link TieredCaches}.
+ */
+public final class TieredCache<V> {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final String name;
+    private final Class<V> type;
+    private final SharedCacheTier shared;
+    private final CacheProperties properties;
+    private final LiveStats.Cache nearStats;
+    private final LiveStats.Cache sharedStats;
+    private final Map<String, Near<V>> near;
+    private final Map<String, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    TieredCache(String name, Class<V> type, int nearSize, SharedCacheTier shared, CacheProperties properties,
+                LiveStats.Cache nearStats, LiveStats.Cache sharedStats) {
+        this.name = name;
+        this.type = type;
+        this.shared = shared;
+        this.properties = properties;
+        this.nearStats = nearStats;
+        this.sharedStats = sharedStats;
+        this.near = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Near<V>> eldest) {
+                return size() > nearSize;
+            }
+        };
+        shared.onInvalidation(invalidation -> {
+            if (invalidation.cache().equals(name)) {
+                dropNear(invalidation.key());
+            }
+        });
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * The cached value, loading it with {@code loader} if neither level has it. A null result is not cached.
+     */
+    @Nullable
+    public V get(String key, Supplier<V> loader) {
+        V value = nearGet(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            value = loadOnce(key, loader);
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Errors too: waiters on this key would otherwise block forever
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /**
+     * The cached value from either level, without loading; for callers that would rather skip the work.
+     */
+    @Nullable
+    public V getIfPresent(String key) {
+        V value = nearGet(key);
+        return value != null ? value : sharedGet(key, true).orElse(null);
+    }
+
+    /**
+     * Stores the value on both levels. Overwriting a different value drops the old one from every
+     * node's near cache, through the shared tier's invalidations.
+     */
+    public void put(String key, V value) {
+        shared.put(name, key, encode(value), properties.sharedTtl());
+        nearPut(key, value);
+    }
+
+    /**
+     * Drops the key on every node.
+     */
+    public void invalidate(String key) {
+        shared.invalidate(name, key);
+    }
+
+    public void invalidateAll() {
+        shared.invalidate(name, null);
+    }
+
+    private V loadOnce(String key, Supplier<V> loader) {
+        Optional<V> cached = sharedGet(key, true);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long waitUntil = System.nanoTime() + properties.lockLease().toNanos();
+        Optional<String> token;
+        while ((token = shared.tryLock(name, key, properties.lockLease())).isEmpty()) {
+            // Another node is loading this key: wait for it to publish, unless it seems to have died
+            if (System.nanoTime() - waitUntil > 0) {
+                return loadAndPublish(key, loader);
+            }
+            sleep();
+            cached = sharedGet(key, false);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        try {
+            // The previous holder may have published between our miss and our lock
+            cached = sharedGet(key, false);
+            return cached.isPresent() ? cached.get() : loadAndPublish(key, loader);
+        } finally {
+            shared.unlock(name, key, token.get());
+        }
+    }
+
+    private V loadAndPublish(String key, Supplier<V> loader) {
+        V value = loader.get();
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Nullable
+    private V nearGet(String key) {
+        V value;
+        synchronized (near) {
+            Near<V> entry = near.get(key);
+            value = entry == null ? null : entry.valueIfFresh(System.nanoTime());
+            if (entry != null && value == null) {
+                near.remove(key);
+            }
+        }
+        if (value != null) {
+            nearStats.hit();
+        } else {
+            nearStats.miss();
+        }
+        return value;
+    }
+
+    private void nearPut(String key, V value) {
+        synchronized (near) {
+            near.put(key, new Near<>(value, System.nanoTime() + properties.nearTtl().toNanos()));
+        }
+    }
+
+    private void dropNear(@Nullable String key) {
+        synchronized (near) {
+            if (key == null) {
+                near.clear();
+            } else {
+                near.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @param count false while polling for another node's load, so waiting does not read as misses
+     */
+    private Optional<V> sharedGet(String key, boolean count) {
+        Optional<V> value = shared.get(name, key).map(this::decode);
+        value.ifPresent(v -> nearPut(key, v));
+        if (count && value.isPresent()) {
+            sharedStats.hit();
+        } else if (count) {
+            sharedStats.miss();
+        }
+        return value;
+    }
+
+    private String encode(V value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + name + " entry", e);
+        }
+    }
+
+    private V decode(String json) {
+        try {
+            return MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not deserialize " + name + " entry", e);
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(properties.lockPoll());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for another node to load " + name, e);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private record Near<V>(V value, long expiresNanos) {
+        @Nullable
+        V valueIfFresh(long now) {
+            return expiresNanos - now > 0 ? value : null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.embabelsubagenttest.cache;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the node's {@link TieredCache}s over the configured {@link SharedCacheTier} and keeps
+ * them by name for invalidation from the shell. Each cache reports {@code <name>.near} and
+ * {@code <name>.shared} hit rates to {@link LiveStats}; the shared rate is over near misses only.
+ */
+@Component
+public class TieredCaches {
+
+    private final SharedCacheTier shared;
+    private final CacheProperties properties;
+    private final LiveStats liveStats;
+    private final Map<String, TieredCache<?>> caches = new ConcurrentHashMap<>();
+
+    public TieredCaches(SharedCacheTier shared, CacheProperties properties, LiveStats liveStats) {
+        this.shared = shared;
+        this.properties = properties;
+        this.liveStats = liveStats;
+    }
+
+    /**
+     * A cache whose near size is {@code demo.cache.near-sizes.<name>}, or {@code demo.cache.near-size}.
+     *
+     * @throws IllegalStateException if a cache of that name already exists
+     */
+    public <V> TieredCache<V> create(String name, Class<V> type) {
+        return create(name, type, properties.nearSizeFor(name));
+    }
+
+    /**
+     * @param nearSize entries this node keeps on heap
+     * @throws IllegalStateException if a cache of that name already exists
+     */
+    public <V> TieredCache<V> create(String name, Class<V> type, int nearSize) {
+        TieredCache<V> cache = new TieredCache<>(name, type, nearSize, shared, properties,
+                liveStats.cache(name + ".near"), liveStats.cache(name + ".shared"));
+        if (caches.putIfAbsent(name, cache) != null) {
+            throw new IllegalStateException("Cache " + name + " already exists");
+        }
+        return cache;
+    }
+
+    public Optional<TieredCache<?>> find(String name) {
+        return Optional.ofNullable(caches.get(name));
+    }
+
+    /**
+     * Key for free-text inputs such as user requests: case and surrounding or repeated whitespace do not matter.
+     */
+    public static String textKey(String text) {
+        return text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.Ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One branch of a parallel fan-out: its own {@link Ai} and its own LLM usage counters. Code that
+ * runs branches concurrently {@link #fork forks} a {@link Fork}, hands each task a
+ * {@link Fork#branch branch}, and {@link Fork#join joins} once the tasks are done. Joining adds
+ * the branches' usage to the enclosing branch, if any, so nested fan-outs roll up to the
+ * {@link #root} that {@code PatternRunner} binds for each request.
+ *
+ * <p>The current branch is a {@link ScopedValue}: {@link LlmCalls} attributes every call to it
+ * without locking, and {@link #run} binds it on whichever thread a task ends up on. Branches are
+ * never shared between tasks, so the counters only contend with a branch's own nested work.
+ */
+public final class BranchContext {
+
+    private static final ScopedValue<BranchContext> CURRENT = ScopedValue.newInstance();
+
+    private final String name;
+    private final Ai ai;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final Queue<Usage> joined = new ConcurrentLinkedQueue<>();
+
+    private BranchContext(String name, Ai ai) {
+        this.name = name;
+        this.ai = ai;
+    }
+
+    /**
+     * Starts a fan-out under the current branch, if any.
+     *
+     * @param aiSource called once per branch; pass {@code context::ai} to give each branch its own {@link Ai}
+     */
+    public static Fork fork(String name, Supplier<Ai> aiSource) {
+        return new Fork(name, aiSource, current().orElse(null));
+    }
+
+    /**
+     * The top of a request's branch tree. It has no {@link Ai} of its own: bind it with
+     * {@link #propagate} and let the agents fork the branches that make model calls.
+     */
+    public static BranchContext root(String name) {
+        return new BranchContext(name, null);
+    }
+
+    public static Optional<BranchContext> current() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty();
+    }
+
+    /**
+     * Called by {@link LlmCalls} after every model call.
+     */
+    static void record(long callNanos) {
+        if (CURRENT.isBound()) {
+            BranchContext branch = CURRENT.get();
+            branch.calls.increment();
+            branch.nanos.add(callNanos);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Ai ai() {
+        if (ai == null) {
+            throw new IllegalStateException("Branch " + name + " has no Ai; fork a branch instead");
+        }
+        return ai;
+    }
+
+    /**
+     * Runs {@code task} with this branch as the current one, on the calling thread.
+     */
+    public <T> T run(Function<Ai, T> task) {
+        return ScopedValue.where(CURRENT, this).call(() -> task.apply(ai));
+    }
+
+    /**
+     * {@link #run} deferred, for executors and scatter-gather builders that take suppliers.
+     */
+    public <T> Supplier<T> bind(Function<Ai, T> task) {
+        return () -> run(task);
+    }
+
+    /**
+     * Runs {@code task} on this branch when it is called from another thread, e.g. a step of an async chain.
+     */
+    public <T> Supplier<T> propagate(Supplier<T> task) {
+        return () -> ScopedValue.where(CURRENT, this).call(task::get);
+    }
+
+    public Usage usage() {
+        return new Usage(name, calls.sum(), Duration.ofNanos(nanos.sum()));
+    }
+
+    /**
+     * Usage of every branch joined under this one, nested forks included, in join order. A
+     * branch's figures already contain those of the forks nested in it.
+     */
+    public List<Usage> joinedBranches() {
+        return List.copyOf(joined);
+    }
+
+    /**
+     * LLM usage of one branch, or of a whole fork.
+     *
+     * @param llmTime model time summed over calls, so parallel calls add up past wall-clock time
+     */
+    public record Usage(String branch, long llmCalls, Duration llmTime) {
+    }
+
+    /**
+     * Usage of a joined fork: one entry per branch, and their sum.
+     */
+    public record ForkUsage(Usage total, List<Usage> branches) {
+    }
+
+    /**
+     * The branches of one fan-out. {@link #branch} is called on the forking thread; {@link #join}
+     * once every task has finished, so reading the counters needs no further synchronization.
+     */
+    public static final class Fork {
+
+        private final String name;
+        private final Supplier<Ai> aiSource;
+        private final BranchContext parent;
+        private final List<BranchContext> branches = new ArrayList<>();
+        private boolean joined;
+
+        private Fork(String name, Supplier<Ai> aiSource, BranchContext parent) {
+            this.name = name;
+            this.aiSource = aiSource;
+            this.parent = parent;
+        }
+
+        public synchronized BranchContext branch(String branchName) {
+            if (joined) {
+                throw new IllegalStateException("Fork " + name + " has already been joined");
+            }
+            BranchContext branch = new BranchContext(name + "/" + branchName, aiSource.get());
+            branches.add(branch);
+            return branch;
+        }
+
+        /**
+         * Merges the branches' usage into the enclosing branch, and lists them and the branches
+         * joined under them on it, then returns it. Joining twice is a no-op.
+         */
+        public synchronized ForkUsage join() {
+            List<Usage> usages = branches.stream().map(BranchContext::usage).toList();
+            long calls = usages.stream().mapToLong(Usage::llmCalls).sum();
+            Duration time = usages.stream().map(Usage::llmTime).reduce(Duration.ZERO, Duration::plus);
+            if (parent != null && !joined) {
+                parent.calls.add(calls);
+                parent.nanos.add(time.toNanos());
+                for (BranchContext branch : branches) {
+                    parent.joined.add(branch.usage());
+                    parent.joined.addAll(branch.joined);
+                }
+            }
+            joined = true;
+            return new ForkUsage(new Usage(name, calls, time), usages);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.embabelsubagenttest.llm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Settings for the classification model cascade, bound from {@code demo.cascade.*}.
+ *
+ * @param enabled            ask the fast model first; when off classifiers use the auto-selected LLM as before
+ * @param fastRole           LLM role answering first ({@code embabel.models.llms.<role>})
+ * @param strongRole         LLM role for escalated classifications
+ * @param minConfidence      fast answers at or above this confidence are used without escalating
+ * @param thresholds         per-classifier overrides of {@code minConfidence}, keyed by classifier id
+ * @param consistencySamples fast answers sampled in parallel; any label disagreement escalates (1 disables the check)
+ * @param shadowRate         share of fast-path answers re-run on the strong model in the background to track accuracy
+ */
+@ConfigurationProperties("demo.cascade")
+public record CascadeProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("cheapest") String fastRole,
+        @DefaultValue("best") String strongRole,
+        @DefaultValue("0.8") double minConfidence,
+        @DefaultValue Map<String, Double> thresholds,
+        @DefaultValue("1") int consistencySamples,
+        @DefaultValue("0.0") double shadowRate
+) {
+    public CascadeProperties {
+        thresholds = thresholds == null ? Map.of() : Map.copyOf(thresholds);
+    }
+
+    public double thresholdFor(String classifier) {
+        return thresholds.getOrDefault(classifier, minConfidence);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A file of recorded LLM interactions, one JSON object per line. While recording, interactions
+ * are appended and flushed as they complete. A loaded cassette serves the interactions recorded
+ * for an id and prompt hash in their original order, repeating the last one once they run out.
+ */
+final class Cassette implements Closeable {
+
+    private final Path file;
+    private final ObjectMapper mapper;
+    private final BufferedWriter writer;
+    private final Map<String, Track> tracks;
+
+    private Cassette(Path file, ObjectMapper mapper, BufferedWriter writer, Map<String, Track> tracks) {
+        this.file = file;
+        this.mapper = mapper;
+        this.writer = writer;
+        this.tracks = tracks;
+    }
+
+    /**
+     * Starts a new cassette. An existing file is only replaced when {@code overwrite} is set.
+     */
+    static Cassette create(Path file, boolean overwrite, ObjectMapper mapper) {
+        if (!overwrite && Files.exists(file)) {
+            throw new IllegalStateException("Cassette " + file + " already exists; delete it or set demo.cassette.overwrite=true");
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            OutputStream out = overwrite ? Files.newOutputStream(file) : Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+            if (compressed(file)) {
+                out = new GZIPOutputStream(out, true);
+            }
+            return new Cassette(file, mapper, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), Map.of());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create cassette " + file, e);
+        }
+    }
+
+    static Cassette load(Path file, ObjectMapper mapper) {
+        Map<String, Track> tracks = new HashMap<>();
+        try (InputStream raw = Files.newInputStream(file);
+             InputStream in = compressed(file) ? new GZIPInputStream(raw) : raw;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    Interaction interaction = mapper.readValue(line, Interaction.class);
+                    tracks.computeIfAbsent(key(interaction.id(), interaction.hash()), _ -> new Track()).interactions.add(interaction);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cassette " + file, e);
+        }
+        return new Cassette(file, mapper, null, tracks);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * @return the next recorded interaction for this id and prompt hash, or {@code null} if none was recorded
+     */
+    Interaction next(String id, String hash) {
+        Track track = tracks.get(key(id, hash));
+        if (track == null) {
+            return null;
+        }
+        int index = Math.min(track.cursor.getAndIncrement(), track.interactions.size() - 1);
+        return track.interactions.get(index);
+    }
+
+    int size() {
+        return tracks.values().stream().mapToInt(t -> t.interactions.size()).sum();
+    }
+
+    synchronized void append(Interaction interaction) {
+        try {
+            writer.write(mapper.writeValueAsString(interaction));
+            writer.newLine();
+            writer.flush();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize interaction " + interaction.id(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write cassette " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static boolean compressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    private static String key(String id, String hash) {
+        return id + ' ' + hash;
+    }
+
+    /**
+     * @param hash     hash of the prompt, see {@link LlmCalls}
+     * @param nanos    latency of the live call
+     * @param response the model's answer, as JSON for typed calls
+     */
+    record Interaction(String id, String hash, long nanos, String response) {
+    }
+
+    private static final class Track {
+        private final List<Interaction> interactions = new ArrayList<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.embabelsubagenttest.llm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for recording and replaying LLM interactions, bound from {@code demo.cassette.*}.
+ *
+ * @param mode         {@code off}, {@code record} every interaction to {@code file}, or {@code replay} them from it
+ * @param file         cassette file, one JSON interaction per line; gzip-compressed when the name ends in {@code .gz}
+ * @param latencyScale replayed calls wait their recorded latency times this factor (0 answers immediately)
+ * @param onMiss       what a replayed call without a recorded interaction does: {@code fail}, or call the {@code live} model
+ * @param overwrite    whether recording may replace an existing cassette file; otherwise startup fails
+ */
+@ConfigurationProperties("demo.cassette")
+public record CassetteProperties(
+        @DefaultValue("off") Mode mode,
+        @DefaultValue("target/cassettes/llm.jsonl") Path file,
+        @DefaultValue("1.0") double latencyScale,
+        @DefaultValue("fail") OnMiss onMiss,
+        @DefaultValue("false") boolean overwrite
+) {
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+
+    public enum OnMiss {
+        FAIL,
+        LIVE
+    }
+}
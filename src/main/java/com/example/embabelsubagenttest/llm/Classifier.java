@@ -0,0 +1,65 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.Ai;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A named classification prompt run through the {@link ModelCascade}. Obtained from
+ * {@link ModelCascade#classifier}, which also registers it for {@code cascade-eval}.
+ * The label of an answer (its {@code @JsonSubTypes} name by default) is what fast and strong
+ * answers are compared on.
+ */
+public final class Classifier<T> {
+
+    private final String id;
+    private final Class<T> type;
+    private final Function<String, String> prompt;
+    private final Function<T, String> label;
+    private final ModelCascade cascade;
+
+    Classifier(String id, Class<T> type, Function<String, String> prompt, Function<T, String> label, ModelCascade cascade) {
+        this.id = id;
+        this.type = type;
+        this.prompt = prompt;
+        this.label = label;
+        this.cascade = cascade;
+    }
+
+    public T classify(Ai ai, String input) {
+        return cascade.classify(ai, this, input);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    Class<T> type() {
+        return type;
+    }
+
+    String prompt(String input) {
+        return prompt.apply(input);
+    }
+
+    String label(T value) {
+        return label.apply(value);
+    }
+
+    /**
+     * The {@code @JsonSubTypes} name of the value's class, or its simple class name.
+     */
+    static <T> Function<T, String> subtypeNames(Class<T> type) {
+        Map<Class<?>, String> names = new HashMap<>();
+        JsonSubTypes subTypes = type.getAnnotation(JsonSubTypes.class);
+        if (subTypes != null) {
+            for (JsonSubTypes.Type subType : subTypes.value()) {
+                names.put(subType.value(), subType.name());
+            }
+        }
+        return value -> names.getOrDefault(value.getClass(), value.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.embabelsubagenttest.llm;
+
+/**
+ * Notified before and after every call through {@link LlmCalls}; {@link #onCall} follows
+ * successful and failed calls alike, with the wall time including any replayed latency.
+ */
+@FunctionalInterface
+public interface LlmCallListener {
+
+    default void onStart(String id) {
+    }
+
+    void onCall(String id, long nanos);
+}
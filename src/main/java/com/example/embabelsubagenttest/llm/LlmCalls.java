@@ -0,0 +1,201 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.PromptRunner;
+import com.embabel.chat.Message;
+import com.example.embabelsubagenttest.service.NearDuplicateIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The single path from the agents to the model. Every call names its interaction id and goes
+ * through here, so that with {@code demo.cassette.mode=record} each request/response pair is
+ * captured with its latency, and with {@code replay} the same run is answered from the cassette
+ * without a provider. Interactions are keyed by id plus a hash of the prompt, minus the
+ * near-duplicate avoid list that differs from run to run; with the cassette off the calls go
+ * straight to the prompt runner. {@link LlmCallListener}s see every call's wall time.
+ */
+@Component
+public class LlmCalls {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmCalls.class);
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final CassetteProperties properties;
+    private final List<LlmCallListener> listeners;
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+    private final Cassette cassette;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LlmCalls(CassetteProperties properties, List<LlmCallListener> listeners) {
+        this.properties = properties;
+        this.listeners = List.copyOf(listeners);
+        this.cassette = switch (properties.mode()) {
+            case OFF -> null;
+            case RECORD -> Cassette.create(properties.file(), properties.overwrite(), mapper);
+            case REPLAY -> Cassette.load(properties.file(), mapper);
+        };
+        if (cassette != null) {
+            logger.info("LLM cassette {} in {} mode ({} recorded interactions)", properties.file(), properties.mode(), cassette.size());
+        }
+    }
+
+    /**
+     * Calls that always go to the model, for code constructed outside the application context.
+     */
+    public static LlmCalls passThrough() {
+        return new LlmCalls(new CassetteProperties(CassetteProperties.Mode.OFF, null, 1.0, CassetteProperties.OnMiss.FAIL, false), List.of());
+    }
+
+    public String generateText(PromptRunner promptRunner, String id, String prompt) {
+        return call(id, "text", prompt, () -> promptRunner.withId(id).generateText(prompt),
+                Function.identity(), Function.identity());
+    }
+
+    /**
+     * Replaces {@code creating(type).fromPrompt(prompt)}; the object is recorded as JSON.
+     */
+    public <T> T createObject(PromptRunner promptRunner, String id, Class<T> type, String prompt) {
+        return call(id, type.getName(), prompt, () -> promptRunner.withId(id).creating(type).fromPrompt(prompt),
+                this::toJson, json -> fromJson(json, type));
+    }
+
+    /**
+     * Replaces {@code respond(messages).getContent()}; the prompt hash covers every message.
+     */
+    public String respond(PromptRunner promptRunner, String id, List<? extends Message> messages) {
+        String transcript = messages.stream()
+                .map(m -> m.getClass().getSimpleName() + ": " + m.getContent())
+                .collect(Collectors.joining("\n"));
+        return call(id, "respond", transcript, () -> promptRunner.withId(id).respond(messages).getContent(),
+                Function.identity(), Function.identity());
+    }
+
+    private <T> T call(String id, String kind, String prompt, Supplier<T> live,
+                       Function<T, String> encode, Function<String, T> decode) {
+        for (LlmCallListener listener : listeners) {
+            listener.onStart(id);
+        }
+        long start = System.nanoTime();
+        try {
+            return cassette == null ? live.get() : viaCassette(id, kind, prompt, live, encode, decode);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            BranchContext.record(nanos);
+            for (LlmCallListener listener : listeners) {
+                listener.onCall(id, nanos);
+            }
+        }
+    }
+
+    private <T> T viaCassette(String id, String kind, String prompt, Supplier<T> live,
+                              Function<T, String> encode, Function<String, T> decode) {
+        String hash = hash(kind, stable(prompt));
+        if (properties.mode() == CassetteProperties.Mode.REPLAY) {
+            Cassette.Interaction interaction = cassette.next(id, hash);
+            if (interaction != null) {
+                replayed.increment();
+                pause(interaction.nanos());
+                return decode.apply(interaction.response());
+            }
+            misses.increment();
+            if (properties.onMiss() == CassetteProperties.OnMiss.FAIL) {
+                throw new IllegalStateException("No recorded interaction for " + id + " (prompt " + hash + ") in " + cassette.file());
+            }
+            logger.debug("Cassette miss for {} (prompt {}), calling the model", id, hash);
+            return live.get();
+        }
+        long start = System.nanoTime();
+        T value = live.get();
+        cassette.append(new Cassette.Interaction(id, hash, System.nanoTime() - start, encode.apply(value)));
+        recorded.increment();
+        return value;
+    }
+
+    private void pause(long recordedNanos) {
+        long nanos = (long) (recordedNanos * properties.latencyScale());
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The prompt without its near-duplicate avoid list, which lists whatever this run happened to
+     * serve before and would make a replay miss.
+     */
+    static String stable(String prompt) {
+        int avoid = prompt.indexOf(NearDuplicateIndex.AVOID_HEADING);
+        return avoid < 0 ? prompt : prompt.substring(0, avoid);
+    }
+
+    /**
+     * First 16 hex digits of the SHA-256 of kind and prompt: stable across runs, and a prompt
+     * change shows up as a miss instead of a wrong answer.
+     */
+    static String hash(String kind, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HEX.formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not record " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not replay " + type.getSimpleName() + " from cassette", e);
+        }
+    }
+
+    public CassetteStats stats() {
+        return new CassetteStats(properties.mode(), cassette == null ? null : cassette.file().toString(),
+                recorded.sum(), replayed.sum(), misses.sum());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (cassette != null) {
+            logger.info("LLM cassette {}: {}", cassette.file(), stats());
+            cassette.close();
+        }
+    }
+
+    public record CassetteStats(CassetteProperties.Mode mode, String file, long recorded, long replayed, long misses) {
+    }
+}
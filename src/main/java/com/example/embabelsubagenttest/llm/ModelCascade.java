@@ -0,0 +1,290 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Two-tier cascade for classification prompts. The fast role answers first and rates its own
+ * answer; optionally several fast samples must also agree on the label. Answers at or above the
+ * classifier's confidence threshold are used as-is, everything else is asked again of the strong
+ * role. Escalations record whether the fast answer would have been right, a sample of fast-path
+ * answers can be shadowed on the strong role, and {@link #evaluate} replays a labelled corpus
+ * through both tiers to pick thresholds.
+ */
+@Component
+public class ModelCascade {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelCascade.class);
+    private static final double[] EVALUATION_THRESHOLDS = {0.0, 0.5, 0.6, 0.7, 0.8, 0.85, 0.9, 0.95, 1.01};
+
+    private final CascadeProperties properties;
+    private final StructuredOutputRegistry structuredOutputs;
+    private final ObjectProvider<Ai> aiProvider;
+    private final Map<String, Classifier<?>> classifiers = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final ExecutorService executor = ContextPropagatingExecutor.wrap(Executors.newVirtualThreadPerTaskExecutor());
+
+    public ModelCascade(CascadeProperties properties, StructuredOutputRegistry structuredOutputs, ObjectProvider<Ai> aiProvider) {
+        this.properties = properties;
+        this.structuredOutputs = structuredOutputs;
+        this.aiProvider = aiProvider;
+    }
+
+    public <T> Classifier<T> classifier(String id, Class<T> type, Function<String, String> prompt) {
+        return classifier(id, type, prompt, Classifier.subtypeNames(type));
+    }
+
+    public <T> Classifier<T> classifier(String id, Class<T> type, Function<String, String> prompt, Function<T, String> label) {
+        structuredOutputs.register(type);
+        Classifier<T> classifier = new Classifier<>(id, type, prompt, label, this);
+        classifiers.put(id, classifier);
+        return classifier;
+    }
+
+    public List<String> classifierIds() {
+        return classifiers.keySet().stream().sorted().toList();
+    }
+
+    <T> T classify(Ai ai, Classifier<T> classifier, String input) {
+        String prompt = classifier.prompt(input);
+        if (!properties.enabled()) {
+            return structuredOutputs.create(ai.withAutoLlm(), classifier.id(), classifier.type(), prompt);
+        }
+        Stats stats = stats(classifier.id());
+        long start = System.nanoTime();
+        OutputSpec.Scored<T> fast = fast(ai, classifier, prompt);
+        stats.fastNanos.add(System.nanoTime() - start);
+        if (fast.value() == null) {
+            stats.fastFailures.increment();
+        } else if (fast.confidence() >= properties.thresholdFor(classifier.id())) {
+            stats.fastPath.increment();
+            shadow(classifier, prompt, fast.value(), stats);
+            return fast.value();
+        }
+
+        start = System.nanoTime();
+        T strong = strong(ai, classifier, prompt);
+        stats.strongNanos.add(System.nanoTime() - start);
+        stats.escalated.increment();
+        if (fast.value() != null && classifier.label(fast.value()).equals(classifier.label(strong))) {
+            stats.escalationAgreed.increment();
+        }
+        return strong;
+    }
+
+    /**
+     * One or more fast samples. A failed sample, or labels that disagree, yield confidence 0.
+     */
+    private <T> OutputSpec.Scored<T> fast(Ai ai, Classifier<T> classifier, String prompt) {
+        int samples = Math.max(1, properties.consistencySamples());
+        try {
+            if (samples == 1) {
+                return fastSample(ai, classifier, prompt);
+            }
+            List<OutputSpec.Scored<T>> answers = IntStream.range(0, samples)
+                    .mapToObj(_ -> CompletableFuture.supplyAsync(() -> fastSample(ai, classifier, prompt), executor))
+                    .toList() // submit all samples before waiting on any
+                    .stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+            String label = classifier.label(answers.getFirst().value());
+            boolean agree = answers.stream().allMatch(a -> classifier.label(a.value()).equals(label));
+            double confidence = agree ? answers.stream().mapToDouble(OutputSpec.Scored::confidence).min().orElse(0) : 0;
+            return new OutputSpec.Scored<>(answers.getFirst().value(), confidence);
+        } catch (RuntimeException e) {
+            logger.debug("Fast tier failed for {}, escalating: {}", classifier.id(), e.getMessage());
+            return new OutputSpec.Scored<>(null, 0);
+        }
+    }
+
+    private <T> OutputSpec.Scored<T> fastSample(Ai ai, Classifier<T> classifier, String prompt) {
+        return structuredOutputs.createScored(
+                ai.withLlmByRole(properties.fastRole()), classifier.id() + "-fast", classifier.type(), prompt);
+    }
+
+    private <T> T strong(Ai ai, Classifier<T> classifier, String prompt) {
+        return structuredOutputs.create(ai.withLlmByRole(properties.strongRole()), classifier.id(), classifier.type(), prompt);
+    }
+
+    private <T> void shadow(Classifier<T> classifier, String prompt, T fastAnswer, Stats stats) {
+        if (properties.shadowRate() <= 0 || ThreadLocalRandom.current().nextDouble() >= properties.shadowRate()) {
+            return;
+        }
+        executor.execute(() -> {
+            Ai ai = aiProvider.getIfAvailable();
+            if (ai == null) {
+                return;
+            }
+            try {
+                T strong = strong(ai, classifier, prompt);
+                stats.shadowed.increment();
+                if (classifier.label(fastAnswer).equals(classifier.label(strong))) {
+                    stats.shadowAgreed.increment();
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Shadow classification for {} failed: {}", classifier.id(), e.getMessage());
+            }
+        });
+    }
+
+    private Stats stats(String id) {
+        return stats.computeIfAbsent(id, _ -> new Stats());
+    }
+
+    public List<CascadeStats> snapshot() {
+        return stats.entrySet().stream()
+                .map(e -> e.getValue().snapshot(e.getKey(), properties.thresholdFor(e.getKey())))
+                .sorted(Comparator.comparing(CascadeStats::classifier))
+                .toList();
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Runs every labelled input through both tiers, one at a time, and reports for a range of
+     * thresholds how often the cascade would escalate and how accurate it would be. The suggested
+     * threshold is the lowest one whose accuracy is within {@code maxAccuracyLoss} of the strong
+     * model's. Makes two or more LLM calls per input.
+     */
+    public Evaluation evaluate(String id, List<LabelledInput> corpus, double maxAccuracyLoss) {
+        Classifier<?> classifier = classifiers.get(id);
+        if (classifier == null) {
+            throw new IllegalArgumentException("Unknown classifier " + id + "; known classifiers: " + classifierIds());
+        }
+        Ai ai = aiProvider.getIfAvailable();
+        if (ai == null) {
+            throw new IllegalStateException("No Ai available to evaluate with");
+        }
+        return evaluate(classifier, corpus, maxAccuracyLoss, ai);
+    }
+
+    private <T> Evaluation evaluate(Classifier<T> classifier, List<LabelledInput> corpus, double maxAccuracyLoss, Ai ai) {
+        List<Trial> trials = new ArrayList<>();
+        long fastNanos = 0;
+        long strongNanos = 0;
+        for (LabelledInput input : corpus) {
+            String prompt = classifier.prompt(input.text());
+            long start = System.nanoTime();
+            OutputSpec.Scored<T> fast = fast(ai, classifier, prompt);
+            fastNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            T strong = strong(ai, classifier, prompt);
+            strongNanos += System.nanoTime() - start;
+            trials.add(new Trial(
+                    input.label(),
+                    fast.value() == null ? null : classifier.label(fast.value()),
+                    fast.confidence(),
+                    classifier.label(strong)));
+        }
+
+        double strongAccuracy = accuracy(trials, Double.NEGATIVE_INFINITY, true);
+        List<Evaluation.Row> rows = new ArrayList<>();
+        Double suggested = null;
+        for (double threshold : EVALUATION_THRESHOLDS) {
+            long escalations = trials.stream().filter(t -> t.escalatesAt(threshold)).count();
+            double accuracy = accuracy(trials, threshold, false);
+            rows.add(new Evaluation.Row(threshold, trials.isEmpty() ? 0 : (double) escalations / trials.size(), accuracy));
+            if (suggested == null && accuracy >= strongAccuracy - maxAccuracyLoss) {
+                suggested = threshold;
+            }
+        }
+        int n = Math.max(1, trials.size());
+        return new Evaluation(classifier.id(), trials.size(), properties.thresholdFor(classifier.id()),
+                accuracy(trials, Double.POSITIVE_INFINITY, false), strongAccuracy,
+                fastNanos / 1e6 / n, strongNanos / 1e6 / n, rows, suggested);
+    }
+
+    private static double accuracy(List<Trial> trials, double threshold, boolean strongOnly) {
+        if (trials.isEmpty()) {
+            return 0;
+        }
+        long correct = trials.stream()
+                .filter(t -> t.expected().equals(strongOnly || t.escalatesAt(threshold) ? t.strong() : t.fast()))
+                .count();
+        return (double) correct / trials.size();
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public record LabelledInput(String label, String text) {
+    }
+
+    private record Trial(String expected, String fast, double fastConfidence, String strong) {
+        boolean escalatesAt(double threshold) {
+            // POSITIVE_INFINITY is used as "never escalate" to score the fast tier alone
+            return threshold != Double.POSITIVE_INFINITY && (fast == null || fastConfidence < threshold);
+        }
+    }
+
+    /**
+     * @param escalationAgreed escalations where the fast answer had the same label as the strong one
+     * @param shadowAgreed     shadowed fast-path answers the strong model agreed with
+     */
+    public record CascadeStats(String classifier, double threshold, long fastPath, long escalated,
+                               long escalationAgreed, long fastFailures, long shadowed, long shadowAgreed,
+                               double meanFastMillis, double meanStrongMillis) {
+        public double escalationRate() {
+            long total = fastPath + escalated;
+            return total == 0 ? 0 : (double) escalated / total;
+        }
+
+        public double shadowAccuracy() {
+            return shadowed == 0 ? Double.NaN : (double) shadowAgreed / shadowed;
+        }
+    }
+
+    /**
+     * @param fastAccuracy     accuracy when the fast answer is always used
+     * @param strongAccuracy   accuracy when every input goes to the strong model
+     * @param suggestedThreshold lowest threshold within the allowed accuracy loss, or {@code null}
+     */
+    public record Evaluation(String classifier, int inputs, double currentThreshold, double fastAccuracy,
+                             double strongAccuracy, double meanFastMillis, double meanStrongMillis,
+                             List<Row> rows, Double suggestedThreshold) {
+        public record Row(double threshold, double escalationRate, double accuracy) {
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder fastPath = new LongAdder();
+        private final LongAdder escalated = new LongAdder();
+        private final LongAdder escalationAgreed = new LongAdder();
+        private final LongAdder fastFailures = new LongAdder();
+        private final LongAdder shadowed = new LongAdder();
+        private final LongAdder shadowAgreed = new LongAdder();
+        private final LongAdder fastNanos = new LongAdder();
+        private final LongAdder strongNanos = new LongAdder();
+
+        CascadeStats snapshot(String classifier, double threshold) {
+            long fast = fastPath.sum() + escalated.sum();
+            long strong = escalated.sum();
+            return new CascadeStats(classifier, threshold, fastPath.sum(), escalated.sum(), escalationAgreed.sum(),
+                    fastFailures.sum(), shadowed.sum(), shadowAgreed.sum(),
+                    fast == 0 ? 0 : fastNanos.sum() / 1e6 / fast,
+                    strong == 0 ? 0 : strongNanos.sum() / 1e6 / strong);
+        }
+    }
+}
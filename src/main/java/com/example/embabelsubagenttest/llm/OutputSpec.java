@@ -0,0 +1,86 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Everything needed to ask for and read back one structured output type, computed once:
+ * the JSON schema, the format instructions appended to prompts, and a dedicated reader.
+ */
+public record OutputSpec<T>(
+        Class<T> type,
+        String jsonSchema,
+        String formatInstructions,
+        ObjectReader reader
+) {
+
+    /**
+     * Parses a model response, tolerating markdown code fences and text around the JSON object.
+     */
+    public T read(String response) throws JsonProcessingException {
+        return reader.treeToValue(json(response), type);
+    }
+
+    /**
+     * Like {@link #read}, also taking the top-level {@code confidence} field the model was asked
+     * to add. A missing or malformed confidence counts as 0.
+     */
+    public Scored<T> readScored(String response) throws JsonProcessingException {
+        ObjectNode tree = json(response);
+        double confidence = 0;
+        if (tree.has("confidence")) {
+            confidence = Math.clamp(tree.remove("confidence").asDouble(0), 0.0, 1.0);
+        }
+        return new Scored<>(reader.treeToValue(tree, type), confidence);
+    }
+
+    /**
+     * Reads the first complete JSON value that starts at a {@code {} or {@code [}, streaming so
+     * anything after it is ignored. Braces in prose before it are skipped over; a top-level
+     * array is rejected rather than mistaken for its first element.
+     */
+    private ObjectNode json(String response) throws JsonProcessingException {
+        char[] content = response.toCharArray();
+        JsonProcessingException failure = null;
+        for (int start = next(content, 0); start >= 0; start = next(content, start + 1)) {
+            JsonNode tree;
+            try (JsonParser parser = reader.createParser(content, start, content.length - start)) {
+                tree = reader.readTree(parser);
+            } catch (JsonProcessingException e) {
+                failure = failure == null ? e : failure;
+                continue;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (tree instanceof ObjectNode object) {
+                return object;
+            }
+            if (tree != null && tree.isArray()) {
+                throw new JsonParseException(null, "Expected a single JSON object, got an array");
+            }
+        }
+        throw failure != null ? failure : new JsonParseException(null, "No JSON object in the response");
+    }
+
+    private static int next(char[] content, int from) {
+        for (int i = from; i < content.length; i++) {
+            if (content[i] == '{' || content[i] == '[') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A structured output with the model's own confidence in it, between 0 and 1.
+     */
+    public record Scored<T>(T value, double confidence) {
+    }
+}
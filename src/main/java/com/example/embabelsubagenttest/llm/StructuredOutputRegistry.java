@@ -0,0 +1,109 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.embabel.agent.api.common.PromptRunner;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Startup-time registry of the structured output types the agents classify into.
+ * <p>
+ * Agents and services {@link #register} their types when they are constructed, and
+ * {@link ModelCascade#classifier} registers each classifier's type, so this package does not
+ * need to know the agents.
+ * <p>
+ * {@code creating(Type.class)} derives the JSON schema and format instructions for the
+ * (often polymorphic) type and builds a deserializer on every call. This registry does that
+ * work once per type at startup and then asks for plain text with the precomputed
+ * instructions appended, reading the answer with a dedicated {@code ObjectReader}.
+ */
+@Component
+public class StructuredOutputRegistry {
+
+    private static final String CONFIDENCE_INSTRUCTIONS = """
+            
+            
+            Also add a top-level "confidence" field to the JSON object: a number from 0 to 1 for how
+            sure you are that this classification is correct. Use a low value when the request is ambiguous.""";
+
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    private final Map<Class<?>, OutputSpec<?>> specs = new ConcurrentHashMap<>();
+    private final LlmCalls calls;
+
+    public StructuredOutputRegistry(LlmCalls calls) {
+        this.calls = calls;
+    }
+
+    /**
+     * Precomputes the specs of {@code types} now rather than on their first call.
+     */
+    public void register(Class<?>... types) {
+        for (Class<?> type : types) {
+            spec(type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> OutputSpec<T> spec(Class<T> type) {
+        return (OutputSpec<T>) specs.computeIfAbsent(type, this::compute);
+    }
+
+    /**
+     * Asks the prompt runner for an instance of {@code type}, using the precomputed schema
+     * instructions and reader. A response that does not parse is retried once with the
+     * parse error fed back to the model. Both go through {@link LlmCalls} under {@code id}.
+     */
+    public <T> T create(PromptRunner promptRunner, String id, Class<T> type, String prompt) {
+        OutputSpec<T> spec = spec(type);
+        String response = calls.generateText(promptRunner, id, prompt + "\n\n" + spec.formatInstructions());
+        try {
+            return spec.read(response);
+        } catch (JsonProcessingException first) {
+            String retry = calls.generateText(promptRunner, id, prompt + "\n\n" + spec.formatInstructions()
+                    + "\n\nYour previous answer could not be parsed (" + first.getOriginalMessage()
+                    + "). Return only a JSON object matching the schema.");
+            try {
+                return spec.read(retry);
+            } catch (JsonProcessingException second) {
+                throw new IllegalStateException("Could not read " + type.getSimpleName() + " from model output", second);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #create}, additionally asking the model to rate its own answer with a top-level
+     * {@code confidence} field. Used for the fast tier of {@link ModelCascade}.
+     */
+    public <T> OutputSpec.Scored<T> createScored(PromptRunner promptRunner, String id, Class<T> type, String prompt) {
+        OutputSpec<T> spec = spec(type);
+        String instructions = prompt + "\n\n" + spec.formatInstructions() + CONFIDENCE_INSTRUCTIONS;
+        String response = calls.generateText(promptRunner, id, instructions);
+        try {
+            return spec.readScored(response);
+        } catch (JsonProcessingException first) {
+            String retry = calls.generateText(promptRunner, id, instructions
+                    + "\n\nYour previous answer could not be parsed (" + first.getOriginalMessage()
+                    + "). Return only a JSON object matching the schema.");
+            try {
+                return spec.readScored(retry);
+            } catch (JsonProcessingException second) {
+                throw new IllegalStateException("Could not read " + type.getSimpleName() + " from model output", second);
+            }
+        }
+    }
+
+    private <T> OutputSpec<T> compute(Class<T> type) {
+        var converter = new BeanOutputConverter<>(type);
+        return new OutputSpec<>(type, converter.getJsonSchema(), converter.getFormat(), mapper.readerFor(type));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.embabelsubagenttest.load;
+
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * How the load generator issues requests. The open-loop models send on a schedule regardless of
+ * how many requests are still in flight, so a slow system builds a queue the way it would with
+ * real users; the closed loop sends the next request only when a worker's previous one returned.
+ */
+public enum Arrival {
+    /**
+     * Open loop, exponentially distributed gaps averaging {@code 1 / rate}.
+     */
+    POISSON,
+    /**
+     * Open loop, one request every {@code 1 / rate}.
+     */
+    CONSTANT,
+    /**
+     * A fixed number of workers, each paced to {@code rate / concurrency} when a rate is given.
+     */
+    CLOSED;
+
+    long nextGapNanos(double ratePerSecond, RandomGenerator random) {
+        double meanNanos = 1e9 / ratePerSecond;
+        return switch (this) {
+            case POISSON -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+            case CONSTANT, CLOSED -> (long) meanNanos;
+        };
+    }
+
+    public static Arrival parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown arrival model " + name + "; one of poisson, constant, closed");
+        }
+    }
+}
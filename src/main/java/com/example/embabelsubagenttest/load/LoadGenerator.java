@@ -0,0 +1,172 @@
+package com.example.embabelsubagenttest.load;
+
+import com.example.embabelsubagenttest.runtime.AdmissionRejectedException;
+import com.example.embabelsubagenttest.runtime.PatternRunner;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a pattern through {@link PatternRunner}, the same entry point the shell and HTTP API
+ * use, so requests pass admission control like real traffic.
+ * <p>
+ * Open-loop runs dispatch each request on its own virtual thread at its scheduled time, however
+ * many are still in flight. Every request's total latency is measured from that scheduled time,
+ * not from when it was actually sent, which corrects for coordinated omission: time a request
+ * spends waiting behind a stalled system is counted instead of silently skipped.
+ */
+@Component
+public class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final Duration MIN_DRAIN = Duration.ofSeconds(60);
+    private static final long SEED = 42;
+
+    private final PatternRunner patternRunner;
+    private final StageRecorder stages;
+
+    public LoadGenerator(PatternRunner patternRunner, StageRecorder stages) {
+        this.patternRunner = patternRunner;
+        this.stages = stages;
+    }
+
+    public LoadReport run(LoadPlan plan) {
+        stages.start();
+        Run run = new Run(plan);
+        long start = System.nanoTime();
+        long end = start + plan.duration().toNanos();
+        // Not try-with-resources: close() would wait for abandoned requests indefinitely
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            if (plan.arrival() == Arrival.CLOSED) {
+                closedLoop(run, workers, start, end);
+            } else {
+                openLoop(run, workers, start, end);
+            }
+            workers.shutdown();
+            Duration drain = plan.duration().compareTo(MIN_DRAIN) > 0 ? plan.duration() : MIN_DRAIN;
+            if (!workers.awaitTermination(drain.toNanos(), TimeUnit.NANOSECONDS)) {
+                logger.warn("Load run on {} still had requests in flight after {}s; abandoning them",
+                        plan.pattern().id(), drain.toSeconds());
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            run.elapsed = Duration.ofNanos(System.nanoTime() - start);
+            run.stageHistograms = stages.stop();
+        }
+        return run.report();
+    }
+
+    /**
+     * A single dispatcher keeps the schedule; the corpus and the Poisson gaps are deterministic
+     * for a given plan so that runs replayed from an LLM cassette send the same prompts.
+     */
+    private void openLoop(Run run, ExecutorService workers, long start, long end) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (long due = start; due < end; due += run.plan.arrival().nextGapNanos(run.plan.rate(), random)) {
+            waitUntil(due);
+            long scheduled = due;
+            String text = run.nextText();
+            workers.execute(() -> run.send(text, scheduled));
+        }
+    }
+
+    private void closedLoop(Run run, ExecutorService workers, long start, long end) {
+        int concurrency = run.plan.concurrency();
+        long gap = run.plan.rate() > 0 ? (long) (1e9 * concurrency / run.plan.rate()) : 0;
+        for (int w = 0; w < concurrency; w++) {
+            // Stagger paced workers across one gap so they do not fire in lockstep
+            long first = start + gap * w / concurrency;
+            workers.execute(() -> {
+                long due = gap > 0 ? first : System.nanoTime();
+                while (due < end && !Thread.currentThread().isInterrupted()) {
+                    waitUntil(due);
+                    run.send(run.nextText(), due);
+                    due = gap > 0 ? due + gap : System.nanoTime();
+                }
+            });
+        }
+    }
+
+    private static void waitUntil(long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Reads one request per line, skipping blank lines and {@code #} comments.
+     */
+    public static List<String> parseCorpus(BufferedReader reader) throws IOException {
+        return reader.lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+    }
+
+    private final class Run {
+        private final LoadPlan plan;
+        private final AtomicLong next = new AtomicLong();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Recorder uncorrected = new Recorder(3);
+        private volatile Duration elapsed = Duration.ZERO;
+        private volatile Map<Stage, Histogram> stageHistograms;
+
+        private Run(LoadPlan plan) {
+            this.plan = plan;
+        }
+
+        String nextText() {
+            List<String> corpus = plan.corpus();
+            return corpus.get((int) (next.getAndIncrement() % corpus.size()));
+        }
+
+        /**
+         * Shed requests are counted but not recorded: admission answers them immediately by design.
+         */
+        void send(String text, long scheduled) {
+            sent.increment();
+            long sentAt = System.nanoTime();
+            try {
+                patternRunner.run(plan.pattern(), text);
+                succeeded.increment();
+            } catch (AdmissionRejectedException e) {
+                shed.increment();
+                return;
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.debug("Load request failed on {}: {}", plan.pattern().id(), e.getMessage());
+            }
+            long done = System.nanoTime();
+            stages.record(Stage.TOTAL, done - scheduled);
+            uncorrected.recordValue(TimeUnit.NANOSECONDS.toMicros(done - sentAt));
+        }
+
+        LoadReport report() {
+            return new LoadReport(plan, sent.sum(), succeeded.sum(), shed.sum(), failed.sum(), elapsed,
+                    stageHistograms, uncorrected.getIntervalHistogram());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.embabelsubagenttest.load;
+
+import com.example.embabelsubagenttest.runtime.AgentPattern;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param rate        requests per second; for {@link Arrival#CLOSED} the pace across all workers, 0 for unpaced
+ * @param concurrency workers for {@link Arrival#CLOSED}; open-loop runs are not limited
+ * @param corpus      request texts, sent in order and repeated as needed
+ */
+public record LoadPlan(AgentPattern pattern, Arrival arrival, double rate, int concurrency, Duration duration,
+                       List<String> corpus) {
+    public LoadPlan {
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("The corpus has no requests");
+        }
+        if (arrival != Arrival.CLOSED && rate <= 0) {
+            throw new IllegalArgumentException("Open-loop arrivals need a rate above 0");
+        }
+        if (arrival == Arrival.CLOSED && concurrency < 1) {
+            throw new IllegalArgumentException("Closed-loop runs need a concurrency of at least 1");
+        }
+        corpus = List.copyOf(corpus);
+    }
+
+    /**
+     * Closed-loop runs without a rate have no schedule to be late against, so their totals
+     * cannot be corrected for coordinated omission.
+     */
+    public boolean corrected() {
+        return arrival != Arrival.CLOSED || rate > 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.embabelsubagenttest.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a load run. Histogram values are microseconds; {@code uncorrectedTotal} measures
+ * each request from when it was actually sent rather than when it was due, for comparison.
+ */
+public record LoadReport(LoadPlan plan, long sent, long succeeded, long shed, long failed, Duration elapsed,
+                         Map<Stage, Histogram> stages, Histogram uncorrectedTotal) {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    public long unfinished() {
+        return sent - succeeded - shed - failed;
+    }
+
+    public double achievedRate() {
+        return elapsed.isZero() ? 0 : (succeeded + failed) / (elapsed.toNanos() / 1e9);
+    }
+
+    /**
+     * Writes one {@code .hgrm} percentile distribution per stage, in milliseconds, as read by the
+     * HdrHistogram plotter.
+     */
+    public List<Path> export(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        for (var entry : stages.entrySet()) {
+            files.add(write(directory.resolve(entry.getKey().fileName() + ".hgrm"), entry.getValue()));
+        }
+        files.add(write(directory.resolve("total-uncorrected.hgrm"), uncorrectedTotal));
+        return files;
+    }
+
+    private static Path write(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.embabelsubagenttest.load;
+
+import java.util.Locale;
+
+/**
+ * Latency histograms kept by a load run. Only {@link #TOTAL} is a request latency: one value per
+ * request, measured from its intended start. The others are model time, one value per call,
+ * grouped by interaction id; a request that makes several calls adds several values, parallel
+ * calls overlap, and a classification the local router answers makes no call at all.
+ */
+public enum Stage {
+    CLASSIFICATION_CALLS,
+    GENERATION_CALLS,
+    TRANSLATION_CALLS,
+    TOTAL;
+
+    /**
+     * Intent, command, style and service-selection classifiers are {@code classify-*}, translations
+     * are {@code translate-*}; every other call (jokes, fortunes, art, query answers) generates content.
+     */
+    static Stage forInteraction(String id) {
+        if (id.startsWith("classify-")) {
+            return CLASSIFICATION_CALLS;
+        }
+        if (id.startsWith("translate-")) {
+            return TRANSLATION_CALLS;
+        }
+        return GENERATION_CALLS;
+    }
+
+    public String fileName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
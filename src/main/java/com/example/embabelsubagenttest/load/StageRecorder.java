@@ -0,0 +1,52 @@
+package com.example.embabelsubagenttest.load;
+
+import com.example.embabelsubagenttest.llm.LlmCallListener;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latency recorders for the load run in progress, in microseconds. Each model call's duration is
+ * recorded into the {@link Stage} its interaction id belongs to; outside a run calls are ignored.
+ */
+@Component
+public class StageRecorder implements LlmCallListener {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final AtomicReference<Map<Stage, Recorder>> active = new AtomicReference<>();
+
+    void start() {
+        Map<Stage, Recorder> recorders = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            recorders.put(stage, new Recorder(SIGNIFICANT_DIGITS));
+        }
+        if (!active.compareAndSet(null, recorders)) {
+            throw new IllegalStateException("A load run is already in progress");
+        }
+    }
+
+    Map<Stage, Histogram> stop() {
+        Map<Stage, Recorder> recorders = active.getAndSet(null);
+        Map<Stage, Histogram> histograms = new EnumMap<>(Stage.class);
+        recorders.forEach((stage, recorder) -> histograms.put(stage, recorder.getIntervalHistogram()));
+        return histograms;
+    }
+
+    void record(Stage stage, long nanos) {
+        Map<Stage, Recorder> recorders = active.get();
+        if (recorders != null) {
+            recorders.get(stage).recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    @Override
+    public void onCall(String id, long nanos) {
+        record(Stage.forInteraction(id), nanos);
+    }
+}
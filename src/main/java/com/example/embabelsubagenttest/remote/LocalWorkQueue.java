@@ -0,0 +1,66 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded broker: a bounded in-memory queue, with results handed straight back to the waiting
+ * parent. Items still cross the wire format, so a single node running with {@code demo.remote.enabled}
+ * exercises the same path as a cluster. Items whose parent gave up are dropped before a worker runs them.
+ */
+@Component
+@ConditionalOnProperty(name = "demo.remote.queue", havingValue = "local", matchIfMissing = true)
+public class LocalWorkQueue implements WorkQueue {
+
+    private final BlockingQueue<WorkItem> items;
+    private final Map<String, CompletableFuture<WorkResult>> pending = new ConcurrentHashMap<>();
+
+    public LocalWorkQueue(RemoteProperties properties) {
+        this.items = new LinkedBlockingQueue<>(properties.queueCapacity());
+    }
+
+    @Override
+    public CompletableFuture<WorkResult> submit(WorkItem item) {
+        CompletableFuture<WorkResult> result = new CompletableFuture<>();
+        pending.put(item.id(), result);
+        result.whenComplete((_, _) -> pending.remove(item.id()));
+        if (!items.offer(item)) {
+            result.completeExceptionally(new RemoteExecutionException("Work queue is full (" + items.size() + " items)"));
+        }
+        return result;
+    }
+
+    @Override
+    @Nullable
+    public WorkItem poll(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            WorkItem item = items.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (item == null || pending.containsKey(item.id())) {
+                return item;
+            }
+        }
+    }
+
+    @Override
+    public void complete(WorkResult result) {
+        CompletableFuture<WorkResult> waiting = pending.remove(result.id());
+        if (waiting != null) {
+            waiting.complete(result);
+        }
+    }
+
+    @Override
+    public int depth() {
+        return items.size();
+    }
+}
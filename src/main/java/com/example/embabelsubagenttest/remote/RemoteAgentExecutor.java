@@ -0,0 +1,103 @@
+package com.example.embabelsubagenttest.remote;
+
+import com.example.embabelsubagenttest.runtime.AgentProcessLifecycleManager;
+import com.example.embabelsubagenttest.runtime.RequestContext;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the child agent processes of the composite handlers. Agents listed in
+ * {@code demo.remote.agents} are dispatched through the {@link WorkQueue} to whichever
+ * {@link WorkerNode} picks them up, and the parent blocks for the result as it would for a local
+ * process; everything else, and everything while {@code demo.remote.enabled} is off, runs here
+ * through {@link AgentProcessLifecycleManager}. The wait is bounded by {@code demo.remote.timeout}
+ * and the request deadline.
+ */
+@Component
+public class RemoteAgentExecutor {
+
+    private final AgentProcessLifecycleManager processes;
+    private final WorkQueue queue;
+    private final RemoteProperties properties;
+    private final WireFormat wire = new WireFormat();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public RemoteAgentExecutor(AgentProcessLifecycleManager processes, WorkQueue queue, RemoteProperties properties) {
+        this.processes = processes;
+        this.queue = queue;
+        this.properties = properties;
+    }
+
+    /**
+     * Runs the agent of the given type on {@code input} and returns the last {@code resultType} on its blackboard.
+     *
+     * @throws RemoteExecutionException if the child ended without a {@code resultType}, or a dispatched child
+     *                                  failed, timed out or could not be queued
+     */
+    public <T> T run(Class<?> agentType, Object input, Class<T> resultType) {
+        if (!properties.dispatches(agentType)) {
+            return required(agentType, resultType, processes.runAndRelease(agentType, input, resultType), "locally");
+        }
+        Duration timeout = RequestContext.cap(properties.timeout());
+        Optional<RequestContext> context = RequestContext.current();
+        WorkItem item = new WorkItem(UUID.randomUUID().toString(), agentType.getName(),
+                input.getClass().getName(), wire.encode(input), resultType.getName(),
+                context.map(RequestContext::requestId).orElse(null),
+                context.map(RequestContext::user).orElse(null),
+                context.map(RequestContext::pattern).orElse(null),
+                Instant.now().plus(timeout));
+        dispatched.increment();
+        CompletableFuture<WorkResult> pending = queue.submit(item);
+        WorkResult result;
+        try {
+            result = pending.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            timedOut.increment();
+            throw new RemoteExecutionException(agentType.getSimpleName() + " timed out after " + timeout.toSeconds() + "s on the work queue");
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RemoteExecutionException(agentType.getSimpleName() + " interrupted while waiting for its worker", e);
+        } catch (ExecutionException e) {
+            failed.increment();
+            throw new RemoteExecutionException(agentType.getSimpleName() + " could not be dispatched: " + e.getCause().getMessage(), e.getCause());
+        }
+        if (result.failed()) {
+            failed.increment();
+            throw new RemoteExecutionException(agentType.getSimpleName() + " failed on " + result.worker() + ": " + result.error());
+        }
+        T decoded = result.result() == null ? null : wire.decode(result.resultType(), result.result(), resultType);
+        return required(agentType, resultType, decoded, "on " + result.worker());
+    }
+
+    private static <T> T required(Class<?> agentType, Class<T> resultType, @Nullable T result, String where) {
+        if (result == null) {
+            throw new RemoteExecutionException(agentType.getSimpleName() + " finished " + where + " without a "
+                    + resultType.getSimpleName());
+        }
+        return result;
+    }
+
+    public Stats stats() {
+        return new Stats(properties.enabled(), dispatched.sum(), failed.sum(), timedOut.sum(), queue.depth());
+    }
+
+    /**
+     * @param queued items waiting for a worker, across every parent sharing the queue
+     */
+    public record Stats(boolean enabled, long dispatched, long failed, long timedOut, int queued) {
+    }
+}
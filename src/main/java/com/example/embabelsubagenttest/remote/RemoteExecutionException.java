@@ -0,0 +1,16 @@
+package com.example.embabelsubagenttest.remote;
+
+/**
+ * Thrown to the parent when a child process ended without the result it asked for, or a dispatched one failed on its
+ * worker, timed out, or could not be queued.
+ */
+public class RemoteExecutionException extends RuntimeException {
+
+    public RemoteExecutionException(String message) {
+        super(message);
+    }
+
+    public RemoteExecutionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Remote execution of child agent processes, bound from {@code demo.remote.*}.
+ *
+ * @param enabled          dispatch child processes of the listed agents through the {@link WorkQueue} instead of
+ *                         running them in this JVM
+ * @param queue            work queue implementation; {@code local} is the embedded in-process broker
+ * @param agents           simple class names of the agents that may be dispatched, and that workers agree to run;
+ *                         by default the leaf agents, not the command routers that fan out again
+ * @param timeout          how long a parent waits for a dispatched child, capped at the request deadline
+ * @param worker           this node consumes the queue; turn off on routing-only nodes
+ * @param workerThreads    child processes a worker node runs at the same time
+ * @param pollInterval     how long an idle worker thread waits on the queue before checking for shutdown
+ * @param queueCapacity    items the local broker holds before refusing new ones
+ */
+@ConfigurationProperties("demo.remote")
+public record RemoteProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("local") String queue,
+        @DefaultValue({"HierarchicalQueryAgent", "ScatterGatherQueryAgent",
+                "StatePatternBananaArtAgent", "StatePatternFortuneCookieAgent", "StatePatternDadJokeAgent"}) Set<String> agents,
+        @DefaultValue("60s") Duration timeout,
+        @DefaultValue("true") boolean worker,
+        @DefaultValue("8") int workerThreads,
+        @DefaultValue("1s") Duration pollInterval,
+        @DefaultValue("256") int queueCapacity
+) {
+    public RemoteProperties {
+        agents = Set.copyOf(agents);
+    }
+
+    public boolean dispatches(Class<?> agentType) {
+        return enabled && agents.contains(agentType.getSimpleName());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.embabelsubagenttest.remote;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * JSON encoding of agent inputs and results for {@link WorkItem}s and {@link WorkResult}s. Only
+ * classes of this application are ever loaded from a type name found on the queue.
+ */
+final class WireFormat {
+
+    private static final String APPLICATION_PACKAGE = "com.example.embabelsubagenttest.";
+
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    String encode(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    @Nullable
+    <T> T decode(@Nullable String typeName, @Nullable String json, Class<T> expected) {
+        if (typeName == null || json == null) {
+            return null;
+        }
+        Class<?> type = type(typeName);
+        if (!expected.isAssignableFrom(type)) {
+            throw new IllegalStateException(typeName + " is not a " + expected.getSimpleName());
+        }
+        try {
+            return expected.cast(mapper.readValue(json, type));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not deserialize " + type.getSimpleName(), e);
+        }
+    }
+
+    Class<?> type(String name) {
+        if (!name.startsWith(APPLICATION_PACKAGE)) {
+            throw new IllegalStateException("Refusing to load " + name + " from the work queue");
+        }
+        try {
+            return Class.forName(name, false, WireFormat.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(name + " is not on this node's classpath", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.embabelsubagenttest.remote;
+
+import com.example.embabelsubagenttest.runtime.RequestContext;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * A child agent process to run on a worker node. Everything is plain strings so any broker can
+ * carry it: the input is JSON of {@code inputType}, and the parent's {@link RequestContext} travels
+ * along so the worker's logs and model calls are attributed to the same request.
+ *
+ * @param agentType  class name of the agent to run
+ * @param resultType class name of the blackboard object the parent wants back
+ * @param deadline   after this the parent has stopped waiting, so a worker drops the item
+ */
+public record WorkItem(
+        String id,
+        String agentType,
+        String inputType,
+        String input,
+        String resultType,
+        @Nullable String requestId,
+        @Nullable String user,
+        @Nullable String pattern,
+        Instant deadline
+) {
+
+    public Optional<RequestContext> context() {
+        return requestId == null ? Optional.empty() : Optional.of(new RequestContext(requestId, user, pattern, deadline));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Broker between parents that dispatch child agent processes and the worker nodes that run them.
+ * {@link LocalWorkQueue} is the embedded implementation; a clustered one (a message broker or a
+ * shared database table) implements the same four calls and is selected with {@code demo.remote.queue}.
+ */
+public interface WorkQueue {
+
+    /**
+     * Enqueues an item. The future completes with the worker's result, or exceptionally if the
+     * queue refuses the item; cancelling it tells the queue the parent no longer waits.
+     */
+    CompletableFuture<WorkResult> submit(WorkItem item);
+
+    /**
+     * The next item for a worker, waiting up to {@code timeout}; null if none arrived.
+     */
+    @Nullable
+    WorkItem poll(Duration timeout) throws InterruptedException;
+
+    /**
+     * Routes a worker's result back to the parent that submitted the item. Results for items
+     * nobody waits for any more are dropped.
+     */
+    void complete(WorkResult result);
+
+    /**
+     * Items waiting for a worker.
+     */
+    int depth();
+}
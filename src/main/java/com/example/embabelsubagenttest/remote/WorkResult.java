@@ -0,0 +1,24 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * What a worker sends back for a {@link WorkItem}: the result as JSON of {@code resultType}, or an error.
+ *
+ * @param resultType concrete class of the result, which may be a subtype of the one asked for; null if there was none
+ * @param worker     node that ran the item
+ */
+public record WorkResult(String id, @Nullable String resultType, @Nullable String result, @Nullable String error, String worker) {
+
+    public static WorkResult success(String id, String worker, @Nullable String resultType, @Nullable String result) {
+        return new WorkResult(id, resultType, result, null, worker);
+    }
+
+    public static WorkResult failed(String id, String worker, String error) {
+        return new WorkResult(id, null, null, error, worker);
+    }
+
+    public boolean failed() {
+        return error != null;
+    }
+}
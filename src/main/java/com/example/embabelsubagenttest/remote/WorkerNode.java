@@ -0,0 +1,126 @@
+package com.example.embabelsubagenttest.remote;
+
+import com.example.embabelsubagenttest.runtime.AgentProcessLifecycleManager;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consumes the {@link WorkQueue}: {@code demo.remote.worker-threads} virtual threads each take an
+ * item, run its agent as a local child process under the parent's request context, and send the
+ * result back. A node only runs agents in its own {@code demo.remote.agents} list. Starts when
+ * remote execution is enabled and {@code demo.remote.worker} is on, so a node can be a router, a
+ * worker, or (with the embedded queue) both.
+ */
+@Component
+public class WorkerNode {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerNode.class);
+
+    private final WorkQueue queue;
+    private final AgentProcessLifecycleManager processes;
+    private final RemoteProperties properties;
+    private final WireFormat wire = new WireFormat();
+    private final String name = nodeName();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("remote-worker-", 0).factory());
+    private final AtomicInteger busy = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public WorkerNode(WorkQueue queue, AgentProcessLifecycleManager processes, RemoteProperties properties) {
+        this.queue = queue;
+        this.processes = processes;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!properties.enabled() || !properties.worker()) {
+            return;
+        }
+        for (int i = 0; i < properties.workerThreads(); i++) {
+            workers.execute(this::work);
+        }
+        logger.info("Worker {} consuming the {} work queue with {} threads", name, properties.queue(), properties.workerThreads());
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WorkItem item = queue.poll(properties.pollInterval());
+                if (item != null) {
+                    queue.complete(execute(item));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.warn("Work queue poll failed, retrying: {}", e.getMessage());
+            }
+        }
+    }
+
+    WorkResult execute(WorkItem item) {
+        if (Instant.now().isAfter(item.deadline())) {
+            failed.increment();
+            return WorkResult.failed(item.id(), name, "expired before a worker picked it up");
+        }
+        busy.incrementAndGet();
+        try {
+            Class<?> agentType = wire.type(item.agentType());
+            if (!properties.agents().contains(agentType.getSimpleName())) {
+                throw new IllegalStateException(agentType.getSimpleName() + " is not in this worker's demo.remote.agents");
+            }
+            Object input = wire.decode(item.inputType(), item.input(), Object.class);
+            Class<?> resultType = wire.type(item.resultType());
+            Object result = item.context()
+                    .map(context -> context.call(() -> run(agentType, input, resultType)))
+                    .orElseGet(() -> run(agentType, input, resultType));
+            completed.increment();
+            return result == null
+                    ? WorkResult.success(item.id(), name, null, null)
+                    : WorkResult.success(item.id(), name, result.getClass().getName(), wire.encode(result));
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Work item {} ({}) failed: {}", item.id(), item.agentType(), e.getMessage());
+            return WorkResult.failed(item.id(), name, String.valueOf(e.getMessage()));
+        } finally {
+            busy.decrementAndGet();
+        }
+    }
+
+    private Object run(Class<?> agentType, Object input, Class<?> resultType) {
+        return processes.runAndRelease(agentType, input, resultType);
+    }
+
+    private static String nodeName() {
+        long pid = ProcessHandle.current().pid();
+        try {
+            return InetAddress.getLocalHost().getHostName() + "/" + pid;
+        } catch (UnknownHostException e) {
+            return "pid-" + pid;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(name, busy.get(), completed.sum(), failed.sum());
+    }
+
+    public record Stats(String worker, int busy, long completed, long failed) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.embabelsubagenttest.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One normalized centroid per label, built from labelled example vectors. Keeps the per-label
+ * sums so calibration can score an example against centroids that exclude it.
+ */
+final class CentroidIndex {
+
+    private final List<String> labels;
+    private final float[][] sums;
+    private final float[][] centroids;
+
+    CentroidIndex(Map<String, List<float[]>> examples) {
+        this.labels = new ArrayList<>(examples.keySet());
+        this.sums = new float[labels.size()][];
+        this.centroids = new float[labels.size()][];
+        for (int l = 0; l < labels.size(); l++) {
+            float[] sum = new float[NgramVectorizer.DIMENSIONS];
+            for (float[] vector : examples.get(labels.get(l))) {
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += vector[i];
+                }
+            }
+            sums[l] = sum;
+            centroids[l] = sum.clone();
+            NgramVectorizer.normalize(centroids[l]);
+        }
+    }
+
+    List<String> labels() {
+        return labels;
+    }
+
+    Match nearest(float[] vector) {
+        return nearest(vector, null);
+    }
+
+    /**
+     * Nearest centroid with {@code vector} taken out of {@code excludedFrom}'s centroid (leave-one-out).
+     */
+    Match nearest(float[] vector, String excludedFrom) {
+        String best = null;
+        double bestSimilarity = -1;
+        double runnerUp = -1;
+        for (int l = 0; l < labels.size(); l++) {
+            float[] centroid = centroids[l];
+            if (labels.get(l).equals(excludedFrom)) {
+                centroid = sums[l].clone();
+                for (int i = 0; i < centroid.length; i++) {
+                    centroid[i] -= vector[i];
+                }
+                NgramVectorizer.normalize(centroid);
+            }
+            double similarity = NgramVectorizer.cosine(vector, centroid);
+            if (similarity > bestSimilarity) {
+                runnerUp = bestSimilarity;
+                bestSimilarity = similarity;
+                best = labels.get(l);
+            } else if (similarity > runnerUp) {
+                runnerUp = similarity;
+            }
+        }
+        return new Match(best, bestSimilarity, labels.size() < 2 ? bestSimilarity : bestSimilarity - runnerUp);
+    }
+
+    /**
+     * @param margin similarity lead over the second-best label
+     */
+    record Match(String label, double similarity, double margin) {
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.embabelsubagenttest.routing;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Answers intent classifications in-process when the input is clearly closest to one label's
+ * seed examples, and calls the existing LLM prompt otherwise.
+ * <p>
+ * Each {@link Route} gets a {@link CentroidIndex} over hashed n-gram vectors of its bundled
+ * seeds. An input is routed locally when its winning label is buildable without the LLM, its
+ * similarity is at least {@code demo.routing.min-similarity} and its lead over the runner-up is
+ * at least the route's margin. On fallback the LLM's answer is compared with the local guess,
+ * so {@link #stats()} shows how often a lower margin would have been right.
+ * <p>
+ * Agents {@link #register} their routes when they are constructed, so only the routes of
+ * enabled patterns are indexed and this package does not depend on the agents.
+ */
+@Component
+public class LocalIntentRouter {
+
+    private static final double[] CALIBRATION_MARGINS = {0.0, 0.02, 0.04, 0.06, 0.08, 0.1, 0.12, 0.15, 0.2, 0.25, 0.3};
+
+    private final RoutingProperties properties;
+    private final Map<String, Indexed> routes = new ConcurrentSkipListMap<>();
+
+    public LocalIntentRouter(RoutingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Indexes the seeds of {@code route}. Registering the same route again is a no-op; another
+     * route under a name already taken is rejected.
+     */
+    public void register(Route<?> route) {
+        Indexed indexed = routes.computeIfAbsent(route.name(), _ -> Indexed.of(route));
+        if (indexed.route() != route) {
+            throw new IllegalStateException("Route name " + route.name() + " is already registered");
+        }
+    }
+
+    /**
+     * Classifies {@code text} locally when the margin allows, otherwise returns {@code llm.get()}.
+     */
+    public <T> T route(Route<T> route, String text, Supplier<T> llm) {
+        if (!properties.enabled()) {
+            return llm.get();
+        }
+        Indexed indexed = routes.get(route.name());
+        if (indexed == null) {
+            throw new IllegalArgumentException("Route " + route.name() + " was never registered");
+        }
+        CentroidIndex.Match match = indexed.index().nearest(NgramVectorizer.vectorize(text));
+        if (isLocal(route, match, properties.marginFor(route.name()))) {
+            indexed.stats().local(match);
+            return route.build(match.label(), text);
+        }
+        T answer = llm.get();
+        indexed.stats().fallback(match, route.isDirect(match.label()), answer != null && match.label().equals(route.labelOf(answer)));
+        return answer;
+    }
+
+    private boolean isLocal(Route<?> route, CentroidIndex.Match match, double margin) {
+        return route.isDirect(match.label())
+                && match.margin() >= margin
+                && match.similarity() >= properties.minSimilarity();
+    }
+
+    public List<RouteStats> stats() {
+        return routes.entrySet().stream()
+                .map(e -> e.getValue().stats().snapshot(e.getKey(), properties.marginFor(e.getKey())))
+                .toList();
+    }
+
+    public void resetStats() {
+        routes.values().forEach(indexed -> indexed.stats().reset());
+    }
+
+    public List<String> routeNames() {
+        return List.copyOf(routes.keySet());
+    }
+
+    /**
+     * Offline calibration without LLM calls: scores every seed against centroids that leave it
+     * out, or, when {@code heldOut} is given, scores those labelled examples against the full
+     * index. Reports coverage and precision of local routing for a range of margins and picks
+     * the smallest margin reaching {@code targetPrecision}.
+     */
+    public Calibration calibrate(String routeName, List<Example> heldOut, double targetPrecision) {
+        Indexed indexed = routes.get(routeName);
+        if (indexed == null) {
+            throw new IllegalArgumentException("Unknown route " + routeName + "; known routes: " + routeNames());
+        }
+        boolean leaveOneOut = heldOut.isEmpty();
+        List<Example> examples = leaveOneOut ? indexed.seeds() : heldOut;
+        List<CentroidIndex.Match> matches = new ArrayList<>();
+        for (Example example : examples) {
+            if (!indexed.route().hasLabel(example.label())) {
+                throw new IllegalArgumentException("Label " + example.label() + " is not part of route " + routeName);
+            }
+            float[] vector = NgramVectorizer.vectorize(example.text());
+            matches.add(leaveOneOut
+                    ? indexed.index().nearest(vector, example.label())
+                    : indexed.index().nearest(vector));
+        }
+
+        List<Calibration.Row> rows = new ArrayList<>();
+        Double suggested = null;
+        for (double margin : CALIBRATION_MARGINS) {
+            int routed = 0;
+            int correct = 0;
+            for (int i = 0; i < examples.size(); i++) {
+                if (isLocal(indexed.route(), matches.get(i), margin)) {
+                    routed++;
+                    if (matches.get(i).label().equals(examples.get(i).label())) {
+                        correct++;
+                    }
+                }
+            }
+            double coverage = examples.isEmpty() ? 0 : (double) routed / examples.size();
+            double precision = routed == 0 ? 1 : (double) correct / routed;
+            rows.add(new Calibration.Row(margin, coverage, precision));
+            if (suggested == null && routed > 0 && precision >= targetPrecision) {
+                suggested = margin;
+            }
+        }
+        return new Calibration(routeName, leaveOneOut, examples.size(), properties.marginFor(routeName), rows, suggested);
+    }
+
+    /**
+     * Reads {@code LABEL|text} lines, skipping blanks and {@code #} comments.
+     */
+    public static List<Example> parseExamples(BufferedReader reader, String source) throws IOException {
+        List<Example> examples = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\|", 2);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Expected LABEL|text in " + source + ": " + line);
+            }
+            examples.add(new Example(parts[0].trim(), parts[1].trim()));
+        }
+        return examples;
+    }
+
+    public record Example(String label, String text) {
+    }
+
+    /**
+     * @param localByLabel       inputs answered locally, per label
+     * @param lowMargin          fallbacks whose local guess was buildable but not clear enough
+     * @param llmOnlyLabel       fallbacks whose local guess needs the LLM anyway (e.g. composites)
+     * @param fallbackAgreed     fallbacks where the LLM chose the same label as the local guess
+     * @param meanLocalMargin    average margin of locally routed inputs
+     * @param meanFallbackMargin average margin of inputs sent to the LLM
+     */
+    public record RouteStats(String route, double margin, Map<String, Long> localByLabel, long local,
+                             long lowMargin, long llmOnlyLabel, long fallbackAgreed,
+                             double meanLocalMargin, double meanFallbackMargin) {
+        public long fallbacks() {
+            return lowMargin + llmOnlyLabel;
+        }
+
+        public double localRate() {
+            long total = local + fallbacks();
+            return total == 0 ? 0 : (double) local / total;
+        }
+    }
+
+    /**
+     * @param suggestedMargin smallest margin reaching the target precision, or {@code null} if none does
+     */
+    public record Calibration(String route, boolean leaveOneOut, int examples, double currentMargin,
+                              List<Row> rows, Double suggestedMargin) {
+        public record Row(double margin, double coverage, double precision) {
+        }
+    }
+
+    private record Indexed(Route<?> route, CentroidIndex index, List<Example> seeds, Stats stats) {
+        static Indexed of(Route<?> route) {
+            List<Example> seeds = loadSeeds(route);
+            Map<String, List<float[]>> vectors = new LinkedHashMap<>();
+            for (Example seed : seeds) {
+                if (!route.hasLabel(seed.label())) {
+                    throw new IllegalStateException("Seed label " + seed.label() + " is not part of route " + route.name());
+                }
+                vectors.computeIfAbsent(seed.label(), _ -> new ArrayList<>()).add(NgramVectorizer.vectorize(seed.text()));
+            }
+            return new Indexed(route, new CentroidIndex(vectors), List.copyOf(seeds), new Stats());
+        }
+
+        private static List<Example> loadSeeds(Route<?> route) {
+            List<Example> seeds = new ArrayList<>();
+            for (String name : route.seeds()) {
+                String resource = "routing/" + name + ".txt";
+                InputStream in = LocalIntentRouter.class.getClassLoader().getResourceAsStream(resource);
+                if (in == null) {
+                    throw new IllegalStateException("Missing bundled resource " + resource);
+                }
+                try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                    seeds.addAll(parseExamples(reader, resource));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read " + resource, e);
+                }
+            }
+            return seeds;
+        }
+    }
+
+    private static final class Stats {
+        private final Map<String, LongAdder> localByLabel = new ConcurrentHashMap<>();
+        private final LongAdder local = new LongAdder();
+        private final LongAdder lowMargin = new LongAdder();
+        private final LongAdder llmOnlyLabel = new LongAdder();
+        private final LongAdder fallbackAgreed = new LongAdder();
+        private final DoubleAdder localMargin = new DoubleAdder();
+        private final DoubleAdder fallbackMargin = new DoubleAdder();
+
+        void local(CentroidIndex.Match match) {
+            local.increment();
+            localByLabel.computeIfAbsent(match.label(), _ -> new LongAdder()).increment();
+            localMargin.add(match.margin());
+        }
+
+        void fallback(CentroidIndex.Match match, boolean directLabel, boolean agreed) {
+            (directLabel ? lowMargin : llmOnlyLabel).increment();
+            if (agreed) {
+                fallbackAgreed.increment();
+            }
+            fallbackMargin.add(match.margin());
+        }
+
+        void reset() {
+            localByLabel.clear();
+            local.reset();
+            lowMargin.reset();
+            llmOnlyLabel.reset();
+            fallbackAgreed.reset();
+            localMargin.reset();
+            fallbackMargin.reset();
+        }
+
+        RouteStats snapshot(String route, double margin) {
+            Map<String, Long> byLabel = new LinkedHashMap<>();
+            localByLabel.forEach((label, count) -> byLabel.put(label, count.sum()));
+            long localCount = local.sum();
+            long fallbacks = lowMargin.sum() + llmOnlyLabel.sum();
+            return new RouteStats(route, margin, byLabel, localCount, lowMargin.sum(), llmOnlyLabel.sum(),
+                    fallbackAgreed.sum(),
+                    localCount == 0 ? 0 : localMargin.sum() / localCount,
+                    fallbacks == 0 ? 0 : fallbackMargin.sum() / fallbacks);
+        }
+    }
+}
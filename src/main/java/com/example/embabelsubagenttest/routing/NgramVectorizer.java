@@ -0,0 +1,83 @@
+package com.example.embabelsubagenttest.routing;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns text into a fixed-size, L2-normalized vector without a model: words, word bigrams and
+ * character trigrams are hashed into {@value #DIMENSIONS} signed buckets. Character trigrams
+ * make "jokes" land near "joke"; bigrams, including one with a sentence start marker, keep
+ * "and tell" apart from "tell" and "where do ..." apart from "show ...". A shape feature counts
+ * joined clauses, so "a banana and a joke" leans towards combined-request labels.
+ */
+final class NgramVectorizer {
+
+    static final int DIMENSIONS = 1 << 12;
+    private static final float WORD = 1.0f;
+    private static final float BIGRAM = 0.7f;
+    private static final float TRIGRAM = 0.3f;
+    private static final float SHAPE = 1.5f;
+    private static final Set<String> JOINERS = Set.of("and", "then", "also", "plus");
+
+    private NgramVectorizer() {
+    }
+
+    static float[] vectorize(String text) {
+        float[] vector = new float[DIMENSIONS];
+        // The sentence start marker lets "^ where" and "^ show" separate questions from commands
+        String previous = "^";
+        int joins = (int) text.chars().filter(c -> c == ',').count();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            add(vector, "w:" + word, WORD);
+            if (JOINERS.contains(word)) {
+                joins++;
+            }
+            add(vector, "b:" + previous + ' ' + word, BIGRAM);
+            String padded = '<' + word + '>';
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, "c:" + padded.substring(i, i + 3), TRIGRAM);
+            }
+            previous = word;
+        }
+        // Request shape: how many joined clauses, which separates single from combined requests
+        add(vector, "s:" + Math.min(joins, 2), SHAPE);
+        if (text.indexOf('?') >= 0) {
+            add(vector, "p:?", WORD);
+        }
+        normalize(vector);
+        return vector;
+    }
+
+    static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    static void normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    private static void add(float[] vector, String feature, float weight) {
+        // String.hashCode is specified, so vectors are stable across JVMs and restarts
+        long h = feature.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        int bucket = (int) (h & (DIMENSIONS - 1));
+        vector[bucket] += (h & (1L << 40)) == 0 ? weight : -weight;
+    }
+}
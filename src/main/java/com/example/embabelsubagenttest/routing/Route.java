@@ -0,0 +1,80 @@
+package com.example.embabelsubagenttest.routing;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A classification the {@link LocalIntentRouter} may answer locally. Labels are the
+ * {@code @JsonSubTypes} names of a sealed intent type, and seed examples come from the bundled
+ * {@code routing/<seeds>.txt} files, which routes over overlapping label sets can share. Only labels registered with {@link #direct} are built locally;
+ * the others (composites, unknowns, anything with fields the LLM must extract) always fall
+ * back, but keep their centroids so near-misses against them lower the margin.
+ */
+public final class Route<T> {
+
+    private final String name;
+    private final List<String> seeds;
+    private final Map<Class<?>, String> labels;
+    private final Map<String, Function<String, ? extends T>> direct;
+
+    private Route(String name, List<String> seeds, Map<Class<?>, String> labels, Map<String, Function<String, ? extends T>> direct) {
+        this.name = name;
+        this.seeds = seeds;
+        this.labels = labels;
+        this.direct = direct;
+    }
+
+    public static <T> Route<T> of(String name, Class<T> type, String... seeds) {
+        JsonSubTypes subTypes = type.getAnnotation(JsonSubTypes.class);
+        if (subTypes == null) {
+            throw new IllegalArgumentException(type.getName() + " has no @JsonSubTypes to take labels from");
+        }
+        Map<Class<?>, String> labels = new LinkedHashMap<>();
+        for (JsonSubTypes.Type subType : subTypes.value()) {
+            labels.put(subType.value(), subType.name());
+        }
+        return new Route<>(name, List.of(seeds), Map.copyOf(labels), Map.of());
+    }
+
+    /**
+     * Builds {@code subtype} from the raw input text when its label wins with enough margin.
+     */
+    public <S extends T> Route<T> direct(Class<S> subtype, Function<String, S> factory) {
+        String label = labels.get(subtype);
+        if (label == null) {
+            throw new IllegalArgumentException(subtype.getName() + " is not a subtype of route " + name);
+        }
+        Map<String, Function<String, ? extends T>> withDirect = new HashMap<>(direct);
+        withDirect.put(label, factory);
+        return new Route<>(name, seeds, labels, Map.copyOf(withDirect));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    List<String> seeds() {
+        return seeds;
+    }
+
+    boolean hasLabel(String label) {
+        return labels.containsValue(label);
+    }
+
+    boolean isDirect(String label) {
+        return direct.containsKey(label);
+    }
+
+    T build(String label, String text) {
+        return direct.get(label).apply(text);
+    }
+
+    String labelOf(T value) {
+        return labels.get(value.getClass());
+    }
+}
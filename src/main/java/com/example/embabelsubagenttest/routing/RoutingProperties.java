@@ -0,0 +1,30 @@
+package com.example.embabelsubagenttest.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Settings for local intent routing, bound from {@code demo.routing.*}.
+ *
+ * @param enabled       route high-margin inputs locally; when off every input goes to the LLM
+ * @param minMargin     cosine similarity lead over the runner-up centroid required to skip the LLM
+ * @param minSimilarity similarity to the winning centroid required to skip the LLM
+ * @param margins       per-route overrides of {@code minMargin}, keyed by route name
+ */
+@ConfigurationProperties("demo.routing")
+public record RoutingProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.1") double minMargin,
+        @DefaultValue("0.25") double minSimilarity,
+        @DefaultValue Map<String, Double> margins
+) {
+    public RoutingProperties {
+        margins = margins == null ? Map.of() : Map.copyOf(margins);
+    }
+
+    public double marginFor(String route) {
+        return margins.getOrDefault(route, minMargin);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The patterns deployed in this instance, read from the same {@code demo.patterns.<package>.enabled}
+ * properties that decide whether each package's agents are registered at all.
+ */
+@Component
+public class ActivePatterns {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivePatterns.class);
+
+    private final Set<AgentPattern> active = EnumSet.noneOf(AgentPattern.class);
+
+    public ActivePatterns(Environment environment) {
+        for (AgentPattern pattern : AgentPattern.values()) {
+            if (environment.getProperty(pattern.enabledProperty(), Boolean.class, true)) {
+                active.add(pattern);
+            }
+        }
+        logger.info("Active patterns: {}", active);
+    }
+
+    public boolean isActive(AgentPattern pattern) {
+        return active.contains(pattern);
+    }
+
+    public Set<AgentPattern> active() {
+        return Collections.unmodifiableSet(active);
+    }
+
+    /**
+     * @throws IllegalStateException if the pattern is switched off in this deployment
+     */
+    public void requireActive(AgentPattern pattern) {
+        if (!isActive(pattern)) {
+            throw new IllegalStateException("Pattern " + pattern.id() + " is not enabled (" + pattern.enabledProperty() + ")");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the pattern entry points and the chatbot.
+ * <p>
+ * At most {@code maxConcurrent} requests run at once. Everything else waits in a bounded
+ * queue per {@link Lane}, and freed slots always go to the highest-priority lane first.
+ * A request is shed immediately when its lane is full or when the expected wait
+ * (requests ahead of it times the observed service time) would already blow its
+ * queue-time SLO; a request that does get queued gives up once the SLO has passed.
+ */
+@Component
+public class AdmissionController {
+
+    private static final double SERVICE_TIME_SMOOTHING = 0.2;
+
+    private final AdmissionProperties properties;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, ArrayDeque<Waiter>> queues = new EnumMap<>(Lane.class);
+
+    private int inFlight;
+    private double averageServiceNanos;
+
+    public AdmissionController(AdmissionProperties properties) {
+        this.properties = properties;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Runs {@code work} once a slot is available in the given lane.
+     *
+     * @throws AdmissionRejectedException if the request is shed instead of run
+     */
+    public <T> T call(Lane lane, Supplier<T> work) {
+        if (!properties.enabled()) {
+            return work.get();
+        }
+        acquire(lane);
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued(Lane lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queuedAtOrAbove(Lane.BATCH);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(Lane lane) {
+        long timeoutNanos = properties.queueTimeout(lane).toNanos();
+        Waiter waiter;
+
+        lock.lock();
+        try {
+            int ahead = queuedAtOrAbove(lane);
+            if (inFlight < properties.maxConcurrent() && ahead == 0) {
+                inFlight++;
+                return;
+            }
+            if (queues.get(lane).size() >= properties.queueCapacity()) {
+                throw new AdmissionRejectedException(lane, lane.name().toLowerCase() + " queue is full");
+            }
+            long expectedWaitNanos = (long) ((ahead + 1) * averageServiceNanos / properties.maxConcurrent());
+            if (expectedWaitNanos > timeoutNanos) {
+                throw new AdmissionRejectedException(lane, "expected wait of %d ms exceeds the %d ms limit"
+                        .formatted(TimeUnit.NANOSECONDS.toMillis(expectedWaitNanos),
+                                TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+            }
+            waiter = new Waiter(System.nanoTime() + timeoutNanos);
+            queues.get(lane).addLast(waiter);
+        } finally {
+            lock.unlock();
+        }
+
+        boolean signalled;
+        try {
+            signalled = waiter.latch.await(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            signalled = false;
+        }
+
+        lock.lock();
+        try {
+            if (waiter.granted) {
+                return;
+            }
+            if (!signalled) {
+                queues.get(lane).remove(waiter);
+            }
+        } finally {
+            lock.unlock();
+        }
+        throw new AdmissionRejectedException(lane, "waited longer than %d ms"
+                .formatted(TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+    }
+
+    private void release(long serviceNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            averageServiceNanos = averageServiceNanos == 0
+                    ? serviceNanos
+                    : averageServiceNanos + SERVICE_TIME_SMOOTHING * (serviceNanos - averageServiceNanos);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands free slots to waiters in priority order. Waiters whose deadline has already
+     * passed are woken without a slot so they fail fast instead of running late.
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+        for (Lane lane : Lane.values()) {
+            ArrayDeque<Waiter> queue = queues.get(lane);
+            while (inFlight < properties.maxConcurrent() && !queue.isEmpty()) {
+                Waiter next = queue.pollFirst();
+                if (next.deadlineNanos - now > 0) {
+                    next.granted = true;
+                    inFlight++;
+                }
+                next.latch.countDown();
+            }
+        }
+    }
+
+    private int queuedAtOrAbove(Lane lane) {
+        int count = 0;
+        for (Lane candidate : Lane.values()) {
+            count += queues.get(candidate).size();
+            if (candidate == lane) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static final class Waiter {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long deadlineNanos;
+        boolean granted;
+
+        Waiter(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Admission control settings, bound from {@code demo.admission.*}.
+ *
+ * @param enabled        when false every request is admitted immediately
+ * @param maxConcurrent  requests allowed to run at the same time across all lanes
+ * @param queueCapacity  maximum number of waiting requests per lane
+ * @param queueTimeouts  queue-time SLO per lane; lanes not listed use {@link Lane#defaultQueueTimeout()}
+ */
+@ConfigurationProperties("demo.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("8") int maxConcurrent,
+        @DefaultValue("32") int queueCapacity,
+        Map<Lane, Duration> queueTimeouts
+) {
+    public AdmissionProperties {
+        queueTimeouts = queueTimeouts == null ? Map.of() : Map.copyOf(queueTimeouts);
+    }
+
+    public Duration queueTimeout(Lane lane) {
+        return queueTimeouts.getOrDefault(lane, lane.defaultQueueTimeout());
+    }
+}
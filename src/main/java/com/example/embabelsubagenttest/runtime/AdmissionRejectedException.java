@@ -0,0 +1,20 @@
+package com.example.embabelsubagenttest.runtime;
+
+/**
+ * Thrown when a request is shed at the entry point instead of being queued.
+ * The message is safe to show to the user as-is.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final Lane lane;
+
+    public AdmissionRejectedException(Lane lane, String reason) {
+        super("Sorry, I'm handling too many requests right now (%s). Please try again shortly."
+                .formatted(reason));
+        this.lane = lane;
+    }
+
+    public Lane lane() {
+        return lane;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.example.embabelsubagenttest.agent.hierarchical.HierarchicalIntentAgent;
+import com.example.embabelsubagenttest.agent.orchestrated.OrchestratedIntentAgent;
+import com.example.embabelsubagenttest.agent.scattergather.ScatterGatherIntentAgent;
+import com.example.embabelsubagenttest.agent.statepattern.StatePatternIntentAgent;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The five agent composition patterns, with the entry agent and final response type for
+ * the four GOAP patterns. The chatbot is session based and has neither.
+ * <p>
+ * Each pattern lives in its own package under {@code agent} and is switched on or off with
+ * {@code demo.patterns.<package>.enabled} (on when unset).
+ */
+public enum AgentPattern {
+    HIERARCHICAL("hierarchical", "hierarchical",
+            HierarchicalIntentAgent.class, HierarchicalIntentAgent.IntentAgentResponse.class),
+    STATE_PATTERN("state-pattern", "statepattern",
+            StatePatternIntentAgent.class, StatePatternIntentAgent.IntentAgentResponse.class),
+    SCATTER_GATHER("scatter-gather", "scattergather",
+            ScatterGatherIntentAgent.class, ScatterGatherIntentAgent.IntentAgentResponse.class),
+    ORCHESTRATED("orchestrated", "orchestrated",
+            OrchestratedIntentAgent.class, OrchestratedIntentAgent.FinalResponse.class),
+    CHATBOT("chatbot", "chatbot", null, null);
+
+    private final String id;
+    private final String packageName;
+    private final @Nullable Class<?> entryAgent;
+    private final @Nullable Class<?> responseType;
+
+    AgentPattern(String id, String packageName, @Nullable Class<?> entryAgent, @Nullable Class<?> responseType) {
+        this.id = id;
+        this.packageName = packageName;
+        this.entryAgent = entryAgent;
+        this.responseType = responseType;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String packageName() {
+        return packageName;
+    }
+
+    /**
+     * The property that {@code @ConditionalOnProperty} on this pattern's beans reads.
+     */
+    public String enabledProperty() {
+        return "demo.patterns." + packageName + ".enabled";
+    }
+
+    @Nullable
+    public Class<?> entryAgent() {
+        return entryAgent;
+    }
+
+    @Nullable
+    public Class<?> responseType() {
+        return responseType;
+    }
+
+    public static Optional<AgentPattern> fromId(String id) {
+        return Arrays.stream(values())
+                .filter(pattern -> pattern.id.equals(id))
+                .findFirst();
+    }
+}
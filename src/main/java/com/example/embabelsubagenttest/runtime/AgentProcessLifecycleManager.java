@@ -0,0 +1,264 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.core.Agent;
+import com.embabel.agent.core.AgentPlatform;
+import com.embabel.agent.core.AgentProcess;
+import com.embabel.agent.core.ProcessOptions;
+import com.embabel.agent.spi.AgentProcessRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Owns agent processes from creation to release. A process is run, its result extracted, and
+ * then released: kept for {@code demo.process-lifecycle.retention} so it can still be looked up
+ * for debugging, then dropped. The retained set is bounded by count as well as age, and a
+ * scheduled sweep expires it on idle nodes too, so finished process state never accumulates.
+ * <p>
+ * Dropping a process is two steps. {@code killAgentProcess} stops a process that is still
+ * running or stuck, but the platform keeps killed processes in its {@link AgentProcessRepository}
+ * with status KILLED. {@link AgentProcessRepository#delete} then removes the process and with it
+ * the last reference to its blackboard. Both calls happen outside the retention lock, and a
+ * failure is logged per process, so neither the sweep nor the agent's own result is lost to it.
+ */
+@Component
+public class AgentProcessLifecycleManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentProcessLifecycleManager.class);
+
+    private final AgentPlatform agentPlatform;
+    private final AgentProcessRepository processRepository;
+    private final DeployedAgents deployedAgents;
+    private final ProcessLifecycleProperties properties;
+    private final List<ProcessReleaseListener> releaseListeners;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Retained> retained = new ArrayDeque<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "process-lifecycle-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AgentProcessLifecycleManager(
+            AgentPlatform agentPlatform,
+            AgentProcessRepository processRepository,
+            DeployedAgents deployedAgents,
+            ProcessLifecycleProperties properties,
+            List<ProcessReleaseListener> releaseListeners) {
+        this.agentPlatform = agentPlatform;
+        this.processRepository = processRepository;
+        this.deployedAgents = deployedAgents;
+        this.properties = properties;
+        this.releaseListeners = releaseListeners;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        long interval = properties.sweepInterval().toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        // An exception escaping a scheduled task cancels all its later runs
+        try {
+            retainedCount();
+        } catch (RuntimeException e) {
+            logger.warn("Process retention sweep failed", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Runs the agent of the given type on {@code input} and returns the last {@code resultType}
+     * on its blackboard, releasing the process afterwards.
+     */
+    @Nullable
+    public <T> T runAndRelease(Class<?> agentType, Object input, Class<T> resultType) {
+        return runAndRelease(agentType, input, process -> process.last(resultType), _ -> {
+        });
+    }
+
+    /**
+     * Creates a process for the agent of the given type, hands it to {@code onCreated} before it runs, and
+     * releases it once {@code extract} has read the result, whether or not either succeeded.
+     */
+    public <R> R runAndRelease(Class<?> agentType, Object input, Function<AgentProcess, R> extract, Consumer<AgentProcess> onCreated) {
+        Agent agent = deployedAgents.resolve(agentType);
+        AgentProcess process = agentPlatform.createAgentProcessFrom(agent, ProcessOptions.DEFAULT, input);
+        running.incrementAndGet();
+        try {
+            onCreated.accept(process);
+            return extract.apply(process.run());
+        } finally {
+            running.decrementAndGet();
+            release(process);
+        }
+    }
+
+    /**
+     * Processes currently running plus finished ones still retained.
+     */
+    public int liveProcesses() {
+        return running.get() + retainedCount();
+    }
+
+    public int runningProcesses() {
+        return running.get();
+    }
+
+    public int retainedCount() {
+        List<AgentProcess> evicted = new ArrayList<>();
+        int count;
+        lock.lock();
+        try {
+            evictExpired(System.nanoTime(), evicted);
+            count = retained.size();
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(this::drop);
+        return count;
+    }
+
+    /**
+     * Estimated heap held by the blackboards of retained processes.
+     */
+    public long retainedBlackboardBytes() {
+        retainedCount();
+        return retainedBytes.get();
+    }
+
+    public long releasedProcesses() {
+        return released.get();
+    }
+
+    /**
+     * Runs in {@code runAndRelease}'s finally block, so nothing here may throw over the agent's result.
+     */
+    private void release(AgentProcess process) {
+        for (ProcessReleaseListener listener : releaseListeners) {
+            try {
+                listener.onProcessReleased(process.getId());
+            } catch (RuntimeException e) {
+                logger.warn("Release listener {} failed for process {}", listener.getClass().getSimpleName(), process.getId(), e);
+            }
+        }
+        if (properties.retention().isZero() || properties.maxRetained() <= 0) {
+            drop(process);
+            return;
+        }
+        long now = System.nanoTime();
+        long bytes = estimateBytes(process.getObjects(), 0);
+        List<AgentProcess> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            retained.addLast(new Retained(process, now + properties.retention().toNanos(), bytes));
+            retainedBytes.addAndGet(bytes);
+            while (retained.size() > properties.maxRetained()) {
+                evict(retained.removeFirst(), evicted);
+            }
+            evictExpired(now, evicted);
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(this::drop);
+    }
+
+    private void evictExpired(long now, List<AgentProcess> evicted) {
+        while (!retained.isEmpty() && retained.peekFirst().expiresAt() - now <= 0) {
+            evict(retained.removeFirst(), evicted);
+        }
+    }
+
+    private void evict(Retained entry, List<AgentProcess> evicted) {
+        retainedBytes.addAndGet(-entry.bytes());
+        evicted.add(entry.process());
+    }
+
+    /**
+     * Kills and deletes one process. Called without the lock held; a failure is logged and the
+     * process counted as released anyway, since it is no longer tracked here.
+     */
+    private void drop(AgentProcess process) {
+        try {
+            agentPlatform.killAgentProcess(process.getId());
+            processRepository.delete(process);
+        } catch (RuntimeException e) {
+            logger.warn("Could not drop agent process {}", process.getId(), e);
+        }
+        released.incrementAndGet();
+    }
+
+    /**
+     * Rough shallow-plus-strings size of blackboard contents: object headers, string characters,
+     * and record components and collection elements a few levels deep.
+     */
+    static long estimateBytes(@Nullable Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (depth >= 4) {
+            return 16;
+        }
+        if (value instanceof Collection<?> collection) {
+            long total = 32;
+            for (Object element : collection) {
+                total += 8 + estimateBytes(element, depth + 1);
+            }
+            return total;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long total = 48;
+            for (var entry : map.entrySet()) {
+                total += 32 + estimateBytes(entry.getKey(), depth + 1) + estimateBytes(entry.getValue(), depth + 1);
+            }
+            return total;
+        }
+        if (value.getClass().isRecord()) {
+            long total = 16;
+            for (RecordComponent component : value.getClass().getRecordComponents()) {
+                try {
+                    total += 8 + estimateBytes(component.getAccessor().invoke(value), depth + 1);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    total += 8;
+                }
+            }
+            return total;
+        }
+        return 16;
+    }
+
+    private record Retained(AgentProcess process, long expiresAt, long bytes) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.chat.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assistant replies of one chat session, handed to the turn that is waiting for them.
+ * <p>
+ * The chatbot answers a session's messages in order, one reply each. A turn that gives up
+ * waiting leaves its reply owed; the next turn skips that many replies before taking its own,
+ * so a late answer is never returned for the wrong message. Turns of one session must not
+ * overlap.
+ * <p>
+ * A reply that still finds the queue full after {@link #DELIVERY_TIMEOUT} is dropped and
+ * counted as lost, so the turn it belonged to stops waiting for it instead of owing it.
+ * A closed session drops replies without waiting.
+ */
+public final class ChatReplies {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatReplies.class);
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration LOST_CHECK_INTERVAL = Duration.ofMillis(200);
+    private static final int CAPACITY = 10;
+
+    private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicInteger lost = new AtomicInteger();
+    private volatile boolean closed;
+    private int owed;
+
+    void deliver(Message message) {
+        boolean queued;
+        try {
+            queued = !closed && queue.offer(message, DELIVERY_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            lost.incrementAndGet();
+            if (!closed) {
+                logger.warn("Dropped a chat reply: {} replies are waiting to be read", CAPACITY);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting replies; the session is gone and nobody will read them.
+     */
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    /**
+     * Waits for the reply to the message just sent, or returns null after {@code timeout} or if
+     * the reply was dropped.
+     */
+    @Nullable
+    Message await(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            // A lost reply settles the oldest turn still waiting for one: an owed turn, else this one
+            while (takeLost()) {
+                if (owed == 0) {
+                    return null;
+                }
+                owed--;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                owed++;
+                return null;
+            }
+            Message reply;
+            try {
+                reply = queue.poll(Math.min(remaining, LOST_CHECK_INTERVAL.toNanos()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                owed++;
+                throw e;
+            }
+            if (reply == null) {
+                continue;
+            }
+            if (owed == 0) {
+                return reply;
+            }
+            owed--;
+        }
+    }
+
+    private boolean takeLost() {
+        return lost.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+    }
+}
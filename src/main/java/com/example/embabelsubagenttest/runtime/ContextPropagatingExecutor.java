@@ -0,0 +1,77 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.example.embabelsubagenttest.llm.BranchContext;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Executor wrapper that runs each task in the {@link RequestContext} and {@link BranchContext} of
+ * the thread that submitted it. {@link #capture} does the same for a single task handed to code
+ * that brings its own executor ({@code supplyAsync} without one, scatter-gather builders, raw
+ * threads). Capturing reads two scoped values; a task submitted outside any request runs as is.
+ */
+public final class ContextPropagatingExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+
+    private ContextPropagatingExecutor(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    public static ExecutorService wrap(ExecutorService delegate) {
+        return delegate instanceof ContextPropagatingExecutor ? delegate : new ContextPropagatingExecutor(delegate);
+    }
+
+    public static <T> Supplier<T> capture(Supplier<T> task) {
+        RequestContext request = RequestContext.current().orElse(null);
+        BranchContext branch = BranchContext.current().orElse(null);
+        if (request == null && branch == null) {
+            return task;
+        }
+        Supplier<T> inBranch = branch == null ? task : branch.propagate(task);
+        return request == null ? inBranch : () -> request.call(inBranch);
+    }
+
+    public static Runnable capture(Runnable task) {
+        Supplier<Void> captured = capture(() -> {
+            task.run();
+            return null;
+        });
+        return captured::get;
+    }
+
+    @Override
+    public void execute(@Nullable Runnable command) {
+        delegate.execute(capture(command));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.embabelsubagenttest.runtime;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+/**
+ * Runs a small dependency graph of tasks: every node starts as soon as all of its upstream
+ * nodes have finished, receives their outputs, and at most {@code demo.dag.max-parallelism}
+ * nodes of one graph run at a time. Nodes run on virtual threads, so waiting for a permit
+ * does not tie up a platform thread.
+ * <p>
+ * Edges come from an LLM and are not trusted: edges with out-of-range indices or self loops
+ * are dropped, and if the rest contains a cycle only edges pointing to a later node are kept,
+ * which is always acyclic.
+ */
+@Component
+public class DagExecutor {
+
+    private final ExecutorService executor = ContextPropagatingExecutor.wrap(Executors.newVirtualThreadPerTaskExecutor());
+    private final int maxParallelism;
+
+    public DagExecutor(DagProperties properties) {
+        this.maxParallelism = Math.max(1, properties.maxParallelism());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public record Edge(int from, int to) {
+    }
+
+    /**
+     * Runs {@code task} for nodes {@code 0..nodeCount-1} and returns their outputs in node order.
+     * The task gets the node index and the outputs of its upstream nodes, keyed by index.
+     *
+     * @throws CompletionException if any node fails; nodes downstream of it are not run
+     */
+    public <T> List<T> run(int nodeCount, Collection<Edge> edges, BiFunction<Integer, Map<Integer, T>, T> task) {
+        List<List<Integer>> upstream = upstreamOf(nodeCount, edges);
+        Semaphore permits = new Semaphore(maxParallelism);
+        List<CompletableFuture<T>> futures = new ArrayList<>(Collections.nCopies(nodeCount, null));
+        for (int node : topologicalOrder(upstream)) {
+            List<Integer> parents = upstream.get(node);
+            CompletableFuture<?>[] inputs = parents.stream().map(futures::get).toArray(CompletableFuture[]::new);
+            futures.set(node, CompletableFuture.allOf(inputs).thenApplyAsync(_ -> {
+                Map<Integer, T> outputs = new LinkedHashMap<>();
+                for (int parent : parents) {
+                    outputs.put(parent, futures.get(parent).join());
+                }
+                permits.acquireUninterruptibly();
+                try {
+                    return task.apply(node, outputs);
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    static List<List<Integer>> upstreamOf(int nodeCount, Collection<Edge> edges) {
+        List<Edge> valid = edges.stream()
+                .filter(e -> e.from() >= 0 && e.from() < nodeCount && e.to() >= 0 && e.to() < nodeCount)
+                .filter(e -> e.from() != e.to())
+                .toList();
+        List<List<Integer>> upstream = build(nodeCount, valid);
+        if (topologicalOrder(upstream).size() < nodeCount) {
+            upstream = build(nodeCount, valid.stream().filter(e -> e.from() < e.to()).toList());
+        }
+        return upstream;
+    }
+
+    private static List<List<Integer>> build(int nodeCount, List<Edge> edges) {
+        List<List<Integer>> upstream = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            upstream.add(new ArrayList<>());
+        }
+        for (Edge edge : edges) {
+            if (!upstream.get(edge.to()).contains(edge.from())) {
+                upstream.get(edge.to()).add(edge.from());
+            }
+        }
+        return upstream;
+    }
+
+    /**
+     * Kahn's algorithm; returns fewer than all nodes when the graph has a cycle.
+     */
+    static List<Integer> topologicalOrder(List<List<Integer>> upstream) {
+        int n = upstream.size();
+        int[] pending = new int[n];
+        List<List<Integer>> downstream = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            downstream.add(new ArrayList<>());
+        }
+        for (int node = 0; node < n; node++) {
+            pending[node] = upstream.get(node).size();
+            for (int parent : upstream.get(node)) {
+                downstream.get(parent).add(node);
+            }
+        }
+        List<Integer> order = new ArrayList<>(n);
+        for (int node = 0; node < n; node++) {
+            if (pending[node] == 0) {
+                order.add(node);
+            }
+        }
+        for (int i = 0; i < order.size(); i++) {
+            for (int child : downstream.get(order.get(i))) {
+                if (--pending[child] == 0) {
+                    order.add(child);
+                }
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for running dependency graphs of sub-requests, bound from {@code demo.dag.*}.
+ *
+ * @param maxParallelism nodes of one graph allowed to run at the same time
+ */
+@ConfigurationProperties("demo.dag")
+public record DagProperties(
+        @DefaultValue("4") int maxParallelism
+) {
+}
@@ -0,0 +1,15 @@
+package com.example.embabelsubagenttest.runtime;
+
+import java.time.Instant;
+
+/**
+ * Published as an application event whenever the {@link DegradationController} changes level.
+ *
+ * @param reason the signals that triggered the change, or who pinned the level
+ */
+public record DegradationChangedEvent(DegradationLevel from, DegradationLevel to, String reason, Instant at) {
+
+    public boolean escalation() {
+        return to.compareTo(from) > 0;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.embabelsubagenttest.runtime;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds optional stages under load, one {@link DegradationLevel} at a time. Every check interval
+ * it samples the admission queue and the recent p95 latency of each pattern: while either is over
+ * its limit the level goes up a step, at most once per {@code escalate-after}; once both are
+ * comfortably back under (the recovery thresholds sit below the overload ones, so the level does
+ * not flap) and stay there for {@code recover-after}, it comes down a step. Each change is logged
+ * and published as a {@link DegradationChangedEvent}.
+ *
+ * <p>Stages ask {@link #sheds} before running; it is a volatile read, and counts what was shed.
+ */
+@Component
+public class DegradationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DegradationController.class);
+
+    private final DegradationProperties properties;
+    private final AdmissionController admissionController;
+    private final LiveStats liveStats;
+    private final ApplicationEventPublisher events;
+    private final Map<DegradationLevel, LongAdder> entered = new EnumMap<>(DegradationLevel.class);
+    private final Map<DegradationLevel, LongAdder> shed = new EnumMap<>(DegradationLevel.class);
+    private final Map<DegradationLevel, LongAdder> nanosIn = new EnumMap<>(DegradationLevel.class);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "degradation-controller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile DegradationLevel level = DegradationLevel.NORMAL;
+    @Nullable
+    private volatile DegradationLevel pinned;
+    // Only touched under the monitor
+    private long changedNanos = System.nanoTime();
+    private long calmSinceNanos = -1;
+    private Signals lastSignals = new Signals(0, Duration.ZERO, null);
+
+    public DegradationController(
+            DegradationProperties properties,
+            AdmissionController admissionController,
+            LiveStats liveStats,
+            ApplicationEventPublisher events) {
+        this.properties = properties;
+        this.admissionController = admissionController;
+        this.liveStats = liveStats;
+        this.events = events;
+        for (DegradationLevel l : DegradationLevel.values()) {
+            entered.put(l, new LongAdder());
+            shed.put(l, new LongAdder());
+            nanosIn.put(l, new LongAdder());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        long interval = properties.checkInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public DegradationLevel level() {
+        return level;
+    }
+
+    /**
+     * True if {@code stage} is shed at the current level, in which case the caller skips it and it is counted.
+     */
+    public boolean sheds(DegradationLevel stage) {
+        if (stage == DegradationLevel.NORMAL || level.compareTo(stage) < 0) {
+            return false;
+        }
+        shed.get(stage).increment();
+        return true;
+    }
+
+    /**
+     * Holds the level until {@link #unpin()}, whatever the signals say. For drills and incidents.
+     */
+    public synchronized void pin(DegradationLevel pinnedLevel) {
+        pinned = pinnedLevel;
+        change(pinnedLevel, "pinned from the shell");
+    }
+
+    public synchronized void unpin() {
+        pinned = null;
+        calmSinceNanos = -1;
+    }
+
+    synchronized void check() {
+        try {
+            Signals signals = sample();
+            lastSignals = signals;
+            if (pinned != null) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (overloaded(signals)) {
+                calmSinceNanos = -1;
+                if (level != DegradationLevel.CANNED && now - changedNanos >= properties.escalateAfter().toNanos()) {
+                    change(level.up(), signals.describe());
+                }
+            } else if (calm(signals)) {
+                if (calmSinceNanos < 0) {
+                    calmSinceNanos = now;
+                }
+                long recoverAfter = properties.recoverAfter().toNanos();
+                if (level != DegradationLevel.NORMAL && now - calmSinceNanos >= recoverAfter && now - changedNanos >= recoverAfter) {
+                    change(level.down(), "calm for " + properties.recoverAfter().toSeconds() + "s, " + signals.describe());
+                }
+            } else {
+                // Between the recovery and overload thresholds: hold the current level
+                calmSinceNanos = -1;
+            }
+        } catch (Exception e) {
+            logger.warn("Degradation check failed, will retry next interval: {}", e.getMessage());
+        }
+    }
+
+    private Signals sample() {
+        Duration worstP95 = Duration.ZERO;
+        String worstPattern = null;
+        for (var entry : liveStats.recentPatterns().entrySet()) {
+            LiveStats.Window window = entry.getValue();
+            Duration p95 = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(window.p95()));
+            if (window.count() >= properties.minSamples() && p95.compareTo(worstP95) > 0) {
+                worstP95 = p95;
+                worstPattern = entry.getKey();
+            }
+        }
+        return new Signals(admissionController.queued(), worstP95, worstPattern);
+    }
+
+    private boolean overloaded(Signals signals) {
+        return signals.queued() >= properties.queueDepth() || signals.p95().compareTo(properties.latencySlo()) > 0;
+    }
+
+    private boolean calm(Signals signals) {
+        long recoveryNanos = (long) (properties.latencySlo().toNanos() * properties.recoveryRatio());
+        return signals.queued() <= properties.recoveryQueueDepth() && signals.p95().toNanos() <= recoveryNanos;
+    }
+
+    private void change(DegradationLevel to, String reason) {
+        DegradationLevel from = level;
+        if (from == to) {
+            return;
+        }
+        long now = System.nanoTime();
+        nanosIn.get(from).add(now - changedNanos);
+        changedNanos = now;
+        calmSinceNanos = -1;
+        level = to;
+        entered.get(to).increment();
+        DegradationChangedEvent event = new DegradationChangedEvent(from, to, reason, Instant.now());
+        if (event.escalation()) {
+            logger.warn("Degrading {} -> {}: {}", from.id(), to.id(), reason);
+        } else {
+            logger.info("Recovering {} -> {}: {}", from.id(), to.id(), reason);
+        }
+        events.publishEvent(event);
+    }
+
+    public synchronized Snapshot snapshot() {
+        long inCurrent = System.nanoTime() - changedNanos;
+        List<LevelRow> rows = Arrays.stream(DegradationLevel.values())
+                .map(l -> new LevelRow(l, entered.get(l).sum(),
+                        Duration.ofNanos(nanosIn.get(l).sum() + (l == level ? inCurrent : 0)), shed.get(l).sum()))
+                .toList();
+        return new Snapshot(level, pinned != null, lastSignals, rows);
+    }
+
+    /**
+     * @param p95     recent p95 latency of the slowest pattern with enough samples, zero if none has
+     * @param pattern that pattern, if any
+     */
+    public record Signals(int queued, Duration p95, @Nullable String pattern) {
+        String describe() {
+            return pattern == null
+                    ? "queued=" + queued
+                    : "queued=" + queued + ", " + pattern + " p95=" + p95.toMillis() + "ms";
+        }
+    }
+
+    /**
+     * @param entered times the level was switched to
+     * @param time    time spent at the level, including the current stay
+     * @param shed    stages skipped because of this level (for {@link DegradationLevel#NORMAL}, always zero)
+     */
+    public record LevelRow(DegradationLevel level, long entered, Duration time, long shed) {
+    }
+
+    public record Snapshot(DegradationLevel level, boolean pinned, Signals signals, List<LevelRow> levels) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.embabelsubagenttest.runtime;
+
+import java.util.Locale;
+
+/**
+ * How much optional work the {@link DegradationController} currently sheds. Declaration order is
+ * escalation order, and each level also sheds everything the levels before it shed: a plainer
+ * answer served fast beats a polished one served late.
+ */
+public enum DegradationLevel {
+    /** Everything runs. */
+    NORMAL,
+    /** Services guess the joke, fortune or art style from keywords instead of asking the model. */
+    SKIP_STYLE,
+    /** Answers stay untranslated unless the translation cache already has them. */
+    SKIP_TRANSLATION,
+    /** Services answer from the bundled corpus, as they do while their circuit breaker is open. */
+    CANNED;
+
+    public String id() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    public static DegradationLevel fromId(String id) {
+        return valueOf(id.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    DegradationLevel up() {
+        return this == CANNED ? CANNED : values()[ordinal() + 1];
+    }
+
+    DegradationLevel down() {
+        return this == NORMAL ? NORMAL : values()[ordinal() - 1];
+    }
+}
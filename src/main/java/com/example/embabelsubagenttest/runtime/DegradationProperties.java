@@ -0,0 +1,34 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Graceful degradation settings, bound from {@code demo.degradation.*}.
+ *
+ * @param enabled            when false the level stays {@link DegradationLevel#NORMAL} unless pinned from the shell
+ * @param checkInterval      how often queue depth and latency are sampled
+ * @param queueDepth         requests waiting at admission at which the node counts as overloaded
+ * @param latencySlo         p95 request latency of the slowest pattern, over the last 10 to 20 seconds, above which the
+ *                           node counts as overloaded
+ * @param minSamples         requests a pattern needs in that window before its p95 is trusted
+ * @param escalateAfter      least time between two escalations, so the latency window sees the previous step take effect
+ * @param recoveryQueueDepth queued requests at or below which the node may recover
+ * @param recoveryRatio      fraction of the SLO the p95 must be back under before the node may recover
+ * @param recoverAfter       how long the node must stay calm before each step back down
+ */
+@ConfigurationProperties("demo.degradation")
+public record DegradationProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("2s") Duration checkInterval,
+        @DefaultValue("8") int queueDepth,
+        @DefaultValue("30s") Duration latencySlo,
+        @DefaultValue("5") int minSamples,
+        @DefaultValue("20s") Duration escalateAfter,
+        @DefaultValue("1") int recoveryQueueDepth,
+        @DefaultValue("0.7") double recoveryRatio,
+        @DefaultValue("60s") Duration recoverAfter
+) {
+}
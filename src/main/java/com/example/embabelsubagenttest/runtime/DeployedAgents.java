@@ -0,0 +1,47 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.api.event.AgentDeploymentEvent;
+import com.embabel.agent.api.event.AgentPlatformEvent;
+import com.embabel.agent.api.event.AgenticEventListener;
+import com.embabel.agent.core.Agent;
+import com.embabel.agent.core.AgentPlatform;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves deployed agents by the class they were read from, replacing a linear scan of
+ * {@code agentPlatform.agents()} on every child process with a map lookup. Entries are
+ * dropped whenever an agent is (re)deployed, so a redeploy is picked up on the next call.
+ */
+@Component
+public class DeployedAgents implements AgenticEventListener {
+
+    private final Map<String, Agent> byName = new ConcurrentHashMap<>();
+    private final ObjectProvider<AgentPlatform> agentPlatform;
+
+    // Provider, not the platform itself: the platform depends on its event listeners
+    public DeployedAgents(ObjectProvider<AgentPlatform> agentPlatform) {
+        this.agentPlatform = agentPlatform;
+    }
+
+    /**
+     * @throws IllegalStateException if no agent of that type is deployed
+     */
+    public Agent resolve(Class<?> agentType) {
+        return byName.computeIfAbsent(agentType.getSimpleName(), name -> agentPlatform.getObject().agents().stream()
+                .filter(a -> a.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(name + " not deployed")));
+    }
+
+    @Override
+    public void onPlatformEvent(@NonNull AgentPlatformEvent event) {
+        if (event instanceof AgentDeploymentEvent) {
+            byName.clear();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.embabelsubagenttest.runtime;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Priority lanes used by the {@link AdmissionController}.
+ * Declaration order is priority order: interactive chat is served before queries,
+ * queries before novelty commands, and batch traffic only when nothing else is waiting.
+ */
+public enum Lane {
+    INTERACTIVE(Duration.ofSeconds(2)),
+    QUERY(Duration.ofSeconds(5)),
+    COMMAND(Duration.ofSeconds(5)),
+    BATCH(Duration.ofSeconds(30));
+
+    private static final Pattern QUESTION_START = Pattern.compile(
+            "^(what|where|why|how|who|when|which|is|are|can|could|does|do|did|should|will|would)\\b.*");
+
+    private final Duration defaultQueueTimeout;
+
+    Lane(Duration defaultQueueTimeout) {
+        this.defaultQueueTimeout = defaultQueueTimeout;
+    }
+
+    public Duration defaultQueueTimeout() {
+        return defaultQueueTimeout;
+    }
+
+    /**
+     * Cheap lexical guess used at the entry points, before any classification has happened.
+     * Questions go to the query lane, everything else is treated as a command.
+     */
+    public static Lane forMessage(String content) {
+        String normalized = content.trim().toLowerCase(Locale.ROOT);
+        if (normalized.endsWith("?") || QUESTION_START.matcher(normalized).matches()) {
+            return QUERY;
+        }
+        return COMMAND;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.example.embabelsubagenttest.llm.BranchContext;
+import com.example.embabelsubagenttest.llm.LlmCallListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Always-on request statistics for the {@code stats} shell command: per pattern (as served by
+ * {@link PatternRunner}) and per model interaction id, the rate, latency percentiles and requests
+ * in flight, since start and over the last minute; plus hit rates of the registered caches. Model
+ * calls made on behalf of a {@link RequestContext} are also counted against its pattern, and the
+ * model usage each request's {@link BranchContext} tree collected is totalled per pattern and per
+ * branch name. Recording is lock-free and allocation-free once a series exists, see {@link RollingWindow}.
+ */
+@Component
+public class LiveStats implements LlmCallListener {
+
+    private final Map<String, Series> patterns = new ConcurrentHashMap<>();
+    private final Map<String, Series> interactions = new ConcurrentHashMap<>();
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Usage> requestUsage = new ConcurrentHashMap<>();
+    private final Map<String, Usage> branchUsage = new ConcurrentHashMap<>();
+    private volatile long startedNanos = System.nanoTime();
+
+    public <T> T timeRequest(AgentPattern pattern, Supplier<T> work) {
+        Series series = series(patterns, pattern.id());
+        series.inFlight.increment();
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            series.inFlight.decrement();
+            series.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Adds the usage a finished request's root branch collected: its total against the pattern,
+     * and every branch joined under it against the branch's name.
+     */
+    public void recordUsage(AgentPattern pattern, BranchContext root) {
+        usage(requestUsage, pattern.id()).add(root.usage());
+        for (BranchContext.Usage branch : root.joinedBranches()) {
+            usage(branchUsage, branch.branch()).add(branch);
+        }
+    }
+
+    @Override
+    public void onStart(String id) {
+        series(interactions, id).inFlight.increment();
+    }
+
+    @Override
+    public void onCall(String id, long nanos) {
+        Series series = series(interactions, id);
+        series.inFlight.decrement();
+        series.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        RequestContext.currentPattern().ifPresent(pattern -> series(patterns, pattern).llmCalls.increment());
+    }
+
+    /**
+     * The hit/miss counters for a named cache, created on first use. Callers keep the instance.
+     */
+    public Cache cache(String name) {
+        return caches.computeIfAbsent(name, _ -> new Cache());
+    }
+
+    /**
+     * Request latency per pattern over the last 10 to 20 seconds, see {@link RollingWindow#recent()}.
+     */
+    public Map<String, Window> recentPatterns() {
+        Map<String, Window> recent = new TreeMap<>();
+        patterns.forEach((name, series) -> recent.put(name, Window.of(series.latency.recent())));
+        return recent;
+    }
+
+    /**
+     * Clears the windows and counts. Requests in flight keep being tracked.
+     */
+    public void reset() {
+        patterns.values().forEach(Series::reset);
+        interactions.values().forEach(Series::reset);
+        caches.values().forEach(Cache::reset);
+        requestUsage.values().forEach(Usage::reset);
+        branchUsage.values().forEach(Usage::reset);
+        startedNanos = System.nanoTime();
+    }
+
+    public Snapshot snapshot() {
+        long started = startedNanos;
+        double uptime = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+        double minute = Math.max(1e-9, RollingWindow.lastMinuteSeconds(started));
+        List<Row> patternRows = rows(patterns, uptime, minute);
+        List<Row> interactionRows = rows(interactions, uptime, minute);
+        List<CacheRow> cacheRows = caches.entrySet().stream()
+                .map(e -> e.getValue().row(e.getKey()))
+                .sorted(Comparator.comparing(CacheRow::name))
+                .toList();
+        return new Snapshot(uptime, minute, patternRows, interactionRows,
+                ratio(interactionRows, patternRows, false), ratio(interactionRows, patternRows, true), cacheRows,
+                usageRows(requestUsage), usageRows(branchUsage));
+    }
+
+    private static List<UsageRow> usageRows(Map<String, Usage> usage) {
+        return usage.entrySet().stream()
+                .map(e -> e.getValue().row(e.getKey()))
+                .filter(r -> r.runs() > 0)
+                .sorted(Comparator.comparing(UsageRow::name))
+                .toList();
+    }
+
+    private static List<Row> rows(Map<String, Series> series, double uptime, double minute) {
+        return series.entrySet().stream()
+                .map(e -> e.getValue().row(e.getKey(), uptime, minute))
+                .sorted(Comparator.comparing(Row::name))
+                .toList();
+    }
+
+    /**
+     * Model calls per pattern request across the node, including calls made outside any request
+     * (e.g. warm pool refills); {@link Row#llmCallsPerRequest()} has the per-pattern figure.
+     */
+    private static double ratio(List<Row> calls, List<Row> requests, boolean lastMinute) {
+        long requestCount = requests.stream().mapToLong(r -> (lastMinute ? r.lastMinute() : r.sinceStart()).count()).sum();
+        long callCount = calls.stream().mapToLong(r -> (lastMinute ? r.lastMinute() : r.sinceStart()).count()).sum();
+        return requestCount == 0 ? Double.NaN : (double) callCount / requestCount;
+    }
+
+    private static Series series(Map<String, Series> map, String key) {
+        Series series = map.get(key);
+        return series != null ? series : map.computeIfAbsent(key, _ -> new Series());
+    }
+
+    private static Usage usage(Map<String, Usage> map, String key) {
+        Usage usage = map.get(key);
+        return usage != null ? usage : map.computeIfAbsent(key, _ -> new Usage());
+    }
+
+    private static final class Series {
+        private final LongAdder inFlight = new LongAdder();
+        private volatile RollingWindow latency = RollingWindow.histogram();
+        private volatile RollingWindow llmCalls = RollingWindow.counter();
+
+        void reset() {
+            latency = RollingWindow.histogram();
+            llmCalls = RollingWindow.counter();
+        }
+
+        Row row(String name, double uptime, double minute) {
+            RollingWindow window = latency;
+            Window sinceStart = Window.of(window.sinceStart());
+            Window lastMinute = Window.of(window.lastMinute());
+            long calls = llmCalls.sinceStart().count();
+            return new Row(name, inFlight.sum(), sinceStart, sinceStart.count() / uptime,
+                    lastMinute, lastMinute.count() / minute,
+                    sinceStart.count() == 0 || calls == 0 ? Double.NaN : (double) calls / sinceStart.count());
+        }
+    }
+
+    public static final class Cache {
+        private volatile RollingWindow hits = RollingWindow.counter();
+        private volatile RollingWindow misses = RollingWindow.counter();
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        void reset() {
+            hits = RollingWindow.counter();
+            misses = RollingWindow.counter();
+        }
+
+        CacheRow row(String name) {
+            return new CacheRow(name, hits.sinceStart().count(), misses.sinceStart().count(),
+                    hits.lastMinute().count(), misses.lastMinute().count());
+        }
+    }
+
+    private static final class Usage {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void add(BranchContext.Usage usage) {
+            runs.increment();
+            calls.add(usage.llmCalls());
+            nanos.add(usage.llmTime().toNanos());
+        }
+
+        void reset() {
+            runs.reset();
+            calls.reset();
+            nanos.reset();
+        }
+
+        UsageRow row(String name) {
+            return new UsageRow(name, runs.sum(), calls.sum(), Duration.ofNanos(nanos.sum()));
+        }
+    }
+
+    /**
+     * @param llmCallsPerRequest model calls attributed to this pattern per request; NaN for interactions
+     */
+    public record Row(String name, long inFlight, Window sinceStart, double qps, Window lastMinute, double lastMinuteQps,
+                      double llmCallsPerRequest) {
+    }
+
+    public record CacheRow(String name, long hits, long misses, long lastMinuteHits, long lastMinuteMisses) {
+        public double hitRate() {
+            return rate(hits, misses);
+        }
+
+        public double lastMinuteHitRate() {
+            return rate(lastMinuteHits, lastMinuteMisses);
+        }
+
+        private static double rate(long hits, long misses) {
+            return hits + misses == 0 ? Double.NaN : (double) hits / (hits + misses);
+        }
+    }
+
+    /**
+     * Model usage summed since start over {@code runs} requests of a pattern, or runs of a branch.
+     *
+     * @param llmTime model time summed over calls, so parallel branches add up past wall-clock time
+     */
+    public record UsageRow(String name, long runs, long llmCalls, Duration llmTime) {
+        public double llmCallsPerRun() {
+            return (double) llmCalls / runs;
+        }
+
+        public double llmMillisPerRun() {
+            return llmTime.toNanos() / 1e6 / runs;
+        }
+    }
+
+    /**
+     * @param requestUsage model usage per pattern, from the requests' branch trees
+     * @param branchUsage  model usage per branch name; a branch's figures include the forks nested in it
+     */
+    public record Snapshot(double uptimeSeconds, double lastMinuteSeconds, List<Row> patterns, List<Row> interactions,
+                           double llmCallsPerRequest, double lastMinuteLlmCallsPerRequest, List<CacheRow> caches,
+                           List<UsageRow> requestUsage, List<UsageRow> branchUsage) {
+    }
+
+    /**
+     * @param count values recorded; percentiles are in microseconds
+     */
+    public record Window(long count, long p50, long p95, long p99) {
+        static Window of(RollingWindow.Snapshot snapshot) {
+            return new Window(snapshot.count(), snapshot.p50(), snapshot.p95(), snapshot.p99());
+        }
+    }
+}
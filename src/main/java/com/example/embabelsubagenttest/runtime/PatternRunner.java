@@ -0,0 +1,198 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.api.channel.MessageOutputChannelEvent;
+import com.embabel.agent.api.channel.OutputChannel;
+import com.embabel.agent.api.channel.OutputChannelEvent;
+import com.embabel.agent.api.identity.SimpleUser;
+import com.embabel.agent.api.identity.User;
+import com.embabel.agent.domain.io.UserInput;
+import com.embabel.chat.AssistantMessage;
+import com.embabel.chat.ChatSession;
+import com.embabel.chat.Chatbot;
+import com.embabel.chat.Message;
+import com.embabel.chat.UserMessage;
+import com.example.embabelsubagenttest.llm.BranchContext;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Single entry point for running any of the five patterns, shared by the shell and the HTTP API.
+ * GOAP patterns run their entry agent as an agent process behind admission control; the
+ * chatbot runs one turn in a fresh session (its action does its own admission). Each request
+ * runs in its own {@link RequestContext}; GOAP requests also run under a root {@link BranchContext}
+ * whose model usage, fan-out branches included, goes to {@link LiveStats}. Chatbot turns are
+ * answered on the platform's own threads, so their calls are only counted per pattern.
+ */
+@Component
+public class PatternRunner {
+
+    public static final User DEMO_USER = new SimpleUser(
+            "demo",
+            "Demo User",
+            "demo",
+            null
+    );
+
+    private static final Duration CHAT_REPLY_TIMEOUT = Duration.ofSeconds(60);
+
+    private final ObjectProvider<Chatbot> chatbot;
+    private final ActivePatterns activePatterns;
+    private final AdmissionController admissionController;
+    private final ProcessEventRelay eventRelay;
+    private final AgentProcessLifecycleManager processes;
+    private final LiveStats liveStats;
+    private final RequestProperties requestProperties;
+
+    public PatternRunner(
+            ObjectProvider<Chatbot> chatbot,
+            ActivePatterns activePatterns,
+            AdmissionController admissionController,
+            ProcessEventRelay eventRelay,
+            AgentProcessLifecycleManager processes,
+            LiveStats liveStats,
+            RequestProperties requestProperties) {
+        this.chatbot = chatbot;
+        this.activePatterns = activePatterns;
+        this.admissionController = admissionController;
+        this.eventRelay = eventRelay;
+        this.processes = processes;
+        this.liveStats = liveStats;
+        this.requestProperties = requestProperties;
+    }
+
+    public String run(AgentPattern pattern, String content) {
+        return run(pattern, content, event -> {
+        });
+    }
+
+    /**
+     * Runs the pattern to completion, reporting progress along the way.
+     *
+     * @throws AdmissionRejectedException if the request is shed at admission
+     * @throws IllegalStateException       if the pattern is not enabled in this deployment
+     */
+    public String run(AgentPattern pattern, String content, Consumer<ProgressEvent> progress) {
+        activePatterns.requireActive(pattern);
+        RequestContext context = RequestContext.start(DEMO_USER.getId(), pattern, requestProperties.deadline());
+        if (pattern == AgentPattern.CHATBOT) {
+            return context.call(() -> liveStats.timeRequest(pattern, () -> chatOnce(content, progress)));
+        }
+        BranchContext root = BranchContext.root(pattern.id());
+        try {
+            return context.call(root.propagate(() -> liveStats.timeRequest(pattern, () -> admissionController.call(Lane.forMessage(content), () -> {
+                progress.accept(ProgressEvent.of("admitted", pattern.id()));
+                return runAgent(pattern, content, progress);
+            }))));
+        } finally {
+            liveStats.recordUsage(pattern, root);
+        }
+    }
+
+    /**
+     * Opens a chatbot session whose assistant replies are delivered to the given queue.
+     */
+    public ChatSession openChatSession(ChatReplies replies) {
+        activePatterns.requireActive(AgentPattern.CHATBOT);
+        // The chatbot bean is lazy: the utility planner is only built on first use
+        return chatbot.getObject().createSession(DEMO_USER, new QueueingOutputChannel(replies), UUID.randomUUID().toString());
+    }
+
+    /**
+     * Sends one user message to a chat session and waits for the assistant's reply. Turns of one
+     * session must not overlap, see {@link ChatReplies}.
+     */
+    public String chatTurn(ChatSession session, ChatReplies replies, String content) {
+        return chatTurn(DEMO_USER.getId(), session, replies, content);
+    }
+
+    /**
+     * {@link #chatTurn(ChatSession, ChatReplies, String)} on behalf of the given user, who is
+     * also the audience near-duplicate suppression remembers the session's replies for.
+     */
+    public String chatTurn(String user, ChatSession session, ChatReplies replies, String content) {
+        if (RequestContext.current().isEmpty()) {
+            // A turn of a long-lived HTTP session: each message is its own request
+            return RequestContext.start(user, AgentPattern.CHATBOT, requestProperties.deadline())
+                    .call(() -> chatTurn(user, session, replies, content));
+        }
+        session.onUserMessage(new UserMessage(content));
+        try {
+            Message response = replies.await(CHAT_REPLY_TIMEOUT);
+            return response != null ? response.getContent() : "Response timed out";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted while waiting for response";
+        }
+    }
+
+    private String chatOnce(String content, Consumer<ProgressEvent> progress) {
+        ChatReplies replies = new ChatReplies();
+        ChatSession session = openChatSession(replies);
+        progress.accept(ProgressEvent.of("session-created", null));
+        return chatTurn(session, replies, content);
+    }
+
+    private String runAgent(AgentPattern pattern, String content, Consumer<ProgressEvent> progress) {
+        var processId = new AtomicReference<String>();
+        try {
+            return processes.runAndRelease(pattern.entryAgent(), new UserInput(content), completed -> {
+                String message = messageOf(completed.last(pattern.responseType()));
+                if (message == null) {
+                    throw new IllegalStateException(pattern.id() + " finished without a response: "
+                            + completed.getStatus());
+                }
+                return message;
+            }, process -> {
+                processId.set(process.getId());
+                eventRelay.subscribe(process.getId(), progress);
+            });
+        } finally {
+            if (processId.get() != null) {
+                eventRelay.unsubscribe(processId.get());
+            }
+        }
+    }
+
+    /**
+     * Extracts the user-facing message from any of the patterns' response records,
+     * which all expose a {@code message()} accessor but share no common interface.
+     */
+    @Nullable
+    static String messageOf(@Nullable Object response) {
+        if (response == null) {
+            return null;
+        }
+        if (response instanceof com.example.embabelsubagenttest.agent.AgentMessageResponse r) {
+            return r.message();
+        }
+        try {
+            Method accessor = response.getClass().getMethod("message");
+            return accessor.getReturnType() == String.class ? (String) accessor.invoke(response) : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * OutputChannel that queues assistant messages for retrieval.
+     */
+    private record QueueingOutputChannel(ChatReplies replies) implements OutputChannel {
+        @Override
+        public void send(@NonNull OutputChannelEvent event) {
+            if (event instanceof MessageOutputChannelEvent msgEvent) {
+                Message msg = msgEvent.getMessage();
+                if (msg instanceof AssistantMessage) {
+                    replies.deliver(msg);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.api.event.AgentProcessCompletedEvent;
+import com.embabel.agent.api.event.AgentProcessEvent;
+import com.embabel.agent.api.event.AgentProcessFailedEvent;
+import com.embabel.agent.api.event.AgentProcessPlanFormulatedEvent;
+import com.embabel.agent.api.event.AgentProcessReadyToPlanEvent;
+import com.embabel.agent.api.event.AgenticEventListener;
+import com.embabel.agent.core.AgentProcess;
+import com.embabel.plan.Plan;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every GOAP planning step, from ready-to-plan to plan-formulated, keyed by agent, the
+ * set of types bound on the blackboard and the goal planned for. Per key it also counts how
+ * often the planner produced the same action sequence as last time. This only measures
+ * planning: Embabel plans inside the agent process, and plans are not cached here.
+ * <p>
+ * A planning step that never formulates a plan is forgotten when its process completes, fails
+ * or is released.
+ */
+@Component
+public class PlanningMetrics implements AgenticEventListener, ProcessReleaseListener {
+
+    private final Map<String, Long> planningStarted = new ConcurrentHashMap<>();
+    private final Map<PlanKey, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void onProcessEvent(@NonNull AgentProcessEvent event) {
+        if (event instanceof AgentProcessReadyToPlanEvent) {
+            planningStarted.put(event.getProcessId(), System.nanoTime());
+        } else if (event instanceof AgentProcessPlanFormulatedEvent formulated) {
+            Long started = planningStarted.remove(event.getProcessId());
+            if (started != null) {
+                Plan plan = formulated.getPlan();
+                PlanKey key = PlanKey.of(formulated.getAgentProcess(), plan.getGoal().getName());
+                stats.computeIfAbsent(key, _ -> new Stats())
+                        .record(System.nanoTime() - started, plan.getActions().stream().map(a -> a.getName()).toList());
+            }
+        } else if (event instanceof AgentProcessCompletedEvent || event instanceof AgentProcessFailedEvent) {
+            planningStarted.remove(event.getProcessId());
+        }
+    }
+
+    @Override
+    public void onProcessReleased(String processId) {
+        planningStarted.remove(processId);
+    }
+
+
+    /**
+     * Planning statistics per key, slowest total first.
+     */
+    public List<Summary> snapshot() {
+        return stats.entrySet().stream()
+                .map(e -> e.getValue().summary(e.getKey()))
+                .sorted(Comparator.comparingLong(Summary::totalMicros).reversed())
+                .toList();
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Agent, the simple names of the blackboard's bound types, and the goal.
+     */
+    public record PlanKey(String agent, String boundTypes, String goal) {
+        static PlanKey of(AgentProcess process, String goal) {
+            var types = new TreeSet<String>();
+            for (Object o : process.getObjects()) {
+                types.add(o.getClass().getSimpleName());
+            }
+            return new PlanKey(process.getAgent().getName(), String.join(",", types), goal);
+        }
+    }
+
+    public record Summary(PlanKey key, long count, long totalMicros, long maxMicros, long repeatedPlans) {
+        public double meanMicros() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder repeatedPlans = new LongAdder();
+        private volatile List<String> lastPlan = List.of();
+
+        void record(long nanos, List<String> actions) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (actions.equals(lastPlan)) {
+                repeatedPlans.increment();
+            }
+            lastPlan = actions;
+        }
+
+        Summary summary(PlanKey key) {
+            return new Summary(key, count.sum(), totalNanos.sum() / 1_000, maxNanos.get() / 1_000, repeatedPlans.sum());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.api.event.ActionExecutionStartEvent;
+import com.embabel.agent.api.event.AgentPlatformEvent;
+import com.embabel.agent.api.event.AgentProcessEvent;
+import com.embabel.agent.api.event.AgenticEventListener;
+import com.embabel.agent.api.event.ObjectAddedEvent;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Forwards platform events for a given agent process to whoever subscribed to it,
+ * translated into {@link ProgressEvent}s. Used to stream progress over HTTP.
+ */
+@Component
+public class ProcessEventRelay implements AgenticEventListener {
+
+    private final Map<String, Consumer<ProgressEvent>> subscribers = new ConcurrentHashMap<>();
+
+    public void subscribe(String processId, Consumer<ProgressEvent> subscriber) {
+        subscribers.put(processId, subscriber);
+    }
+
+    public void unsubscribe(String processId) {
+        subscribers.remove(processId);
+    }
+
+    @Override
+    public void onProcessEvent(@NonNull AgentProcessEvent event) {
+        Consumer<ProgressEvent> subscriber = subscribers.get(event.getProcessId());
+        if (subscriber == null) {
+            return;
+        }
+        if (event instanceof ActionExecutionStartEvent start) {
+            subscriber.accept(ProgressEvent.of("action-started", start.getAction().getName()));
+        } else if (event instanceof ObjectAddedEvent added) {
+            String message = PatternRunner.messageOf(added.getValue());
+            if (message != null) {
+                subscriber.accept(ProgressEvent.of("partial-result", message));
+            }
+        }
+    }
+
+    @Override
+    public void onPlatformEvent(@NonNull AgentPlatformEvent event) {
+        // Platform-wide events are not tied to a request
+    }
+}
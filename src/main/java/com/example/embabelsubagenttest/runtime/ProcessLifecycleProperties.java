@@ -0,0 +1,21 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for releasing finished agent processes, bound from {@code demo.process-lifecycle.*}.
+ *
+ * @param retention     how long a finished process stays inspectable before it is killed; zero releases at once
+ * @param maxRetained   finished processes kept at most, oldest released first
+ * @param sweepInterval how often retained processes past their retention are released on an idle node
+ */
+@ConfigurationProperties("demo.process-lifecycle")
+public record ProcessLifecycleProperties(
+        @DefaultValue("60s") Duration retention,
+        @DefaultValue("100") int maxRetained,
+        @DefaultValue("5s") Duration sweepInterval
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.embabelsubagenttest.runtime;
+
+/**
+ * Told when {@link AgentProcessLifecycleManager} is done with a process it ran, whatever the
+ * process ended as: completed, failed, stuck or killed. Per-process state kept by platform event
+ * listeners is dropped here, since not every way a process ends publishes a terminal event.
+ */
+public interface ProcessReleaseListener {
+
+    void onProcessReleased(String processId);
+}
@@ -0,0 +1,17 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Progress notification emitted while a pattern runs, e.g. an action starting or a
+ * sub-agent result landing on the blackboard.
+ *
+ * @param type    short event type, such as {@code action-started} or {@code partial-result}
+ * @param detail  action name or partial message, if any
+ */
+public record ProgressEvent(String type, @Nullable String detail, long timestampMillis) {
+
+    public static ProgressEvent of(String type, @Nullable String detail) {
+        return new ProgressEvent(type, detail, System.currentTimeMillis());
+    }
+}
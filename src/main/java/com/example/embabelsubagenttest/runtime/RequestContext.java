@@ -0,0 +1,115 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.slf4j.MDC;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Identity of the request a thread is working for: bound as a {@link ScopedValue} by
+ * {@link PatternRunner} and mirrored into the logging MDC ({@code requestId}, {@code user},
+ * {@code pattern}). Scoped values do not cross executor or thread-pool boundaries and MDC is
+ * thread-local, so async hops go through {@link ContextPropagatingExecutor} and child agent
+ * processes through {@link RequestContextProcessHook}.
+ *
+ * @param deadline when the caller stops waiting for an answer
+ */
+public record RequestContext(String requestId, String user, String pattern, Instant deadline) {
+
+    public static final String MDC_REQUEST_ID = "requestId";
+    public static final String MDC_USER = "user";
+    public static final String MDC_PATTERN = "pattern";
+
+    private static final ScopedValue<RequestContext> CURRENT = ScopedValue.newInstance();
+
+    public static RequestContext start(String user, AgentPattern pattern, Duration budget) {
+        return new RequestContext(UUID.randomUUID().toString(), user, pattern.id(), Instant.now().plus(budget));
+    }
+
+    public static Optional<RequestContext> current() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty();
+    }
+
+    /**
+     * User of the current request, read from the MDC on threads of child agent processes.
+     */
+    public static Optional<String> currentUser() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get().user()) : Optional.ofNullable(MDC.get(MDC_USER));
+    }
+
+    /**
+     * Pattern of the current request. Threads of child agent processes have no scoped value but
+     * carry the pattern in their MDC, see {@link RequestContextProcessHook}.
+     */
+    public static Optional<String> currentPattern() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get().pattern()) : Optional.ofNullable(MDC.get(MDC_PATTERN));
+    }
+
+    /**
+     * {@code limit}, shortened to the time left before the current request's deadline.
+     */
+    public static Duration cap(Duration limit) {
+        if (!CURRENT.isBound()) {
+            return limit;
+        }
+        Duration remaining = CURRENT.get().remaining();
+        return remaining.compareTo(limit) < 0 ? remaining : limit;
+    }
+
+    public Duration remaining() {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Runs {@code task} on the calling thread as part of this request, restoring the thread's
+     * previous MDC entries afterwards so pooled threads do not leak identities.
+     */
+    public <T> T call(Supplier<T> task) {
+        Mdc previous = Mdc.put(this);
+        try {
+            return ScopedValue.where(CURRENT, this).call(task::get);
+        } finally {
+            previous.restore();
+        }
+    }
+
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * The MDC entries this class manages, as they were before {@link #put}.
+     */
+    record Mdc(@Nullable String requestId, @Nullable String user, @Nullable String pattern) {
+
+        static Mdc put(RequestContext context) {
+            Mdc previous = new Mdc(MDC.get(MDC_REQUEST_ID), MDC.get(MDC_USER), MDC.get(MDC_PATTERN));
+            MDC.put(MDC_REQUEST_ID, context.requestId());
+            MDC.put(MDC_USER, context.user());
+            MDC.put(MDC_PATTERN, context.pattern());
+            return previous;
+        }
+
+        void restore() {
+            set(MDC_REQUEST_ID, requestId);
+            set(MDC_USER, user);
+            set(MDC_PATTERN, pattern);
+        }
+
+        private static void set(String key, @Nullable String value) {
+            if (value == null) {
+                MDC.remove(key);
+            } else {
+                MDC.put(key, value);
+            }
+        }
+    }
+}
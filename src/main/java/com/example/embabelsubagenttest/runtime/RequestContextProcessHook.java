@@ -0,0 +1,113 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.embabel.agent.api.event.ActionExecutionResultEvent;
+import com.embabel.agent.api.event.ActionExecutionStartEvent;
+import com.embabel.agent.api.event.AgentPlatformEvent;
+import com.embabel.agent.api.event.AgentProcessCompletedEvent;
+import com.embabel.agent.api.event.AgentProcessCreationEvent;
+import com.embabel.agent.api.event.AgentProcessEvent;
+import com.embabel.agent.api.event.AgentProcessFailedEvent;
+import com.embabel.agent.api.event.AgenticEventListener;
+import com.embabel.agent.core.AgentProcess;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Carries the {@link RequestContext} into agent processes, including child processes started by
+ * sub-agent invocations on threads the request never touched. A process inherits the context
+ * bound where it was created, or else its parent process's; while one of its actions runs, the
+ * request's identity is in the MDC of the thread running it. Relies on action events being
+ * published on the thread that runs the action, which is how the platform publishes them.
+ * <p>
+ * An action that throws may end without a result event, so the MDC is also restored when its
+ * process completes, fails or is released (which is also how killed processes end), and a
+ * result event unwinds any nested entries left behind. Released processes are forgotten too.
+ */
+@Component
+public class RequestContextProcessHook implements AgenticEventListener, ProcessReleaseListener {
+
+    private final Map<String, RequestContext> byProcess = new ConcurrentHashMap<>();
+    // Actions of child processes run nested inside their parent's action on the same thread
+    private final ThreadLocal<Deque<Pushed>> pushed = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public Optional<RequestContext> contextOf(String processId) {
+        return Optional.ofNullable(byProcess.get(processId));
+    }
+
+    @Override
+    public void onProcessEvent(@NonNull AgentProcessEvent event) {
+        switch (event) {
+            case AgentProcessCreationEvent created -> adopt(created.getAgentProcess());
+            case ActionExecutionStartEvent start -> {
+                RequestContext context = byProcess.get(start.getProcessId());
+                if (context != null) {
+                    pushed.get().push(new Pushed(start.getProcessId(), RequestContext.Mdc.put(context)));
+                }
+            }
+            case ActionExecutionResultEvent result -> unwind(result.getProcessId(), false);
+            case AgentProcessCompletedEvent completed -> onProcessReleased(completed.getProcessId());
+            case AgentProcessFailedEvent failed -> onProcessReleased(failed.getProcessId());
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onProcessReleased(String processId) {
+        byProcess.remove(processId);
+        unwind(processId, true);
+    }
+
+    /**
+     * Restores this thread's MDC to what it was before the process's most recent action, or with
+     * {@code outermost} its first one still open, along with any nested entries pushed since.
+     */
+    private void unwind(String processId, boolean outermost) {
+        Deque<Pushed> stack = pushed.get();
+        Pushed target = null;
+        for (Pushed entry : stack) {
+            if (entry.processId().equals(processId)) {
+                target = entry;
+                if (!outermost) {
+                    break;
+                }
+            }
+        }
+        if (target == null) {
+            if (stack.isEmpty()) {
+                pushed.remove();
+            }
+            return;
+        }
+        Pushed popped;
+        do {
+            popped = stack.pop();
+            popped.previous().restore();
+        } while (popped != target);
+        if (stack.isEmpty()) {
+            pushed.remove();
+        }
+    }
+
+    private void adopt(AgentProcess process) {
+        Optional<RequestContext> context = RequestContext.current();
+        if (context.isEmpty() && process.getParentId() != null) {
+            context = contextOf(process.getParentId());
+        }
+        context.ifPresent(c -> byProcess.put(process.getId(), c));
+    }
+
+    @Override
+    public void onPlatformEvent(@NonNull AgentPlatformEvent event) {
+        // Platform-wide events are not tied to a request
+    }
+
+    private record Pushed(String processId, RequestContext.Mdc previous) {
+    }
+}
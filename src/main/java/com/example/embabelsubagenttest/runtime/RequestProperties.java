@@ -0,0 +1,17 @@
+package com.example.embabelsubagenttest.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Per-request settings, bound from {@code demo.request.*}.
+ *
+ * @param deadline time budget of a pattern request, carried in its {@link RequestContext}; fan-outs cap their timeouts to it
+ */
+@ConfigurationProperties("demo.request")
+public record RequestProperties(
+        @DefaultValue("120s") Duration deadline
+) {
+}
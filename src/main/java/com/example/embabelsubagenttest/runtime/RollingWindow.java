@@ -0,0 +1,184 @@
+package com.example.embabelsubagenttest.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram, kept both since start and over a rolling minute.
+ * {@link #counter()} keeps a single bucket, for plain event counts.
+ * <p>
+ * Values (microseconds) fall into buckets of 16 linear steps per power of two, about 6% wide, so
+ * percentiles are accurate to within a bucket. The minute is made of ten-second slices reused
+ * round-robin; a writer that finds its slice stamped with an old epoch clears it first. A record
+ * is two array increments and a volatile read, with no allocation. Samples landing on a slice
+ * while another writer is clearing it can be lost, which is acceptable for live monitoring.
+ */
+final class RollingWindow {
+
+    static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final int WINDOW_SLICES = 6;
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final int buckets;
+    private final Slice total;
+    // One spare slice, so the full window is still intact while the current slice fills
+    private final Slice[] slices = new Slice[WINDOW_SLICES + 1];
+
+    private RollingWindow(int buckets) {
+        this.buckets = buckets;
+        this.total = new Slice(buckets);
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new Slice(buckets);
+        }
+    }
+
+    static RollingWindow histogram() {
+        return new RollingWindow(BUCKETS);
+    }
+
+    static RollingWindow counter() {
+        return new RollingWindow(1);
+    }
+
+    void increment() {
+        record(0);
+    }
+
+    void record(long micros) {
+        int bucket = buckets == 1 ? 0 : bucket(Math.max(0, micros));
+        total.add(bucket);
+        long epoch = epoch(System.nanoTime());
+        Slice slice = slices[(int) Math.floorMod(epoch, slices.length)];
+        slice.roll(epoch);
+        slice.add(bucket);
+    }
+
+    Snapshot sinceStart() {
+        return Snapshot.of(total.counts());
+    }
+
+    /**
+     * The last six complete slices plus the current one, 60 to 70 seconds; see {@link #lastMinuteSeconds}.
+     */
+    Snapshot lastMinute() {
+        return lastSlices(WINDOW_SLICES);
+    }
+
+    /**
+     * The last complete slice plus the current one, 10 to 20 seconds: fresh enough to react to.
+     */
+    Snapshot recent() {
+        return lastSlices(1);
+    }
+
+    private Snapshot lastSlices(int complete) {
+        long current = epoch(System.nanoTime());
+        long[] merged = new long[buckets];
+        for (Slice slice : slices) {
+            if (current - slice.epoch.get() <= complete) {
+                long[] counts = slice.counts();
+                for (int b = 0; b < buckets; b++) {
+                    merged[b] += counts[b];
+                }
+            }
+        }
+        return Snapshot.of(merged);
+    }
+
+    /**
+     * Seconds covered by {@link #lastMinute()}, capped by how long the window has existed.
+     */
+    static double lastMinuteSeconds(long createdNanos) {
+        long now = System.nanoTime();
+        double window = (WINDOW_SLICES * SLICE_NANOS + now - epoch(now) * SLICE_NANOS) / 1e9;
+        return Math.min(window, (now - createdNanos) / 1e9);
+    }
+
+    private static long epoch(long nanos) {
+        return Math.floorDiv(nanos, SLICE_NANOS);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Highest value that falls into the bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long base = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return base + (1L << shift) - 1;
+    }
+
+    private static final class Slice {
+        private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray counts;
+
+        Slice(int buckets) {
+            counts = new AtomicLongArray(buckets);
+        }
+
+        void roll(long current) {
+            long seen = epoch.get();
+            if (seen != current && epoch.compareAndSet(seen, current)) {
+                for (int b = 0; b < counts.length(); b++) {
+                    counts.set(b, 0);
+                }
+            }
+        }
+
+        void add(int bucket) {
+            counts.incrementAndGet(bucket);
+        }
+
+        long[] counts() {
+            long[] copy = new long[counts.length()];
+            for (int b = 0; b < copy.length; b++) {
+                copy[b] = counts.get(b);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * @param count number of values; percentiles are bucket upper bounds in microseconds
+     */
+    record Snapshot(long count, long p50, long p95, long p99) {
+        static Snapshot of(long[] counts) {
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            return new Snapshot(count, percentile(counts, count, 0.50), percentile(counts, count, 0.95),
+                    percentile(counts, count, 0.99));
+        }
+
+        private static long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return upperBound(b);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+    }
+}
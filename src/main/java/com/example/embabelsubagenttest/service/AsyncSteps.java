@@ -0,0 +1,69 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking steps of one asynchronous service call, each on its own virtual thread,
+ * so composing them with {@code thenCompose} ties up no platform thread while a model call is
+ * outstanding. {@link #cancel()} interrupts whichever step is running and fails any step not yet
+ * started; services call it when their result future is cancelled or times out.
+ */
+public final class AsyncSteps {
+
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public <T> CompletableFuture<T> run(Supplier<T> blocking) {
+        // The step runs on behalf of the caller's request and branch
+        Supplier<T> task = ContextPropagatingExecutor.capture(blocking);
+        CompletableFuture<T> step = new CompletableFuture<>();
+        Thread.ofVirtual().name("async-step").start(() -> {
+            Thread self = Thread.currentThread();
+            running.add(self);
+            try {
+                if (cancelled) {
+                    throw new CancellationException("Cancelled before the step started");
+                }
+                step.complete(task.get());
+            } catch (Throwable t) {
+                step.completeExceptionally(t);
+            } finally {
+                running.remove(self);
+            }
+        });
+        return step;
+    }
+
+    /**
+     * A copy of {@code source} whose cancellation or timeout interrupts the steps. The source
+     * itself still completes, so stages attached to it (e.g. breaker accounting) see the failure.
+     */
+    public <T> CompletableFuture<T> cancelledWith(CompletableFuture<T> source) {
+        CompletableFuture<T> result = source.copy();
+        result.whenComplete((_, failure) -> {
+            if (failure != null) {
+                cancel();
+            }
+        });
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        running.forEach(Thread::interrupt);
+    }
+
+    /**
+     * The exception a failed stage actually threw, without the {@link CompletionException} wrapper.
+     */
+    public static Throwable cause(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
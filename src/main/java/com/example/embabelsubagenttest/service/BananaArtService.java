@@ -3,44 +3,138 @@ package com.example.embabelsubagenttest.service;
 import com.embabel.agent.api.common.Ai;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.BananaArtRequest;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.BananaArtResult;
+import com.example.embabelsubagenttest.cache.TieredCache;
+import com.example.embabelsubagenttest.cache.TieredCaches;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import com.example.embabelsubagenttest.runtime.DegradationController;
+import com.example.embabelsubagenttest.runtime.DegradationLevel;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Service for generating ASCII art of bananas.
  * Plain Spring Component (not an @Agent) - designed to be called from CommandOrchestrator.
  */
 @Component
-public class BananaArtService {
+public class BananaArtService implements CommandService<BananaArtResult> {
+
+    private final CannedContent cannedContent;
+    private final CircuitBreaker circuitBreaker;
+    private final DegradationController degradation;
+    private final TieredCache<ArtStyle> styles;
+    private final StructuredOutputRegistry structuredOutputs;
+
+    public BananaArtService(CannedContent cannedContent, CircuitBreakerProperties circuitBreakerProperties, DegradationController degradation, TieredCaches caches, StructuredOutputRegistry structuredOutputs) {
+        this.cannedContent = cannedContent;
+        this.circuitBreaker = new CircuitBreaker("banana-art", circuitBreakerProperties);
+        this.degradation = degradation;
+        this.styles = caches.create("art-style", ArtStyle.class);
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(ArtStyle.class);
+    }
+
+    @Override
+    public String key() {
+        return "bananaArt";
+    }
+
+    @Override
+    public String displayName() {
+        return "Banana art";
+    }
+
+    @Override
+    public String description() {
+        return "the user wants ASCII art of a banana";
+    }
+
+    @Override
+    public Class<BananaArtResult> resultType() {
+        return BananaArtResult.class;
+    }
+
+    @Override
+    public BananaArtResult execute(String description, Ai ai) {
+        return generate(new BananaArtRequest(description), ai);
+    }
+
+    @Override
+    public CompletionStage<BananaArtResult> executeAsync(String description, Ai ai) {
+        return generateAsync(new BananaArtRequest(description), ai);
+    }
 
     public BananaArtResult generate(BananaArtRequest request, Ai ai) {
-        try {
-            // Classify the style preference
-            ArtStyle style = ai.withAutoLlm()
-                    .withId("classify-art-style")
-                    .creating(ArtStyle.class)
-                    .fromPrompt("""
-                            Classify the user's art style preference:
-                            - CLASSIC: Traditional detailed ASCII art (default if not specified)
-                            - SIMPLE: Minimalist, small ASCII art
-                            - DETAILED: Complex, large ASCII art with fine details
-
-                            User request: %s
-
-                            Return the appropriate style.""".formatted(request.description()));
-
-            String art = switch (style) {
-                case ArtStyle.Classic ignored -> generateClassicBanana();
-                case ArtStyle.Simple ignored -> generateSimpleBanana();
-                case ArtStyle.Detailed ignored -> generateDetailedBanana();
-            };
-
-            return BananaArtResult.success(art);
-
-        } catch (Exception e) {
-            return BananaArtResult.error("Failed to generate banana art: " + e.getMessage());
+        return generateAsync(request, ai).toCompletableFuture().join();
+    }
+
+    /**
+     * Non-blocking {@link #generate}: the style classification runs on a virtual thread and the
+     * art is rendered once it completes. Cancelling the result's future, or an {@code orTimeout} on
+     * it, interrupts the classification and counts the call as failed.
+     */
+    public CompletionStage<BananaArtResult> generateAsync(BananaArtRequest request, Ai ai) {
+        CircuitBreaker.Permit permit = degradation.sheds(DegradationLevel.SKIP_STYLE) ? null : circuitBreaker.tryAcquire();
+        if (permit == null) {
+            // Overloaded, or the provider is unhealthy: the art is local anyway, so only the style classification is skipped
+            return CompletableFuture.completedFuture(
+                    BananaArtResult.success(render(cachedOrGuessedStyle(request))));
         }
+        AsyncSteps steps = new AsyncSteps();
+        AtomicBoolean providerCalled = new AtomicBoolean();
+        long start = System.nanoTime();
+        return steps.cancelledWith(steps.run(() -> styles.get(TieredCaches.textKey(request.description()), () -> {
+                    providerCalled.set(true);
+                    return classifyStyle(request, ai);
+                }))
+                .thenApply(this::render)
+                .handle((art, failure) -> {
+                    if (!providerCalled.get()) {
+                        // Style came from the cache: nothing to tell the breaker
+                        permit.release();
+                    } else if (failure != null) {
+                        permit.onFailure(System.nanoTime() - start);
+                    } else {
+                        permit.onSuccess(System.nanoTime() - start);
+                    }
+                    if (failure != null) {
+                        return BananaArtResult.error("Failed to generate banana art: " + AsyncSteps.cause(failure).getMessage());
+                    }
+                    return BananaArtResult.success(art);
+                }));
+    }
+
+    private ArtStyle cachedOrGuessedStyle(BananaArtRequest request) {
+        ArtStyle cached = styles.getIfPresent(TieredCaches.textKey(request.description()));
+        return cached != null ? cached : cannedContent.artStyleFor(request.description());
+    }
+
+    private ArtStyle classifyStyle(BananaArtRequest request, Ai ai) {
+        return structuredOutputs.create(ai.withAutoLlm(), "classify-art-style", ArtStyle.class, """
+                        Classify the user's art style preference:
+                        - CLASSIC: Traditional detailed ASCII art (default if not specified)
+                        - SIMPLE: Minimalist, small ASCII art
+                        - DETAILED: Complex, large ASCII art with fine details
+
+                        User request: %s
+
+                        Return the appropriate style.""".formatted(request.description()));
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private String render(ArtStyle style) {
+        return switch (style) {
+            case ArtStyle.Classic ignored -> generateClassicBanana();
+            case ArtStyle.Simple ignored -> generateSimpleBanana();
+            case ArtStyle.Detailed ignored -> generateDetailedBanana();
+        };
     }
 
     private String generateClassicBanana() {
@@ -0,0 +1,137 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.service.BananaArtService.ArtStyle;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneCategory;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneStyle;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneTone;
+import com.example.embabelsubagenttest.service.JokeService.JokeDomain;
+import com.example.embabelsubagenttest.service.JokeService.JokeFormat;
+import com.example.embabelsubagenttest.service.JokeService.JokeStyle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+/**
+ * Local corpus of jokes and fortunes bundled under {@code canned/}, indexed by style.
+ * Used as the fallback while a service's {@link CircuitBreaker} is open, together with
+ * keyword-based style guesses that replace the LLM style classification.
+ */
+@Component
+public class CannedContent {
+
+    private final Map<JokeStyle, List<String>> jokes = new HashMap<>();
+    private final Map<FortuneStyle, List<String>> fortunes = new HashMap<>();
+
+    public CannedContent() {
+        load("canned/jokes.txt", (key, text) -> jokes
+                .computeIfAbsent(new JokeStyle(JokeDomain.valueOf(key[0]), JokeFormat.valueOf(key[1])),
+                        k -> new ArrayList<>())
+                .add(text));
+        load("canned/fortunes.txt", (key, text) -> fortunes
+                .computeIfAbsent(new FortuneStyle(FortuneCategory.valueOf(key[0]), FortuneTone.valueOf(key[1])),
+                        k -> new ArrayList<>())
+                .add(text));
+    }
+
+    public String joke(JokeStyle style) {
+        List<String> exact = jokes.get(style);
+        if (exact != null) {
+            return pick(exact);
+        }
+        return pick(jokes.getOrDefault(new JokeStyle(JokeDomain.GENERAL, style.format()), List.of(
+                "Why do programmers prefer dark mode? Because light attracts bugs.")));
+    }
+
+    public String fortune(FortuneStyle style) {
+        List<String> exact = fortunes.get(style);
+        if (exact != null) {
+            return pick(exact);
+        }
+        return pick(fortunes.getOrDefault(new FortuneStyle(FortuneCategory.WISDOM, style.tone()), List.of(
+                "The river does not hurry, yet it reaches the sea. So shall you.")));
+    }
+
+    public JokeStyle jokeStyleFor(String description) {
+        String text = description.toLowerCase(Locale.ROOT);
+        JokeDomain domain = text.contains("javascript") || text.contains(" js") || text.contains("node")
+                ? JokeDomain.JAVASCRIPT
+                : text.contains("java") || text.contains("jvm")
+                ? JokeDomain.JAVA
+                : text.contains("python")
+                ? JokeDomain.PYTHON
+                : text.contains("sql") || text.contains("database")
+                ? JokeDomain.DATABASE
+                : JokeDomain.GENERAL;
+        JokeFormat format = text.contains("pun") || text.contains("wordplay")
+                ? JokeFormat.PUN
+                : text.contains("question") || text.contains("why did") || text.contains("knock")
+                ? JokeFormat.QUESTION_ANSWER
+                : JokeFormat.ONE_LINER;
+        return new JokeStyle(domain, format);
+    }
+
+    public FortuneStyle fortuneStyleFor(String description) {
+        String text = description.toLowerCase(Locale.ROOT);
+        FortuneCategory category = text.contains("career") || text.contains("work") || text.contains("job")
+                ? FortuneCategory.CAREER
+                : text.contains("love") || text.contains("relationship") || text.contains("romance")
+                ? FortuneCategory.LOVE
+                : text.contains("tech") || text.contains("code") || text.contains("programming")
+                ? FortuneCategory.TECHNOLOGY
+                : FortuneCategory.WISDOM;
+        FortuneTone tone = text.contains("mystic") || text.contains("mysterious") || text.contains("ancient")
+                ? FortuneTone.MYSTICAL
+                : text.contains("deep") || text.contains("philosoph")
+                ? FortuneTone.PHILOSOPHICAL
+                : text.contains("funny") || text.contains("humor") || text.contains("silly")
+                ? FortuneTone.HUMOROUS
+                : FortuneTone.OPTIMISTIC;
+        return new FortuneStyle(category, tone);
+    }
+
+    public ArtStyle artStyleFor(String description) {
+        String text = description.toLowerCase(Locale.ROOT);
+        if (text.contains("simple") || text.contains("small") || text.contains("minimal")) {
+            return new ArtStyle.Simple();
+        }
+        if (text.contains("detailed") || text.contains("large") || text.contains("big")) {
+            return new ArtStyle.Detailed();
+        }
+        return new ArtStyle.Classic();
+    }
+
+    private static String pick(List<String> candidates) {
+        return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+    }
+
+    private static void load(String resource, BiConsumer<String[], String> sink) {
+        InputStream in = CannedContent.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Missing bundled resource " + resource);
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\|", 3);
+                sink.accept(new String[]{parts[0].trim(), parts[1].trim()}, parts[2].trim());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.embabelsubagenttest.service;
+
+import org.springframework.lang.Nullable;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker guarding a single service.
+ * <p>
+ * While CLOSED, the outcome of the last {@code windowSize} calls is kept in a ring buffer and
+ * the breaker opens once the failure rate or the slow-call rate crosses its threshold.
+ * While OPEN, calls are refused so callers can serve a local fallback instantly. After
+ * {@code openDuration} the breaker goes HALF_OPEN and lets a few probe calls through:
+ * if they all succeed in time it closes again, otherwise it reopens.
+ * <p>
+ * Every state change starts a new generation. A {@link Permit} remembers the generation it was
+ * issued in, and its outcome is ignored once the breaker has moved on: a call admitted while
+ * CLOSED that finishes after the breaker reopened is neither a probe nor evidence about the new state.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+    private static final byte RELEASED = 3;
+
+    private final String name;
+    private final CircuitBreakerProperties properties;
+    private final LongSupplier nanoClock;
+    private final byte[] window;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long generation;
+
+    public CircuitBreaker(String name, CircuitBreakerProperties properties) {
+        this(name, properties, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, CircuitBreakerProperties properties, LongSupplier nanoClock) {
+        this.name = name;
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.window = new byte[Math.max(1, properties.windowSize())];
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Returns a permit if the caller may go to the provider, null if it should use its fallback.
+     * Every permitted call must be followed by {@link Permit#onSuccess} or {@link Permit#onFailure},
+     * or by {@link Permit#release} if it ended up answering without calling the provider.
+     */
+    @Nullable
+    public synchronized Permit tryAcquire() {
+        if (!properties.enabled()) {
+            return new Permit(generation, false);
+        }
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openUntilNanos < 0) {
+                return null;
+            }
+            transition(State.HALF_OPEN);
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= properties.halfOpenProbes()) {
+                return null;
+            }
+            probesInFlight++;
+            return new Permit(generation, true);
+        }
+        return new Permit(generation, false);
+    }
+
+    private synchronized void record(Permit permit, byte outcome) {
+        if (!properties.enabled() || permit.generation != generation) {
+            // Admitted under an earlier state; see the class comment
+            return;
+        }
+        if (permit.probe) {
+            probesInFlight--;
+            if (outcome == RELEASED) {
+                return;
+            }
+            if (outcome != OK) {
+                open();
+            } else if (++probeSuccesses >= properties.halfOpenProbes()) {
+                close();
+            }
+            return;
+        }
+        if (outcome == RELEASED) {
+            return;
+        }
+        if (recorded == window.length) {
+            forget(window[position]);
+        } else {
+            recorded++;
+        }
+        window[position] = outcome;
+        position = (position + 1) % window.length;
+        if (outcome == FAILED) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+        if (recorded >= properties.minimumCalls()
+                && (failures >= properties.failureRateThreshold() * recorded
+                || slowCalls >= properties.slowCallRateThreshold() * recorded)) {
+            open();
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILED) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openUntilNanos = nanoClock.getAsLong() + properties.openDuration().toNanos();
+        resetWindow();
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        resetWindow();
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    /**
+     * Admission to call the provider once. Only the first outcome reported counts.
+     */
+    public final class Permit {
+
+        private final long generation;
+        private final boolean probe;
+        private boolean reported;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        public void onSuccess(long elapsedNanos) {
+            report(elapsedNanos > properties.slowCallDuration().toNanos() ? SLOW : OK);
+        }
+
+        public void onFailure(long elapsedNanos) {
+            report(FAILED);
+        }
+
+        /**
+         * Gives the permit back without an outcome, for calls answered from a cache or pool: they say
+         * nothing about the provider, and counting them as successes would dilute its failure rate.
+         */
+        public void release() {
+            report(RELEASED);
+        }
+
+        private void report(byte outcome) {
+            synchronized (CircuitBreaker.this) {
+                if (reported) {
+                    return;
+                }
+                reported = true;
+                record(this, outcome);
+            }
+        }
+    }
+}
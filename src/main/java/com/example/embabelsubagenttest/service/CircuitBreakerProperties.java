@@ -0,0 +1,33 @@
+package com.example.embabelsubagenttest.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker settings shared by the joke, fortune and banana art services,
+ * bound from {@code demo.circuit-breaker.*}. Each service gets its own breaker instance.
+ *
+ * @param windowSize             number of most recent calls considered when computing rates
+ * @param minimumCalls           calls needed in the window before the breaker may trip
+ * @param failureRateThreshold   failure ratio (0..1) that opens the breaker
+ * @param slowCallRateThreshold  slow-call ratio (0..1) that opens the breaker
+ * @param slowCallDuration       calls taking longer than this count as slow
+ * @param openDuration           how long the breaker stays open before probing
+ * @param halfOpenProbes         successful probes needed to close again
+ * @param callTimeout            fan-outs cancel a call still running after this and count it as failed
+ */
+@ConfigurationProperties("demo.circuit-breaker")
+public record CircuitBreakerProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("20") int windowSize,
+        @DefaultValue("10") int minimumCalls,
+        @DefaultValue("0.5") double failureRateThreshold,
+        @DefaultValue("0.5") double slowCallRateThreshold,
+        @DefaultValue("15s") Duration slowCallDuration,
+        @DefaultValue("30s") Duration openDuration,
+        @DefaultValue("2") int halfOpenProbes,
+        @DefaultValue("60s") Duration callTimeout
+) {
+}
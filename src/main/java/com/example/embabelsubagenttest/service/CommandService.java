@@ -0,0 +1,48 @@
+package com.example.embabelsubagenttest.service;
+
+import com.embabel.agent.api.common.Ai;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A service the command orchestrators can fan out to. Every {@code CommandService} bean is
+ * picked up by {@link ServiceRegistry}, which describes it to the classifier by {@link #key()}
+ * and {@link #description()}; adding a service needs no changes to the agents.
+ *
+ * @param <R> the result type, which doubles as the typed slot in {@link FanOutResults}
+ */
+public interface CommandService<R extends ServiceResult> {
+
+    /**
+     * Stable identifier the classifier returns to select this service, e.g. {@code joke}.
+     */
+    String key();
+
+    /**
+     * Name used when reporting errors, e.g. "Joke".
+     */
+    String displayName();
+
+    /**
+     * When the classifier should select this service, e.g. "the user wants a dad joke".
+     */
+    String description();
+
+    Class<R> resultType();
+
+    /**
+     * Runs the service for the part of the user's request the classifier assigned to it.
+     * Failures are reported in the result rather than thrown.
+     */
+    R execute(String description, Ai ai);
+
+    /**
+     * Non-blocking {@link #execute}. Cancelling the stage's future, or letting it time out with
+     * {@code orTimeout}, interrupts the model call in progress. The default runs {@code execute}
+     * on a virtual thread.
+     */
+    default CompletionStage<R> executeAsync(String description, Ai ai) {
+        AsyncSteps steps = new AsyncSteps();
+        return steps.cancelledWith(steps.run(() -> execute(description, ai)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.embabelsubagenttest.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of one fan-out, one per call, kept in registry order. {@link #get(CommandService)}
+ * returns a service's results with its own result type; a service the classifier selected
+ * twice has two.
+ */
+public final class FanOutResults {
+
+    private final List<Entry> results = new ArrayList<>();
+
+    void put(CommandService<?> service, ServiceResult result) {
+        results.add(new Entry(service, result));
+    }
+
+    public <R extends ServiceResult> List<R> get(CommandService<R> service) {
+        return results.stream()
+                .filter(entry -> entry.service().key().equals(service.key()))
+                .map(Entry::result)
+                .filter(service.resultType()::isInstance)
+                .map(service.resultType()::cast)
+                .toList();
+    }
+
+    public List<ServiceResult> all() {
+        return results.stream().map(Entry::result).toList();
+    }
+
+    public boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    /**
+     * Successful content joined by {@code separator}, followed by any errors.
+     */
+    public String summarize(String separator) {
+        List<String> messages = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (Entry entry : results) {
+            if (entry.result().isSuccess()) {
+                messages.add(entry.result().content());
+            } else {
+                errors.add(entry.service().displayName() + " failed: " + entry.result().errorMessage());
+            }
+        }
+        String content = String.join(separator, messages);
+        if (!errors.isEmpty()) {
+            content += (content.isEmpty() ? "" : "\n\n") + "Errors: " + String.join("; ", errors);
+        }
+        return content;
+    }
+
+    private record Entry(CommandService<?> service, ServiceResult result) {
+    }
+}
@@ -3,64 +3,212 @@ package com.example.embabelsubagenttest.service;
 import com.embabel.agent.api.common.Ai;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.FortuneRequest;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.FortuneResult;
+import com.example.embabelsubagenttest.cache.TieredCache;
+import com.example.embabelsubagenttest.cache.TieredCaches;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import com.example.embabelsubagenttest.runtime.DegradationController;
+import com.example.embabelsubagenttest.runtime.DegradationLevel;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Service for generating fortune cookie messages.
  * Plain Spring Component (not an @Agent) - designed to be called from CommandOrchestrator.
  */
 @Component
-public class FortuneService {
+public class FortuneService implements CommandService<FortuneResult> {
+
+    private final CannedContent cannedContent;
+    private final WarmPools warmPools;
+    private final NearDuplicateIndex nearDuplicates;
+    private final CircuitBreaker circuitBreaker;
+    private final DegradationController degradation;
+    private final TieredCache<FortuneStyle> styles;
+    private final StructuredOutputRegistry structuredOutputs;
+    private final LlmCalls llm;
+
+    public FortuneService(
+            CannedContent cannedContent,
+            WarmPools warmPools,
+            NearDuplicateIndex nearDuplicates,
+            CircuitBreakerProperties circuitBreakerProperties,
+            DegradationController degradation,
+            TieredCaches caches,
+            StructuredOutputRegistry structuredOutputs,
+            LlmCalls llm) {
+        this.cannedContent = cannedContent;
+        this.warmPools = warmPools;
+        this.nearDuplicates = nearDuplicates;
+        this.circuitBreaker = new CircuitBreaker("fortune", circuitBreakerProperties);
+        this.degradation = degradation;
+        this.styles = caches.create("fortune-style", FortuneStyle.class);
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(FortuneStyle.class);
+        this.llm = llm;
+    }
+
+    @Override
+    public String key() {
+        return "fortune";
+    }
+
+    @Override
+    public String displayName() {
+        return "Fortune";
+    }
+
+    @Override
+    public String description() {
+        return "the user wants a fortune cookie message or inspirational quote";
+    }
+
+    @Override
+    public Class<FortuneResult> resultType() {
+        return FortuneResult.class;
+    }
+
+    @Override
+    public FortuneResult execute(String description, Ai ai) {
+        return generate(new FortuneRequest(description), ai);
+    }
+
+    @Override
+    public CompletionStage<FortuneResult> executeAsync(String description, Ai ai) {
+        return generateAsync(new FortuneRequest(description), ai);
+    }
 
     public FortuneResult generate(FortuneRequest request, Ai ai) {
-        try {
-            // Classify the category and tone
-            FortuneStyle style = ai.withAutoLlm()
-                    .withId("classify-fortune-style")
-                    .creating(FortuneStyle.class)
-                    .fromPrompt("""
-                            Classify the user's fortune cookie preferences:
-
-                            Categories:
-                            - CAREER: Work, business, professional success
-                            - LOVE: Relationships, romance, connections
-                            - WISDOM: General life wisdom (default if not specified)
-                            - TECHNOLOGY: Programming, tech, digital life
-
-                            Tones:
-                            - MYSTICAL: Mysterious, ancient wisdom
-                            - OPTIMISTIC: Positive, uplifting (default if not specified)
-                            - PHILOSOPHICAL: Deep, thoughtful
-                            - HUMOROUS: Funny, playful
-
-                            User request: %s
-
-                            Return both category and tone.""".formatted(request.description()));
-
-            String fortune = ai.withAutoLlm()
-                    .withId("generate-fortune-message")
-                    .generateText("""
-                            Generate a fortune cookie message with these characteristics:
-                            Category: %s
-                            Tone: %s
-
-                            Requirements:
-                            - Keep it under 30 words
-                            - Make it memorable and impactful
-                            - Match the specified category and tone
-                            - End with a thought-provoking or uplifting note
-
-                            Generate only the fortune message, no explanation."""
-                            .formatted(
-                                    getCategoryDescription(style.category()),
-                                    getToneDescription(style.tone())
-                            ));
-
-            return FortuneResult.success(fortune);
-
-        } catch (Exception e) {
-            return FortuneResult.error("Failed to generate fortune: " + e.getMessage());
+        return generateAsync(request, ai).toCompletableFuture().join();
+    }
+
+    /**
+     * Non-blocking {@link #generate}: the style classification and the fortune generation each run
+     * on a virtual thread, chained without waiting in between. Cancelling the result's future, or
+     * an {@code orTimeout} on it, interrupts whichever step is running and counts the call as failed.
+     */
+    public CompletionStage<FortuneResult> generateAsync(FortuneRequest request, Ai ai) {
+        CircuitBreaker.Permit permit = degradation.sheds(DegradationLevel.CANNED) ? null : circuitBreaker.tryAcquire();
+        if (permit == null) {
+            // Overloaded, or the provider is unhealthy: answer from the bundled corpus instead of waiting
+            return CompletableFuture.completedFuture(
+                    FortuneResult.success(cannedContent.fortune(cannedContent.fortuneStyleFor(request.description()))));
+        }
+        String audience = NearDuplicateIndex.currentAudience();
+        AsyncSteps steps = new AsyncSteps();
+        AtomicBoolean providerCalled = new AtomicBoolean();
+        long start = System.nanoTime();
+        return steps.cancelledWith(steps.run(() -> style(request, ai, providerCalled))
+                .thenCompose(style -> steps.run(() -> freshFortune(style, ai, audience, providerCalled)))
+                .handle((fortune, failure) -> {
+                    if (!providerCalled.get()) {
+                        // Answered from the style cache and the warm pool: nothing to tell the breaker
+                        permit.release();
+                    } else if (failure != null) {
+                        permit.onFailure(System.nanoTime() - start);
+                    } else {
+                        permit.onSuccess(System.nanoTime() - start);
+                    }
+                    if (failure != null) {
+                        return FortuneResult.error("Failed to generate fortune: " + AsyncSteps.cause(failure).getMessage());
+                    }
+                    return FortuneResult.success(fortune);
+                }));
+    }
+
+    private FortuneStyle style(FortuneRequest request, Ai ai, AtomicBoolean providerCalled) {
+        String key = TieredCaches.textKey(request.description());
+        if (degradation.sheds(DegradationLevel.SKIP_STYLE)) {
+            // Under load an earlier classification or a keyword guess, falling back to the default style, is good enough
+            FortuneStyle cached = styles.getIfPresent(key);
+            return cached != null ? cached : cannedContent.fortuneStyleFor(request.description());
         }
+        return styles.get(key, () -> {
+            providerCalled.set(true);
+            return classifyStyle(request, ai);
+        });
+    }
+
+    private FortuneStyle classifyStyle(FortuneRequest request, Ai ai) {
+        return structuredOutputs.create(ai.withAutoLlm(), "classify-fortune-style", FortuneStyle.class, """
+                        Classify the user's fortune cookie preferences:
+
+                        Categories:
+                        - CAREER: Work, business, professional success
+                        - LOVE: Relationships, romance, connections
+                        - WISDOM: General life wisdom (default if not specified)
+                        - TECHNOLOGY: Programming, tech, digital life
+
+                        Tones:
+                        - MYSTICAL: Mysterious, ancient wisdom
+                        - OPTIMISTIC: Positive, uplifting (default if not specified)
+                        - PHILOSOPHICAL: Deep, thoughtful
+                        - HUMOROUS: Funny, playful
+
+                        User request: %s
+
+                        Return both category and tone.""".formatted(request.description()));
+    }
+
+    /**
+     * Picks a fortune the audience has not seen recently: pooled fortunes first, then regeneration
+     * with the rejected fortunes as negative examples. Serves a repeat only once attempts run out.
+     */
+    private String freshFortune(FortuneStyle style, Ai ai, String audience, AtomicBoolean providerCalled) {
+        List<String> rejected = new ArrayList<>();
+        String fortune = nextFortune(style, ai, rejected, providerCalled);
+        while (nearDuplicates.seenRecently(audience, fortune) && rejected.size() < nearDuplicates.maxRegenerations()) {
+            rejected.add(fortune);
+            fortune = nextFortune(style, ai, rejected, providerCalled);
+        }
+        nearDuplicates.record(audience, fortune);
+        return fortune;
+    }
+
+    private String nextFortune(FortuneStyle style, Ai ai, List<String> avoid, AtomicBoolean providerCalled) {
+        // Serve a pre-generated fortune for this style when one is ready
+        String pooled = warmPools.fortunes().poll(style);
+        if (pooled != null) {
+            return pooled;
+        }
+        providerCalled.set(true);
+        return generateFortune(style, ai, avoid);
+    }
+
+    /**
+     * Generates a fortune for an already classified style.
+     * Also used by {@link WarmPoolRefiller} to fill the pool in the background.
+     */
+    String generateFortune(FortuneStyle style, Ai ai) {
+        return generateFortune(style, ai, List.of());
+    }
+
+    private String generateFortune(FortuneStyle style, Ai ai, List<String> avoid) {
+        return llm.generateText(ai.withAutoLlm(), "generate-fortune-message", """
+                        Generate a fortune cookie message with these characteristics:
+                        Category: %s
+                        Tone: %s
+
+                        Requirements:
+                        - Keep it under 30 words
+                        - Make it memorable and impactful
+                        - Match the specified category and tone
+                        - End with a thought-provoking or uplifting note
+
+                        Generate only the fortune message, no explanation."""
+                        .formatted(
+                                getCategoryDescription(style.category()),
+                                getToneDescription(style.tone())
+                        ) + NearDuplicateIndex.avoidInstructions(avoid));
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
     }
 
     private String getCategoryDescription(FortuneCategory category) {
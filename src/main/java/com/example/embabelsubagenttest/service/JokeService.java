@@ -3,66 +3,214 @@ package com.example.embabelsubagenttest.service;
 import com.embabel.agent.api.common.Ai;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.JokeRequest;
 import com.example.embabelsubagenttest.agent.scattergather.CommandTypes.JokeResult;
+import com.example.embabelsubagenttest.cache.TieredCache;
+import com.example.embabelsubagenttest.cache.TieredCaches;
+import com.example.embabelsubagenttest.llm.LlmCalls;
+import com.example.embabelsubagenttest.llm.StructuredOutputRegistry;
+import com.example.embabelsubagenttest.runtime.DegradationController;
+import com.example.embabelsubagenttest.runtime.DegradationLevel;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Service for generating programming and technology dad jokes.
  * Plain Spring Component (not an @Agent) - designed to be called from CommandOrchestrator.
  */
 @Component
-public class JokeService {
+public class JokeService implements CommandService<JokeResult> {
+
+    private final CannedContent cannedContent;
+    private final WarmPools warmPools;
+    private final NearDuplicateIndex nearDuplicates;
+    private final CircuitBreaker circuitBreaker;
+    private final DegradationController degradation;
+    private final TieredCache<JokeStyle> styles;
+    private final StructuredOutputRegistry structuredOutputs;
+    private final LlmCalls llm;
+
+    public JokeService(
+            CannedContent cannedContent,
+            WarmPools warmPools,
+            NearDuplicateIndex nearDuplicates,
+            CircuitBreakerProperties circuitBreakerProperties,
+            DegradationController degradation,
+            TieredCaches caches,
+            StructuredOutputRegistry structuredOutputs,
+            LlmCalls llm) {
+        this.cannedContent = cannedContent;
+        this.warmPools = warmPools;
+        this.nearDuplicates = nearDuplicates;
+        this.circuitBreaker = new CircuitBreaker("joke", circuitBreakerProperties);
+        this.degradation = degradation;
+        this.styles = caches.create("joke-style", JokeStyle.class);
+        this.structuredOutputs = structuredOutputs;
+        structuredOutputs.register(JokeStyle.class);
+        this.llm = llm;
+    }
+
+    @Override
+    public String key() {
+        return "joke";
+    }
+
+    @Override
+    public String displayName() {
+        return "Joke";
+    }
+
+    @Override
+    public String description() {
+        return "the user wants a dad joke";
+    }
+
+    @Override
+    public Class<JokeResult> resultType() {
+        return JokeResult.class;
+    }
+
+    @Override
+    public JokeResult execute(String description, Ai ai) {
+        return generate(new JokeRequest(description), ai);
+    }
+
+    @Override
+    public CompletionStage<JokeResult> executeAsync(String description, Ai ai) {
+        return generateAsync(new JokeRequest(description), ai);
+    }
 
     public JokeResult generate(JokeRequest request, Ai ai) {
-        try {
-            // Classify the domain and format
-            JokeStyle style = ai.withAutoLlm()
-                    .withId("classify-joke-style")
-                    .creating(JokeStyle.class)
-                    .fromPrompt("""
-                            Classify the user's joke preferences:
-
-                            Domains:
-                            - JAVA: Java programming jokes
-                            - PYTHON: Python programming jokes
-                            - JAVASCRIPT: JavaScript programming jokes
-                            - DATABASE: SQL and database jokes
-                            - GENERAL: General programming/tech jokes (default if not specified)
-
-                            Formats:
-                            - QUESTION_ANSWER: Traditional "Why did X?" setup with punchline
-                            - ONE_LINER: Single sentence joke (default if not specified)
-                            - PUN: Wordplay and puns
-
-                            User request: %s
-
-                            Return both domain and format.""".formatted(request.description()));
-
-            String joke = ai.withAutoLlm()
-                    .withId("generate-joke")
-                    .generateText("""
-                            Generate a dad joke with these characteristics:
-                            Domain: %s
-                            Format: %s
-
-                            Requirements:
-                            - Make it wholesome and groan-worthy
-                            - Use technical concepts creatively
-                            - Keep it appropriate for all audiences
-                            - Make it clearly a dad joke (corny, punny, etc.)
-                            %s
-
-                            Generate only the joke, no explanation."""
-                            .formatted(
-                                    getDomainDescription(style.domain()),
-                                    getFormatDescription(style.format()),
-                                    getFormatInstructions(style.format())
-                            ));
-
-            return JokeResult.success(joke);
-
-        } catch (Exception e) {
-            return JokeResult.error("Failed to generate joke: " + e.getMessage());
+        return generateAsync(request, ai).toCompletableFuture().join();
+    }
+
+    /**
+     * Non-blocking {@link #generate}: the style classification and the joke generation each run
+     * on a virtual thread, chained without waiting in between. Cancelling the result's future, or
+     * an {@code orTimeout} on it, interrupts whichever step is running and counts the call as failed.
+     */
+    public CompletionStage<JokeResult> generateAsync(JokeRequest request, Ai ai) {
+        CircuitBreaker.Permit permit = degradation.sheds(DegradationLevel.CANNED) ? null : circuitBreaker.tryAcquire();
+        if (permit == null) {
+            // Overloaded, or the provider is unhealthy: answer from the bundled corpus instead of waiting
+            return CompletableFuture.completedFuture(
+                    JokeResult.success(cannedContent.joke(cannedContent.jokeStyleFor(request.description()))));
+        }
+        String audience = NearDuplicateIndex.currentAudience();
+        AsyncSteps steps = new AsyncSteps();
+        AtomicBoolean providerCalled = new AtomicBoolean();
+        long start = System.nanoTime();
+        return steps.cancelledWith(steps.run(() -> style(request, ai, providerCalled))
+                .thenCompose(style -> steps.run(() -> freshJoke(style, ai, audience, providerCalled)))
+                .handle((joke, failure) -> {
+                    if (!providerCalled.get()) {
+                        // Answered from the style cache and the warm pool: nothing to tell the breaker
+                        permit.release();
+                    } else if (failure != null) {
+                        permit.onFailure(System.nanoTime() - start);
+                    } else {
+                        permit.onSuccess(System.nanoTime() - start);
+                    }
+                    if (failure != null) {
+                        return JokeResult.error("Failed to generate joke: " + AsyncSteps.cause(failure).getMessage());
+                    }
+                    return JokeResult.success(joke);
+                }));
+    }
+
+    private JokeStyle style(JokeRequest request, Ai ai, AtomicBoolean providerCalled) {
+        String key = TieredCaches.textKey(request.description());
+        if (degradation.sheds(DegradationLevel.SKIP_STYLE)) {
+            // Under load an earlier classification or a keyword guess, falling back to the default style, is good enough
+            JokeStyle cached = styles.getIfPresent(key);
+            return cached != null ? cached : cannedContent.jokeStyleFor(request.description());
         }
+        return styles.get(key, () -> {
+            providerCalled.set(true);
+            return classifyStyle(request, ai);
+        });
+    }
+
+    private JokeStyle classifyStyle(JokeRequest request, Ai ai) {
+        return structuredOutputs.create(ai.withAutoLlm(), "classify-joke-style", JokeStyle.class, """
+                        Classify the user's joke preferences:
+
+                        Domains:
+                        - JAVA: Java programming jokes
+                        - PYTHON: Python programming jokes
+                        - JAVASCRIPT: JavaScript programming jokes
+                        - DATABASE: SQL and database jokes
+                        - GENERAL: General programming/tech jokes (default if not specified)
+
+                        Formats:
+                        - QUESTION_ANSWER: Traditional "Why did X?" setup with punchline
+                        - ONE_LINER: Single sentence joke (default if not specified)
+                        - PUN: Wordplay and puns
+
+                        User request: %s
+
+                        Return both domain and format.""".formatted(request.description()));
+    }
+
+    /**
+     * Picks a joke the audience has not seen recently: pooled jokes first, then regeneration
+     * with the rejected jokes as negative examples. Serves a repeat only once attempts run out.
+     */
+    private String freshJoke(JokeStyle style, Ai ai, String audience, AtomicBoolean providerCalled) {
+        List<String> rejected = new ArrayList<>();
+        String joke = nextJoke(style, ai, rejected, providerCalled);
+        while (nearDuplicates.seenRecently(audience, joke) && rejected.size() < nearDuplicates.maxRegenerations()) {
+            rejected.add(joke);
+            joke = nextJoke(style, ai, rejected, providerCalled);
+        }
+        nearDuplicates.record(audience, joke);
+        return joke;
+    }
+
+    private String nextJoke(JokeStyle style, Ai ai, List<String> avoid, AtomicBoolean providerCalled) {
+        // Serve a pre-generated joke for this style when one is ready
+        String pooled = warmPools.jokes().poll(style);
+        if (pooled != null) {
+            return pooled;
+        }
+        providerCalled.set(true);
+        return generateJoke(style, ai, avoid);
+    }
+
+    /**
+     * Generates a joke for an already classified style.
+     * Also used by {@link WarmPoolRefiller} to fill the pool in the background.
+     */
+    String generateJoke(JokeStyle style, Ai ai) {
+        return generateJoke(style, ai, List.of());
+    }
+
+    private String generateJoke(JokeStyle style, Ai ai, List<String> avoid) {
+        return llm.generateText(ai.withAutoLlm(), "generate-joke", """
+                        Generate a dad joke with these characteristics:
+                        Domain: %s
+                        Format: %s
+
+                        Requirements:
+                        - Make it wholesome and groan-worthy
+                        - Use technical concepts creatively
+                        - Keep it appropriate for all audiences
+                        - Make it clearly a dad joke (corny, punny, etc.)
+                        %s
+
+                        Generate only the joke, no explanation."""
+                        .formatted(
+                                getDomainDescription(style.domain()),
+                                getFormatDescription(style.format()),
+                                getFormatInstructions(style.format())
+                        ) + NearDuplicateIndex.avoidInstructions(avoid));
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
     }
 
     private String getDomainDescription(JokeDomain domain) {
@@ -0,0 +1,233 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.runtime.RequestContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers what each audience (user or session) has recently been served and answers
+ * "has this audience seen something near-identical?" using MinHash signatures with
+ * locality-sensitive hashing.
+ * <p>
+ * Each text is reduced to character 4-gram shingles and a {@value #SIGNATURE_SIZE}-value
+ * MinHash signature. Signatures are split into {@value #BANDS} bands; only earlier outputs
+ * sharing at least one band are compared, so a lookup touches a handful of candidates
+ * regardless of history size. Memory is bounded by the history length per audience and by
+ * the number of audiences, evicting least recently active audiences first.
+ */
+@Component
+public class NearDuplicateIndex {
+
+    /**
+     * Audience used when no user or session is known; deduplicates across all traffic.
+     */
+    public static final String SHARED_AUDIENCE = "shared";
+
+    /**
+     * Start of the suffix {@link #avoidInstructions} appends. Everything from here on depends on
+     * what was served earlier, so cassettes leave it out of the prompt hash.
+     */
+    public static final String AVOID_HEADING = "\n\nDo not repeat or closely paraphrase any of these:\n";
+
+    static final int SIGNATURE_SIZE = 64;
+    static final int BANDS = 16;
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+    private static final int SHINGLE = 4;
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed | 1;
+        }
+    }
+
+    private final NearDuplicateProperties properties;
+    private final Map<String, History> audiences;
+
+    public NearDuplicateIndex(NearDuplicateProperties properties) {
+        this.properties = properties;
+        this.audiences = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, History> eldest) {
+                return size() > properties.maxAudiences();
+            }
+        };
+    }
+
+    /**
+     * Audience of the current request: its user, or {@link #SHARED_AUDIENCE} outside a request.
+     */
+    public static String currentAudience() {
+        return RequestContext.currentUser().orElse(SHARED_AUDIENCE);
+    }
+
+    public int maxRegenerations() {
+        return properties.maxRegenerations();
+    }
+
+    /**
+     * True if the audience was recently served something at least as similar as the threshold.
+     */
+    public boolean seenRecently(String audience, String text) {
+        if (!properties.enabled()) {
+            return false;
+        }
+        History history = history(audience, false);
+        return history != null && history.containsNear(signature(text), properties.similarityThreshold());
+    }
+
+    /**
+     * Remembers that the audience has been served this text.
+     */
+    public void record(String audience, String text) {
+        if (!properties.enabled()) {
+            return;
+        }
+        history(audience, true).add(signature(text));
+    }
+
+    private History history(String audience, boolean create) {
+        synchronized (audiences) {
+            History history = audiences.get(audience);
+            if (history == null && create) {
+                history = new History(properties.historyPerAudience());
+                audiences.put(audience, history);
+            }
+            return history;
+        }
+    }
+
+    /**
+     * Prompt suffix asking the model not to reproduce previously rejected outputs.
+     */
+    public static String avoidInstructions(List<String> rejected) {
+        if (rejected.isEmpty()) {
+            return "";
+        }
+        return AVOID_HEADING + "- " + String.join("\n- ", rejected);
+    }
+
+    static int[] signature(String text) {
+        String normalized = normalize(text);
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int last = Math.max(1, normalized.length() - SHINGLE + 1);
+        for (int start = 0; start < last; start++) {
+            long shingle = 0;
+            for (int i = start; i < Math.min(normalized.length(), start + SHINGLE); i++) {
+                shingle = shingle * 65_599 + normalized.charAt(i);
+            }
+            long base = mix(shingle);
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                // multiply-shift hashing with an odd per-function multiplier
+                int hash = (int) ((base * SEEDS[i]) >>> 32);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / SIGNATURE_SIZE;
+    }
+
+    private static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean space = true;
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(c);
+                space = false;
+            } else if (!space) {
+                builder.append(' ');
+                space = true;
+            }
+        }
+        return builder.toString().trim();
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = mix(key * 31 + signature[row]);
+        }
+        return key;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Ring buffer of recent signatures for one audience, plus the LSH band buckets over it.
+     */
+    private static final class History {
+        private final int[][] signatures;
+        private final long[][] bandKeys;
+        private final Map<Long, List<Integer>> buckets = new HashMap<>();
+        private int next;
+        private int size;
+
+        History(int capacity) {
+            this.signatures = new int[capacity][];
+            this.bandKeys = new long[capacity][];
+        }
+
+        synchronized boolean containsNear(int[] signature, double threshold) {
+            for (int band = 0; band < BANDS; band++) {
+                List<Integer> slots = buckets.get(bandKey(signature, band));
+                if (slots == null) {
+                    continue;
+                }
+                for (int slot : slots) {
+                    if (similarity(signature, signatures[slot]) >= threshold) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        synchronized void add(int[] signature) {
+            int slot = next;
+            if (size == signatures.length) {
+                for (long key : bandKeys[slot]) {
+                    List<Integer> slots = buckets.get(key);
+                    slots.remove(Integer.valueOf(slot));
+                    if (slots.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            } else {
+                size++;
+            }
+            long[] keys = new long[BANDS];
+            for (int band = 0; band < BANDS; band++) {
+                keys[band] = bandKey(signature, band);
+                buckets.computeIfAbsent(keys[band], k -> new ArrayList<>(2)).add(slot);
+            }
+            signatures[slot] = signature;
+            bandKeys[slot] = keys;
+            next = (next + 1) % signatures.length;
+        }
+    }
+}
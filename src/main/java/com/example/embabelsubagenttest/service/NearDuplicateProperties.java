@@ -0,0 +1,22 @@
+package com.example.embabelsubagenttest.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for near-duplicate suppression, bound from {@code demo.near-duplicates.*}.
+ *
+ * @param similarityThreshold estimated Jaccard similarity at or above which two outputs count as the same
+ * @param historyPerAudience  outputs remembered per user or session
+ * @param maxAudiences        audiences tracked before the least recently active one is dropped
+ * @param maxRegenerations    attempts to find a fresh output before serving a repeat anyway
+ */
+@ConfigurationProperties("demo.near-duplicates")
+public record NearDuplicateProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.6") double similarityThreshold,
+        @DefaultValue("128") int historyPerAudience,
+        @DefaultValue("10000") int maxAudiences,
+        @DefaultValue("2") int maxRegenerations
+) {
+}
@@ -0,0 +1,123 @@
+package com.example.embabelsubagenttest.service;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.BranchContext;
+import com.example.embabelsubagenttest.runtime.ContextPropagatingExecutor;
+import com.example.embabelsubagenttest.runtime.RequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the services of a {@link ServiceSelection} in one parallel wave and gathers their results.
+ * Calls naming an unregistered service are dropped. Each call runs in its own {@link BranchContext}
+ * branch, with its own {@link Ai} and usage counters, and gets its own result even when the
+ * classifier selected the same service more than once.
+ */
+@Component
+public class ServiceFanOut {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceFanOut.class);
+
+    private final ServiceRegistry registry;
+    private final Duration callTimeout;
+
+    public ServiceFanOut(ServiceRegistry registry, CircuitBreakerProperties circuitBreakerProperties) {
+        this.registry = registry;
+        this.callTimeout = circuitBreakerProperties.callTimeout();
+    }
+
+    /**
+     * A result tagged with the call that produced it, so results can be gathered in any order.
+     *
+     * @param call index of the call in {@link ServiceSelection#calls()}; a service selected twice has two
+     */
+    public record Keyed(int call, CommandService<?> service, ServiceResult result) {
+    }
+
+    /**
+     * One task per selected, registered service, each bound to its own branch of {@code fork}, for
+     * callers that bring their own scatter-gather. The caller joins the fork once the tasks are done.
+     */
+    public List<Supplier<Keyed>> tasks(ServiceSelection selection, BranchContext.Fork fork) {
+        List<Supplier<Keyed>> tasks = new ArrayList<>();
+        List<ServiceSelection.Call> calls = selection.calls();
+        for (int i = 0; i < calls.size(); i++) {
+            int index = i;
+            ServiceSelection.Call call = calls.get(i);
+            registry.find(call.service()).ifPresent(service -> tasks.add(ContextPropagatingExecutor.capture(
+                    fork.branch(service.key()).bind(ai -> start(index, service, call.description(), ai).join()))));
+        }
+        return tasks;
+    }
+
+    /**
+     * Collects one result per call: grouped in registry order, and in call order within a service.
+     */
+    public FanOutResults gather(Collection<Keyed> keyed) {
+        FanOutResults results = new FanOutResults();
+        // Restore registry order so output does not depend on completion order
+        for (CommandService<?> service : registry.all()) {
+            keyed.stream()
+                    .filter(k -> k.service().key().equals(service.key()))
+                    .sorted(Comparator.comparingInt(Keyed::call))
+                    .forEach(k -> results.put(service, k.result()));
+        }
+        return results;
+    }
+
+    /**
+     * Runs every selected service in parallel and waits for all of them.
+     *
+     * @param aiSource called once per service; {@code context::ai} gives each branch its own {@link Ai}
+     */
+    public FanOutResults run(ServiceSelection selection, Supplier<Ai> aiSource) {
+        BranchContext.Fork fork = BranchContext.fork("fan-out", aiSource);
+        try {
+            return runAsync(selection, fork).toCompletableFuture().join();
+        } finally {
+            logger.debug("Fan-out usage: {}", fork.join());
+        }
+    }
+
+    /**
+     * Starts every selected service through {@link CommandService#executeAsync} and completes
+     * once all have answered. No thread waits on a call in flight; a call still running after
+     * {@code demo.circuit-breaker.call-timeout} is cancelled and reported as failed. The caller
+     * joins {@code fork} once the stage completes.
+     */
+    public CompletionStage<FanOutResults> runAsync(ServiceSelection selection, BranchContext.Fork fork) {
+        List<CompletableFuture<Keyed>> calls = new ArrayList<>();
+        List<ServiceSelection.Call> selected = selection.calls();
+        for (int i = 0; i < selected.size(); i++) {
+            int index = i;
+            ServiceSelection.Call call = selected.get(i);
+            registry.find(call.service()).ifPresent(service -> calls.add(
+                    fork.branch(service.key()).run(ai -> start(index, service, call.description(), ai))));
+        }
+        return CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new))
+                .thenApply(_ -> gather(calls.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private CompletableFuture<Keyed> start(int call, CommandService<?> service, String description, Ai ai) {
+        Duration timeout = RequestContext.cap(callTimeout);
+        return service.executeAsync(description, ai).toCompletableFuture()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .<ServiceResult>thenApply(result -> result)
+                .exceptionally(failure -> ServiceResult.failed(AsyncSteps.cause(failure) instanceof TimeoutException
+                        ? "timed out after " + timeout.toSeconds() + "s"
+                        : AsyncSteps.cause(failure).getMessage()))
+                .thenApply(result -> new Keyed(call, service, result));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.llm.Classifier;
+import com.example.embabelsubagenttest.llm.ModelCascade;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * All {@link CommandService} beans, keyed by {@link CommandService#key()}. Builds the single
+ * classification prompt that selects any number of them from the registered descriptions,
+ * run through the {@link ModelCascade} under each caller's classifier id.
+ */
+@Component
+public class ServiceRegistry {
+
+    private final Map<String, CommandService<?>> services = new LinkedHashMap<>();
+    private final ModelCascade cascade;
+    private final String serviceGuide;
+
+    public ServiceRegistry(List<CommandService<?>> services, ModelCascade cascade) {
+        for (CommandService<?> service : services) {
+            if (this.services.putIfAbsent(service.key(), service) != null) {
+                throw new IllegalStateException("Duplicate command service key: " + service.key());
+            }
+        }
+        this.cascade = cascade;
+        this.serviceGuide = this.services.values().stream()
+                .map(s -> "- " + s.key() + ": " + s.description())
+                .collect(Collectors.joining("\n"));
+    }
+
+    public Optional<CommandService<?>> find(String key) {
+        return Optional.ofNullable(services.get(key));
+    }
+
+    public List<CommandService<?>> all() {
+        return List.copyOf(services.values());
+    }
+
+    /**
+     * One line per service, {@code - key: description}, for prompts that let the LLM choose services.
+     */
+    public String serviceGuide() {
+        return serviceGuide;
+    }
+
+    /**
+     * One LLM call that picks every service the command needs, each with its share of the request.
+     */
+    public Classifier<ServiceSelection> classifier(String id) {
+        return cascade.classifier(id, ServiceSelection.class, this::selectionPrompt, ServiceSelection::label);
+    }
+
+    private String selectionPrompt(String command) {
+        return """
+                Analyze the user's command and decide which services should be invoked.
+                Available services (use the key as "service"):
+                %s
+                
+                User command: %s
+                
+                Add one call per applicable service with a description taken from the user's request.
+                A request for several things selects several services; return no calls if none apply."""
+                .formatted(serviceGuide, command);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.embabelsubagenttest.service;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Outcome of one {@link CommandService} call: user-facing content on success, an error message otherwise.
+ */
+public interface ServiceResult {
+
+    @Nullable
+    String content();
+
+    @Nullable
+    String errorMessage();
+
+    default boolean isSuccess() {
+        return errorMessage() == null;
+    }
+
+    /**
+     * A result for a call that produced none of its own, e.g. because it timed out.
+     */
+    static ServiceResult failed(String errorMessage) {
+        return new Failed(errorMessage);
+    }
+
+    record Failed(String errorMessage) implements ServiceResult {
+        @Override
+        public String content() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.embabelsubagenttest.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The services a command needs, as chosen by one classification call over every registered service.
+ */
+public record ServiceSelection(List<Call> calls) {
+
+    public ServiceSelection {
+        calls = calls == null ? List.of() : calls;
+    }
+
+    public boolean isEmpty() {
+        return calls.isEmpty();
+    }
+
+    /**
+     * The selected service keys, sorted and joined with {@code +}, or {@code NONE}; what two
+     * selections are compared on when judging a classification.
+     */
+    public String label() {
+        return calls.isEmpty() ? "NONE" : calls.stream().map(Call::service).distinct().sorted().collect(Collectors.joining("+"));
+    }
+
+    /**
+     * @param service     a {@link CommandService#key()}
+     * @param description the part of the user's request this service should handle
+     */
+    public record Call(String service, String description) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of ready-made outputs per key, consumed on the request path and refilled
+ * in the background. Polling and offering are O(1) and lock-free.
+ * <p>
+ * A key needs refilling once it drops below the low watermark, and is refilled up to the
+ * high watermark so the producer works in batches rather than one item per request. Only
+ * keys that have been asked for at least once are refilled, so an idle pool costs nothing.
+ */
+public class WarmPool<K> {
+
+    private final List<K> keys;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Map<K, Slot> slots = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LiveStats.Cache liveStats;
+
+    public WarmPool(List<K> keys, int lowWatermark, int highWatermark, LiveStats.Cache liveStats) {
+        this.keys = List.copyOf(keys);
+        this.liveStats = liveStats;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        for (K key : keys) {
+            slots.put(key, new Slot());
+        }
+    }
+
+    /**
+     * Takes a ready-made output for the key, or returns null if the pool is empty.
+     */
+    public String poll(K key) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            slot.requested = true;
+        }
+        String item = slot == null ? null : slot.items.poll();
+        if (item == null) {
+            misses.increment();
+            liveStats.miss();
+            return null;
+        }
+        slot.size.decrementAndGet();
+        hits.increment();
+        liveStats.hit();
+        return item;
+    }
+
+    /**
+     * Adds an output unless the key is already at its high watermark.
+     */
+    public boolean offer(K key, String item) {
+        Slot slot = slots.get(key);
+        if (slot == null || slot.size.incrementAndGet() > highWatermark) {
+            if (slot != null) {
+                slot.size.decrementAndGet();
+            }
+            return false;
+        }
+        slot.items.offer(item);
+        return true;
+    }
+
+    public int size(K key) {
+        Slot slot = slots.get(key);
+        return slot == null ? 0 : slot.size.get();
+    }
+
+    /**
+     * Requested keys below the low watermark, emptiest first.
+     */
+    public List<K> belowLowWatermark() {
+        return keys.stream()
+                .filter(key -> slots.get(key).requested && size(key) < lowWatermark)
+                .sorted(Comparator.comparingInt(this::size))
+                .toList();
+    }
+
+    public boolean needsMore(K key) {
+        return size(key) < highWatermark;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private static final class Slot {
+        final ConcurrentLinkedQueue<String> items = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        volatile boolean requested;
+    }
+}
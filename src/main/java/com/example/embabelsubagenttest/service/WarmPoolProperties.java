@@ -0,0 +1,23 @@
+package com.example.embabelsubagenttest.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the pre-generated joke and fortune pools, bound from {@code demo.warm-pool.*}.
+ *
+ * @param enabled        whether the background producer runs; off by default since every refill is an LLM call
+ * @param lowWatermark   a style combination is refilled once it holds fewer items than this
+ * @param highWatermark  refilling stops once a combination holds this many items
+ * @param refillInterval how often the background producer checks the watermarks
+ */
+@ConfigurationProperties("demo.warm-pool")
+public record WarmPoolProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("2") int lowWatermark,
+        @DefaultValue("5") int highWatermark,
+        @DefaultValue("5s") Duration refillInterval
+) {
+}
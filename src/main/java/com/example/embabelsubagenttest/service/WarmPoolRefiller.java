@@ -0,0 +1,118 @@
+package com.example.embabelsubagenttest.service;
+
+import com.embabel.agent.api.common.Ai;
+import com.example.embabelsubagenttest.llm.CassetteProperties;
+import com.example.embabelsubagenttest.runtime.AdmissionController;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Background producer that keeps the {@link WarmPools} topped up.
+ * <p>
+ * Runs on a single minimum-priority daemon thread. Refilling only happens while no user
+ * request is queued at admission and the service's circuit breaker admits the call, so the
+ * producer never competes with live traffic for provider capacity. Each generation goes
+ * through a breaker permit, so background failures count towards opening the breaker.
+ */
+@Component
+public class WarmPoolRefiller {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmPoolRefiller.class);
+
+    private final WarmPools pools;
+    private final WarmPoolProperties properties;
+    private final CassetteProperties cassette;
+    private final JokeService jokeService;
+    private final FortuneService fortuneService;
+    private final AdmissionController admissionController;
+    private final ObjectProvider<Ai> aiProvider;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "warm-pool-refiller");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public WarmPoolRefiller(
+            WarmPools pools,
+            WarmPoolProperties properties,
+            CassetteProperties cassette,
+            JokeService jokeService,
+            FortuneService fortuneService,
+            AdmissionController admissionController,
+            ObjectProvider<Ai> aiProvider) {
+        this.pools = pools;
+        this.properties = properties;
+        this.cassette = cassette;
+        this.jokeService = jokeService;
+        this.fortuneService = fortuneService;
+        this.admissionController = admissionController;
+        this.aiProvider = aiProvider;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        if (cassette.mode() != CassetteProperties.Mode.OFF) {
+            // Background calls would consume recorded interactions in whatever order the refills happen to run
+            logger.info("Warm pool refilling is off while the LLM cassette is in {} mode", cassette.mode());
+            return;
+        }
+        long interval = properties.refillInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::refill, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    void refill() {
+        Ai ai = aiProvider.getIfAvailable();
+        if (ai == null) {
+            return;
+        }
+        refill(pools.jokes(), jokeService.circuitBreaker(), jokeService::generateJoke, ai);
+        refill(pools.fortunes(), fortuneService.circuitBreaker(), fortuneService::generateFortune, ai);
+    }
+
+    private <K> void refill(WarmPool<K> pool, CircuitBreaker breaker, BiFunction<K, Ai, String> producer, Ai ai) {
+        for (K key : pool.belowLowWatermark()) {
+            try {
+                while (pool.needsMore(key)) {
+                    if (admissionController.queued() > 0 || breaker.state() != CircuitBreaker.State.CLOSED) {
+                        return;
+                    }
+                    CircuitBreaker.Permit permit = breaker.tryAcquire();
+                    if (permit == null) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    String item;
+                    try {
+                        item = producer.apply(key, ai);
+                    } catch (RuntimeException e) {
+                        permit.onFailure(System.nanoTime() - start);
+                        throw e;
+                    }
+                    permit.onSuccess(System.nanoTime() - start);
+                    pool.offer(key, item);
+                }
+            } catch (Exception e) {
+                logger.warn("Warm pool refill for {} failed, will retry next interval: {}", key, e.getMessage());
+            }
+        }
+    }
+}
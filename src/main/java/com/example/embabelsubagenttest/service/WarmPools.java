@@ -0,0 +1,45 @@
+package com.example.embabelsubagenttest.service;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneCategory;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneStyle;
+import com.example.embabelsubagenttest.service.FortuneService.FortuneTone;
+import com.example.embabelsubagenttest.service.JokeService.JokeDomain;
+import com.example.embabelsubagenttest.service.JokeService.JokeFormat;
+import com.example.embabelsubagenttest.service.JokeService.JokeStyle;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The warm pools for jokes and fortunes, one slot per style combination.
+ * Consumed by {@link JokeService} and {@link FortuneService}, filled by {@link WarmPoolRefiller}.
+ */
+@Component
+public class WarmPools {
+
+    private final WarmPool<JokeStyle> jokes;
+    private final WarmPool<FortuneStyle> fortunes;
+
+    public WarmPools(WarmPoolProperties properties, LiveStats liveStats) {
+        List<JokeStyle> jokeStyles = Arrays.stream(JokeDomain.values())
+                .flatMap(domain -> Arrays.stream(JokeFormat.values()).map(format -> new JokeStyle(domain, format)))
+                .toList();
+        List<FortuneStyle> fortuneStyles = Arrays.stream(FortuneCategory.values())
+                .flatMap(category -> Arrays.stream(FortuneTone.values()).map(tone -> new FortuneStyle(category, tone)))
+                .toList();
+        this.jokes = new WarmPool<>(jokeStyles, properties.lowWatermark(), properties.highWatermark(),
+                liveStats.cache("warm-pool.jokes"));
+        this.fortunes = new WarmPool<>(fortuneStyles, properties.lowWatermark(), properties.highWatermark(),
+                liveStats.cache("warm-pool.fortunes"));
+    }
+
+    public WarmPool<JokeStyle> jokes() {
+        return jokes;
+    }
+
+    public WarmPool<FortuneStyle> fortunes() {
+        return fortunes;
+    }
+}
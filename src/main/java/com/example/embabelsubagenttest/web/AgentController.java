@@ -0,0 +1,180 @@
+package com.example.embabelsubagenttest.web;
+
+import com.example.embabelsubagenttest.runtime.ActivePatterns;
+import com.example.embabelsubagenttest.runtime.AdmissionRejectedException;
+import com.example.embabelsubagenttest.runtime.AgentPattern;
+import com.example.embabelsubagenttest.runtime.PatternRunner;
+import com.example.embabelsubagenttest.runtime.ProgressEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * HTTP front end for the five patterns and for multi-turn chat sessions.
+ * <p>
+ * Every pattern is available as a plain JSON call and as a server-sent event stream that
+ * reports progress ({@code admitted}, {@code action-started}, {@code partial-result}) before
+ * the final {@code result}. Requests run on virtual threads; each endpoint has its own
+ * concurrency limit (429 when exceeded) in addition to admission control (503 when shed).
+ */
+@RestController
+@RequestMapping("/api")
+class AgentController {
+
+    private final PatternRunner patternRunner;
+    private final ActivePatterns activePatterns;
+    private final ChatSessions chatSessions;
+    private final EndpointLimiter limiter;
+    private final HttpProperties properties;
+    private final ExecutorService streams = Executors.newVirtualThreadPerTaskExecutor();
+
+    AgentController(
+            PatternRunner patternRunner,
+            ActivePatterns activePatterns,
+            ChatSessions chatSessions,
+            EndpointLimiter limiter,
+            HttpProperties properties) {
+        this.patternRunner = patternRunner;
+        this.activePatterns = activePatterns;
+        this.chatSessions = chatSessions;
+        this.limiter = limiter;
+        this.properties = properties;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streams.shutdownNow();
+    }
+
+    @PostMapping("/patterns/{pattern}")
+    ResponseEntity<?> run(@PathVariable String pattern, @RequestBody MessageRequest request) {
+        var resolved = AgentPattern.fromId(pattern).filter(activePatterns::isActive);
+        if (resolved.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Unknown or disabled pattern: " + pattern);
+        }
+        return limited("patterns/" + pattern, () -> {
+            try {
+                return ResponseEntity.ok(new MessageResponse(patternRunner.run(resolved.get(), request.message())));
+            } catch (AdmissionRejectedException e) {
+                return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping(path = "/patterns/{pattern}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<?> stream(@PathVariable String pattern, @RequestBody MessageRequest request) {
+        var resolved = AgentPattern.fromId(pattern).filter(activePatterns::isActive);
+        if (resolved.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Unknown or disabled pattern: " + pattern);
+        }
+        return stream("patterns/" + pattern + "/stream",
+                emitter -> patternRunner.run(resolved.get(), request.message(), event -> send(emitter, event)));
+    }
+
+    @PostMapping("/chat/sessions")
+    ResponseEntity<?> openSession() {
+        if (!activePatterns.isActive(AgentPattern.CHATBOT)) {
+            return error(HttpStatus.NOT_FOUND, "The chatbot pattern is disabled");
+        }
+        return chatSessions.open()
+                .<ResponseEntity<?>>map(id -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("sessionId", id)))
+                .orElseGet(() -> error(HttpStatus.TOO_MANY_REQUESTS, "Too many open chat sessions"));
+    }
+
+    @PostMapping(path = "/chat/sessions/{id}/messages", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<?> chat(@PathVariable String id, @RequestBody MessageRequest request) {
+        var session = chatSessions.find(id);
+        if (session.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Unknown chat session: " + id);
+        }
+        return stream("chat/sessions/messages", emitter -> chatSessions.chat(session.get(), request.message()));
+    }
+
+    @DeleteMapping("/chat/sessions/{id}")
+    ResponseEntity<?> closeSession(@PathVariable String id) {
+        return chatSessions.close(id)
+                ? ResponseEntity.noContent().build()
+                : error(HttpStatus.NOT_FOUND, "Unknown chat session: " + id);
+    }
+
+    /**
+     * Runs {@code work} on a virtual thread, streaming its progress and final result as SSE.
+     */
+    private ResponseEntity<?> stream(String endpoint, StreamingWork work) {
+        if (!limiter.tryAcquire(endpoint)) {
+            return error(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent requests for " + endpoint);
+        }
+        SseEmitter emitter = new SseEmitter(properties.streamTimeout().toMillis());
+        streams.execute(() -> {
+            try {
+                String message = work.run(emitter);
+                emitter.send(SseEmitter.event().name("result").data(new MessageResponse(message)));
+                emitter.complete();
+            } catch (AdmissionRejectedException e) {
+                sendErrorAndComplete(emitter, e.getMessage());
+            } catch (Exception e) {
+                sendErrorAndComplete(emitter, "Request failed: " + e.getMessage());
+            } finally {
+                limiter.release(endpoint);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    private ResponseEntity<?> limited(String endpoint, Supplier<ResponseEntity<?>> handler) {
+        if (!limiter.tryAcquire(endpoint)) {
+            return error(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent requests for " + endpoint);
+        }
+        try {
+            return handler.get();
+        } finally {
+            limiter.release(endpoint);
+        }
+    }
+
+    private static void send(SseEmitter emitter, ProgressEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(event));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the request still completes and releases its permits
+        }
+    }
+
+    private static void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(new MessageResponse(message)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(new MessageResponse(message));
+    }
+
+    @FunctionalInterface
+    private interface StreamingWork {
+        String run(SseEmitter emitter) throws Exception;
+    }
+
+    record MessageRequest(String message) {
+    }
+
+    record MessageResponse(String message) {
+    }
+}
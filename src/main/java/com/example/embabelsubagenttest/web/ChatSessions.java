@@ -0,0 +1,145 @@
+package com.example.embabelsubagenttest.web;
+
+import com.embabel.chat.ChatSession;
+import com.example.embabelsubagenttest.runtime.ChatReplies;
+import com.example.embabelsubagenttest.runtime.PatternRunner;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chatbot sessions opened over HTTP, each with the queue its assistant replies land in.
+ * <p>
+ * Turns of one session run one at a time, as {@link ChatReplies} requires. Sessions idle for
+ * longer than {@code demo.http.chat-session-idle-timeout} are closed. Open sessions hold one of
+ * {@code demo.http.max-chat-sessions} permits, so concurrent opens never exceed the limit.
+ */
+@Component
+class ChatSessions {
+
+    private static final Duration MAX_SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+    private final Map<String, OpenSession> sessions = new ConcurrentHashMap<>();
+    private final PatternRunner patternRunner;
+    private final Semaphore slots;
+    private final Duration idleTimeout;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ChatSessions(PatternRunner patternRunner, HttpProperties properties) {
+        this.patternRunner = patternRunner;
+        this.slots = new Semaphore(properties.maxChatSessions());
+        this.idleTimeout = properties.chatSessionIdleTimeout();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        long interval = Math.min(idleTimeout.toMillis(), MAX_SWEEP_INTERVAL.toMillis());
+        sweeper.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+    }
+
+    Optional<String> open() {
+        if (!slots.tryAcquire()) {
+            evictIdle();
+            if (!slots.tryAcquire()) {
+                return Optional.empty();
+            }
+        }
+        ChatReplies replies = new ChatReplies();
+        String id = UUID.randomUUID().toString();
+        // Each HTTP session is its own user, so what it has been served is remembered per session
+        String user = PatternRunner.DEMO_USER.getId() + ":" + id;
+        try {
+            sessions.put(id, new OpenSession(user, patternRunner.openChatSession(replies), replies));
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        return Optional.of(id);
+    }
+
+    Optional<OpenSession> find(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    boolean close(String id) {
+        OpenSession open = sessions.get(id);
+        return open != null && close(id, open);
+    }
+
+    /**
+     * Sends one message to the session and waits for its reply, after any turn already in
+     * progress on the session has finished.
+     */
+    String chat(OpenSession open, String content) throws InterruptedException {
+        open.turn.lockInterruptibly();
+        try {
+            if (open.closed) {
+                throw new IllegalStateException("Chat session was closed");
+            }
+            open.lastUsed = System.nanoTime();
+            return patternRunner.chatTurn(open.user, open.session, open.replies, content);
+        } finally {
+            open.lastUsed = System.nanoTime();
+            open.turn.unlock();
+        }
+    }
+
+    void evictIdle() {
+        long cutoff = System.nanoTime() - idleTimeout.toNanos();
+        sessions.forEach((id, open) -> {
+            if (!open.turn.isLocked() && open.lastUsed - cutoff < 0) {
+                close(id, open);
+            }
+        });
+    }
+
+    /**
+     * Removes the session and frees its slot, once even if closed concurrently; late replies are dropped.
+     */
+    private boolean close(String id, OpenSession open) {
+        if (!sessions.remove(id, open)) {
+            return false;
+        }
+        open.closed = true;
+        open.replies.close();
+        slots.release();
+        return true;
+    }
+
+    static final class OpenSession {
+
+        private final String user;
+        private final ChatSession session;
+        private final ChatReplies replies;
+        private final ReentrantLock turn = new ReentrantLock();
+        private volatile long lastUsed = System.nanoTime();
+        private volatile boolean closed;
+
+        OpenSession(String user, ChatSession session, ChatReplies replies) {
+            this.user = user;
+            this.session = session;
+            this.replies = replies;
+        }
+    }
+}
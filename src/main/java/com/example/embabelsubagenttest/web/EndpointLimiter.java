@@ -0,0 +1,30 @@
+package com.example.embabelsubagenttest.web;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per-endpoint concurrency limits for the HTTP API. Never blocks: a request over the
+ * limit is refused at once so the caller can back off.
+ */
+@Component
+class EndpointLimiter {
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final int maxConcurrent;
+
+    EndpointLimiter(HttpProperties properties) {
+        this.maxConcurrent = properties.maxConcurrentPerEndpoint();
+    }
+
+    boolean tryAcquire(String endpoint) {
+        return permits.computeIfAbsent(endpoint, key -> new Semaphore(maxConcurrent)).tryAcquire();
+    }
+
+    void release(String endpoint) {
+        permits.get(endpoint).release();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.embabelsubagenttest.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * HTTP front end settings, bound from {@code demo.http.*}.
+ *
+ * @param maxConcurrentPerEndpoint requests each endpoint serves at once before answering 429
+ * @param streamTimeout            how long an SSE stream may stay open
+ * @param maxChatSessions          open chat sessions kept before new ones are refused
+ * @param chatSessionIdleTimeout   how long a chat session may go without a message before it is closed
+ */
+@ConfigurationProperties("demo.http")
+public record HttpProperties(
+        @DefaultValue("64") int maxConcurrentPerEndpoint,
+        @DefaultValue("120s") Duration streamTimeout,
+        @DefaultValue("1000") int maxChatSessions,
+        @DefaultValue("30m") Duration chatSessionIdleTimeout
+) {
+}
@@ -0,0 +1,183 @@
+package com.example.embabelsubagenttest.cache;
+
+import com.example.embabelsubagenttest.runtime.LiveStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two caches over one {@link LocalSharedCacheTier} stand in for two nodes sharing a cluster tier.
+ */
+class TieredCacheTest {
+
+    private static final String CACHE = "test";
+    private static final Duration LEASE = Duration.ofMillis(300);
+
+    private final CacheProperties properties = new CacheProperties(
+            "local", 64, Map.of(), Duration.ofMinutes(10), Duration.ofHours(1), 1000, LEASE, Duration.ofMillis(5));
+    private final LocalSharedCacheTier shared = new LocalSharedCacheTier(properties);
+    private final TieredCache<String> nodeA = node();
+    private final TieredCache<String> nodeB = node();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentMissesAcrossNodesLoadEachKeyOnce() throws Exception {
+        int keys = 10;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            TieredCache<String> node = i % 2 == 0 ? nodeA : nodeB;
+            String key = "key-" + i % keys;
+            results.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return node.get(key, () -> {
+                    loads.incrementAndGet();
+                    sleep(20);
+                    return "value-" + key;
+                });
+            }, executor));
+        }
+        start.countDown();
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(10, TimeUnit.SECONDS)).isEqualTo("value-key-" + i % keys);
+        }
+        assertThat(loads.get()).isEqualTo(keys);
+    }
+
+    @Test
+    void invalidationOnOneNodeClearsTheOtherNodesNearCache() {
+        assertThat(nodeA.get("key", () -> "v1")).isEqualTo("v1");
+        assertThat(nodeB.get("key", () -> "unexpected")).isEqualTo("v1");
+
+        nodeA.invalidate("key");
+
+        assertThat(nodeB.getIfPresent("key")).isNull();
+        assertThat(nodeB.get("key", () -> "v2")).isEqualTo("v2");
+        assertThat(nodeA.get("key", () -> "unexpected")).isEqualTo("v2");
+    }
+
+    @Test
+    void overwritingAValueClearsTheOtherNodesNearCache() {
+        AtomicInteger invalidations = new AtomicInteger();
+        shared.onInvalidation(_ -> invalidations.incrementAndGet());
+        nodeA.put("key", "v1");
+        assertThat(nodeB.getIfPresent("key")).isEqualTo("v1");
+
+        nodeA.put("key", "v1");
+        assertThat(invalidations.get()).isZero();
+        nodeA.put("key", "v2");
+
+        assertThat(invalidations.get()).isEqualTo(1);
+        assertThat(nodeB.getIfPresent("key")).isEqualTo("v2");
+        assertThat(nodeA.getIfPresent("key")).isEqualTo("v2");
+    }
+
+    @Test
+    void invalidateAllClearsEveryKeyOnEveryNode() {
+        nodeA.put("one", "1");
+        nodeB.put("two", "2");
+        assertThat(nodeB.getIfPresent("one")).isEqualTo("1");
+
+        nodeB.invalidateAll();
+
+        assertThat(nodeA.getIfPresent("one")).isNull();
+        assertThat(nodeA.getIfPresent("two")).isNull();
+        assertThat(nodeB.getIfPresent("one")).isNull();
+    }
+
+    @Test
+    void loadsItselfOnceTheLoadingNodesLeaseExpires() {
+        // A node that took the lock and died without publishing or unlocking
+        assertThat(shared.tryLock(CACHE, "key", LEASE).isPresent()).isTrue();
+        AtomicInteger loads = new AtomicInteger();
+        long start = System.nanoTime();
+
+        String value = nodeA.get("key", () -> {
+            loads.incrementAndGet();
+            return "loaded";
+        });
+
+        assertThat(value).isEqualTo("loaded");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(System.nanoTime() - start).isGreaterThan(LEASE.toNanos());
+        assertThat(nodeB.getIfPresent("key")).isEqualTo("loaded");
+    }
+
+    @Test
+    void waitersSeeALoaderErrorInsteadOfBlocking() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> nodeA.get("key", () -> {
+            loading.countDown();
+            await(release);
+            throw new StackOverflowError("loader failed");
+        }), executor);
+        loading.await();
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(
+                () -> nodeA.get("key", () -> "unexpected"), executor);
+        sleep(50);
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        String late = waitFor(waiter);
+        // Either the waiter joined the failed load and saw its error, or it arrived after and loaded itself
+        assertThat(late == null || late.equals("unexpected")).isTrue();
+        assertThat(nodeA.get("key", () -> "recovered")).isNotNull();
+    }
+
+    private TieredCache<String> node() {
+        LiveStats stats = new LiveStats();
+        return new TieredCache<>(CACHE, String.class, properties.nearSize(), shared, properties,
+                stats.cache("near"), stats.cache("shared"));
+    }
+
+    /**
+     * The waiter's value, or null if it failed with the loader's error; fails the test if it is still blocked.
+     */
+    private static String waitFor(CompletableFuture<String> waiter) throws Exception {
+        try {
+            return waiter.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(StackOverflowError.class);
+            return null;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.embabelsubagenttest.llm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BranchContextTest {
+
+    // Enough tasks that branches queue behind each other on the pool's carrier threads
+    private static final int BRANCHES = 5_000;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void joinRollsBranchUsageUpIntoTheRoot() {
+        BranchContext root = BranchContext.root("request");
+
+        BranchContext.ForkUsage usage = root.propagate(() -> {
+            BranchContext.Fork fork = BranchContext.fork("fan-out", () -> null);
+            List<CompletableFuture<Void>> tasks = IntStream.range(0, BRANCHES)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(fork.branch("branch-" + i).bind(_ -> record(i % 8 + 1, 10)), executor))
+                    .toList();
+            tasks.forEach(CompletableFuture::join);
+            return fork.join();
+        }).get();
+
+        long expectedCalls = IntStream.range(0, BRANCHES).mapToLong(i -> i % 8 + 1).sum();
+        assertThat(usage.branches()).hasSize(BRANCHES);
+        assertThat(usage.total().llmCalls()).isEqualTo(expectedCalls);
+        assertThat(usage.total().llmTime().toNanos()).isEqualTo(expectedCalls * 10);
+        assertThat(root.usage().llmCalls()).isEqualTo(expectedCalls);
+        assertThat(root.usage().llmTime()).isEqualTo(usage.total().llmTime());
+        assertThat(root.joinedBranches()).hasSize(BRANCHES);
+        assertThat(root.joinedBranches().getFirst().branch()).isEqualTo("fan-out/branch-0");
+    }
+
+    @Test
+    void branchesSharingPooledThreadsKeepTheirOwnCounts() {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            BranchContext.Fork fork = BranchContext.fork("fan-out", () -> null);
+            List<BranchContext> branches = IntStream.range(0, BRANCHES).mapToObj(i -> fork.branch("branch-" + i)).toList();
+            List<CompletableFuture<Void>> tasks = IntStream.range(0, BRANCHES)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(branches.get(i).propagate(() -> record(i % 8 + 1, 1)), pool))
+                    .toList();
+            tasks.forEach(CompletableFuture::join);
+
+            for (int i = 0; i < BRANCHES; i++) {
+                assertThat(branches.get(i).usage().llmCalls()).isEqualTo(i % 8 + 1);
+            }
+            assertThat(fork.join().total().llmCalls()).isEqualTo(IntStream.range(0, BRANCHES).mapToLong(i -> i % 8 + 1).sum());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentSiblingsOnlySeeTheirOwnCalls() throws Exception {
+        BranchContext.Fork fork = BranchContext.fork("fan-out", () -> null);
+        List<BranchContext> branches = IntStream.range(0, BRANCHES).mapToObj(i -> fork.branch("branch-" + i)).toList();
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> tasks = IntStream.range(0, BRANCHES)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> branches.get(i).run(_ -> {
+                    await(start);
+                    record(i % 8 + 1, 1);
+                    return BranchContext.current().orElseThrow() == branches.get(i);
+                }), executor))
+                .toList();
+        start.countDown();
+
+        for (int i = 0; i < BRANCHES; i++) {
+            assertThat(tasks.get(i).get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(branches.get(i).usage().llmCalls()).isEqualTo(i % 8 + 1);
+        }
+        assertThat(BranchContext.current().isPresent()).isFalse();
+    }
+
+    @Test
+    void propagatedTaskRecordsOnItsBranchFromAnotherThread() {
+        BranchContext.Fork fork = BranchContext.fork("fan-out", () -> null);
+        BranchContext first = fork.branch("first");
+        BranchContext second = fork.branch("second");
+
+        CompletableFuture.supplyAsync(first.propagate(() -> record(3, 1)), executor).join();
+        CompletableFuture.supplyAsync(second.propagate(() -> record(1, 1)), executor).join();
+
+        assertThat(first.usage().llmCalls()).isEqualTo(3);
+        assertThat(second.usage().llmCalls()).isEqualTo(1);
+        assertThat(fork.join().total().llmCalls()).isEqualTo(4);
+    }
+
+    @Test
+    void nestedForksRollUpThroughEveryLevel() {
+        BranchContext request = BranchContext.fork("request", () -> null).branch("root");
+
+        request.run(_ -> {
+            BranchContext.Fork outer = BranchContext.fork("outer", () -> null);
+            BranchContext child = outer.branch("child");
+            child.run(__ -> {
+                BranchContext.Fork inner = BranchContext.fork("inner", () -> null);
+                inner.branch("a").run(___ -> record(2, 1));
+                inner.branch("b").run(___ -> record(3, 1));
+                return inner.join();
+            });
+            record(1, 1);
+            return outer.join();
+        });
+
+        assertThat(request.usage().llmCalls()).isEqualTo(6);
+        assertThat(request.joinedBranches().stream().map(BranchContext.Usage::branch).toList())
+                .containsExactly("outer/child", "inner/a", "inner/b");
+        assertThat(request.joinedBranches().getFirst().llmCalls()).isEqualTo(5);
+    }
+
+    @Test
+    void rootHasNoAiOfItsOwn() {
+        BranchContext root = BranchContext.root("request");
+
+        assertThatThrownBy(root::ai).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void joiningTwiceAddsOnceAndClosesTheFork() {
+        BranchContext request = BranchContext.fork("request", () -> null).branch("root");
+        BranchContext.Fork fork = request.run(_ -> BranchContext.fork("fan-out", () -> null));
+        fork.branch("only").run(_ -> record(2, 1));
+
+        fork.join();
+        fork.join();
+
+        assertThat(request.usage().llmCalls()).isEqualTo(2);
+        assertThatThrownBy(() -> fork.branch("late")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Void record(int calls, long nanosEach) {
+        for (int i = 0; i < calls; i++) {
+            BranchContext.record(nanosEach);
+        }
+        return null;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.example.embabelsubagenttest.service.NearDuplicateIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CassetteTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void refusesToReplaceAnExistingCassette() throws Exception {
+        Path file = Files.createTempDirectory("cassette").resolve("llm.jsonl");
+        try (Cassette cassette = Cassette.create(file, false, mapper)) {
+            cassette.append(new Cassette.Interaction("generate-joke", "0123456789abcdef", 1, "joke"));
+        }
+
+        assertThatThrownBy(() -> Cassette.create(file, false, mapper)).isInstanceOf(IllegalStateException.class);
+        assertThat(Cassette.load(file, mapper).size()).isEqualTo(1);
+
+        Cassette.create(file, true, mapper).close();
+        assertThat(Cassette.load(file, mapper).size()).isEqualTo(0);
+    }
+
+    @Test
+    void promptHashIgnoresTheAvoidList() {
+        String prompt = "Generate a dad joke";
+        String withAvoidList = prompt + NearDuplicateIndex.avoidInstructions(List.of("an earlier joke"));
+
+        assertThat(LlmCalls.hash("text", LlmCalls.stable(withAvoidList)))
+                .isEqualTo(LlmCalls.hash("text", LlmCalls.stable(prompt)));
+        assertThat(LlmCalls.hash("text", LlmCalls.stable(prompt + " about Java")))
+                .isNotEqualTo(LlmCalls.hash("text", LlmCalls.stable(prompt)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.embabelsubagenttest.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutputSpecTest {
+
+    record Answer(String label) {
+    }
+
+    private final OutputSpec<Answer> spec = new OutputSpec<>(Answer.class, "{}", "",
+            new ObjectMapper().readerFor(Answer.class));
+
+    @Test
+    void readsTheObjectInsideFencesAndProse() throws Exception {
+        assertThat(spec.read("Sure!\n```json\n{\"label\": \"joke\"}\n```\nHope that helps.").label()).isEqualTo("joke");
+    }
+
+    @Test
+    void skipsBracesInProseBeforeTheObject() throws Exception {
+        assertThat(spec.read("Using {your} template: {\"label\": \"fortune\"}").label()).isEqualTo("fortune");
+    }
+
+    @Test
+    void takesTheFirstOfSeveralObjects() throws Exception {
+        assertThat(spec.read("{\"label\": \"joke\"} and also {\"label\": \"fortune\"}").label()).isEqualTo("joke");
+    }
+
+    @Test
+    void rejectsATopLevelArray() {
+        assertThatThrownBy(() -> spec.read("[{\"label\": \"joke\"}, {\"label\": \"fortune\"}]"))
+                .isInstanceOf(JsonProcessingException.class)
+                .hasMessageContaining("array");
+    }
+
+    @Test
+    void rejectsAResponseWithoutJson() {
+        assertThatThrownBy(() -> spec.read("I am not sure what you mean."))
+                .isInstanceOf(JsonProcessingException.class);
+    }
+
+    @Test
+    void readsAndRemovesTheConfidence() throws Exception {
+        OutputSpec.Scored<Answer> scored = spec.readScored("{\"label\": \"joke\", \"confidence\": 1.7}");
+
+        assertThat(scored.value().label()).isEqualTo("joke");
+        assertThat(scored.confidence()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.embabelsubagenttest.remote;
+
+import com.example.embabelsubagenttest.runtime.AgentProcessLifecycleManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Stands in for the agent platform: "runs" an agent by applying {@code agent} to its input.
+ */
+class FakeProcesses extends AgentProcessLifecycleManager {
+
+    private final UnaryOperator<Object> agent;
+    final AtomicInteger runs = new AtomicInteger();
+
+    FakeProcesses(UnaryOperator<Object> agent) {
+        super(null, null, null, null, List.of());
+        this.agent = agent;
+    }
+
+    @Override
+    public <T> T runAndRelease(Class<?> agentType, Object input, Class<T> resultType) {
+        runs.incrementAndGet();
+        return resultType.cast(agent.apply(input));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalWorkQueueTest {
+
+    private static final Duration POLL = Duration.ofMillis(50);
+
+    static RemoteProperties properties(int queueCapacity) {
+        return new RemoteProperties(true, "local", Set.of(), Duration.ofSeconds(5), false, 1, POLL, queueCapacity);
+    }
+
+    static WorkItem item(String id) {
+        return new WorkItem(id, "com.example.Agent", "com.example.Input", "{}", "com.example.Result",
+                null, null, null, Instant.now().plusSeconds(60));
+    }
+
+    @Test
+    void resultGoesBackToTheSubmitter() throws Exception {
+        LocalWorkQueue queue = new LocalWorkQueue(properties(4));
+
+        CompletableFuture<WorkResult> pending = queue.submit(item("a"));
+        WorkItem polled = queue.poll(POLL);
+        queue.complete(WorkResult.success(polled.id(), "worker", "com.example.Result", "{}"));
+
+        assertThat(polled.id()).isEqualTo("a");
+        assertThat(pending.isDone()).isTrue();
+        assertThat(pending.join().worker()).isEqualTo("worker");
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    void cancelledItemsAreDroppedBeforeAWorkerSeesThem() throws Exception {
+        LocalWorkQueue queue = new LocalWorkQueue(properties(4));
+        CompletableFuture<WorkResult> abandoned = queue.submit(item("a"));
+        queue.submit(item("b"));
+
+        abandoned.cancel(true);
+
+        assertThat(queue.poll(POLL).id()).isEqualTo("b");
+        assertThat(queue.poll(POLL)).isNull();
+    }
+
+    @Test
+    void fullQueueFailsTheSubmission() {
+        LocalWorkQueue queue = new LocalWorkQueue(properties(1));
+        queue.submit(item("a"));
+
+        CompletableFuture<WorkResult> refused = queue.submit(item("b"));
+
+        assertThat(refused.isCompletedExceptionally()).isTrue();
+        assertThatThrownBy(refused::join).hasMessageContaining("Work queue is full");
+        assertThat(queue.depth()).isEqualTo(1);
+    }
+
+    @Test
+    void resultsNobodyWaitsForAreDropped() throws Exception {
+        LocalWorkQueue queue = new LocalWorkQueue(properties(4));
+        CompletableFuture<WorkResult> pending = queue.submit(item("a"));
+        WorkItem polled = queue.poll(POLL);
+        pending.cancel(true);
+
+        queue.complete(WorkResult.success(polled.id(), "worker", null, null));
+
+        assertThat(pending.isCancelled()).isTrue();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RemoteAgentExecutorTest {
+
+    record Input(String text) {
+    }
+
+    record Output(String text) {
+    }
+
+    static class Echo {
+    }
+
+    static class Local {
+    }
+
+    private static final UnaryOperator<Object> UPPER_CASE = input -> new Output(((Input) input).text().toUpperCase());
+
+    private WorkerNode worker;
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    private static RemoteProperties properties(Duration timeout, int queueCapacity) {
+        return new RemoteProperties(true, "local", Set.of("Echo"), timeout, true, 2, Duration.ofMillis(50), queueCapacity);
+    }
+
+    @Test
+    void dispatchedChildRoundTripsThroughTheEmbeddedQueue() {
+        RemoteProperties properties = properties(Duration.ofSeconds(5), 4);
+        LocalWorkQueue queue = new LocalWorkQueue(properties);
+        FakeProcesses processes = new FakeProcesses(UPPER_CASE);
+        worker = new WorkerNode(queue, processes, properties);
+        worker.start();
+        RemoteAgentExecutor executor = new RemoteAgentExecutor(processes, queue, properties);
+
+        Output output = executor.run(Echo.class, new Input("hi"), Output.class);
+
+        assertThat(output).isEqualTo(new Output("HI"));
+        assertThat(executor.stats().dispatched()).isEqualTo(1L);
+        assertThat(worker.stats().completed()).isEqualTo(1L);
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    void timeoutDropsTheQueuedItem() throws Exception {
+        RemoteProperties properties = properties(Duration.ofMillis(100), 4);
+        LocalWorkQueue queue = new LocalWorkQueue(properties);
+        RemoteAgentExecutor executor = new RemoteAgentExecutor(new FakeProcesses(UPPER_CASE), queue, properties);
+
+        assertThatThrownBy(() -> executor.run(Echo.class, new Input("hi"), Output.class))
+                .isInstanceOf(RemoteExecutionException.class)
+                .hasMessageContaining("timed out");
+
+        // A worker arriving late skips the abandoned item instead of running it
+        assertThat(queue.depth()).isEqualTo(1);
+        assertThat(queue.poll(Duration.ofMillis(50))).isNull();
+        assertThat(executor.stats().timedOut()).isEqualTo(1L);
+    }
+
+    @Test
+    void fullQueueFailsTheCall() {
+        RemoteProperties properties = properties(Duration.ofSeconds(5), 1);
+        LocalWorkQueue queue = new LocalWorkQueue(properties);
+        queue.submit(new WorkItem("waiting", Echo.class.getName(), Input.class.getName(), "{}", Output.class.getName(),
+                null, null, null, Instant.now().plusSeconds(60)));
+        RemoteAgentExecutor executor = new RemoteAgentExecutor(new FakeProcesses(UPPER_CASE), queue, properties);
+
+        assertThatThrownBy(() -> executor.run(Echo.class, new Input("hi"), Output.class))
+                .isInstanceOf(RemoteExecutionException.class)
+                .hasMessageContaining("Work queue is full");
+        assertThat(executor.stats().failed()).isEqualTo(1L);
+    }
+
+    @Test
+    void childWithoutAResultFailsTheCall() {
+        RemoteProperties properties = properties(Duration.ofSeconds(5), 4);
+        LocalWorkQueue queue = new LocalWorkQueue(properties);
+        FakeProcesses processes = new FakeProcesses(_ -> null);
+        worker = new WorkerNode(queue, processes, properties);
+        worker.start();
+        RemoteAgentExecutor executor = new RemoteAgentExecutor(processes, queue, properties);
+
+        assertThatThrownBy(() -> executor.run(Echo.class, new Input("hi"), Output.class))
+                .isInstanceOf(RemoteExecutionException.class)
+                .hasMessageContaining("Echo finished on")
+                .hasMessageContaining("without a Output");
+        assertThatThrownBy(() -> executor.run(Local.class, new Input("hi"), Output.class))
+                .isInstanceOf(RemoteExecutionException.class)
+                .hasMessageContaining("Local finished locally without a Output");
+    }
+
+    @Test
+    void agentsNotListedRunLocally() {
+        RemoteProperties properties = properties(Duration.ofSeconds(5), 4);
+        LocalWorkQueue queue = new LocalWorkQueue(properties);
+        FakeProcesses processes = new FakeProcesses(UPPER_CASE);
+        RemoteAgentExecutor executor = new RemoteAgentExecutor(processes, queue, properties);
+
+        assertThat(executor.run(Local.class, new Input("hi"), Output.class)).isEqualTo(new Output("HI"));
+        assertThat(executor.stats().dispatched()).isZero();
+        assertThat(processes.runs.get()).isEqualTo(1);
+    }
+}
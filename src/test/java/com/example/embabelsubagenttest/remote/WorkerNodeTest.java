@@ -0,0 +1,77 @@
+package com.example.embabelsubagenttest.remote;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkerNodeTest {
+
+    record Input(String text) {
+    }
+
+    record Output(String text) {
+    }
+
+    static class Echo {
+    }
+
+    static class Other {
+    }
+
+    private final WireFormat wire = new WireFormat();
+    private final FakeProcesses processes = new FakeProcesses(input -> new Output(((Input) input).text().toUpperCase()));
+    private final WorkerNode worker = new WorkerNode(new LocalWorkQueue(properties()), processes, properties());
+
+    private static RemoteProperties properties() {
+        return new RemoteProperties(true, "local", Set.of("Echo"), Duration.ofSeconds(5), true, 1, Duration.ofMillis(50), 4);
+    }
+
+    private WorkItem item(Class<?> agentType, Instant deadline) {
+        return new WorkItem("id", agentType.getName(), Input.class.getName(), wire.encode(new Input("hi")),
+                Output.class.getName(), null, null, null, deadline);
+    }
+
+    @Test
+    void runsAnAllowedAgentAndEncodesItsResult() {
+        WorkResult result = worker.execute(item(Echo.class, Instant.now().plusSeconds(60)));
+
+        assertThat(result.failed()).isFalse();
+        assertThat(wire.decode(result.resultType(), result.result(), Output.class)).isEqualTo(new Output("HI"));
+        assertThat(worker.stats().completed()).isEqualTo(1L);
+    }
+
+    @Test
+    void rejectsAgentsOutsideItsAllowList() {
+        WorkResult result = worker.execute(item(Other.class, Instant.now().plusSeconds(60)));
+
+        assertThat(result.failed()).isTrue();
+        assertThat(result.error()).contains("Other is not in this worker's demo.remote.agents");
+        assertThat(processes.runs.get()).isZero();
+        assertThat(worker.stats().failed()).isEqualTo(1L);
+    }
+
+    @Test
+    void refusesTypesFromOutsideTheApplication() {
+        WorkItem item = new WorkItem("id", "java.lang.Runtime", Input.class.getName(), "{}", Output.class.getName(),
+                null, null, null, Instant.now().plusSeconds(60));
+
+        WorkResult result = worker.execute(item);
+
+        assertThat(result.failed()).isTrue();
+        assertThat(result.error()).contains("Refusing to load java.lang.Runtime");
+        assertThat(processes.runs.get()).isZero();
+    }
+
+    @Test
+    void dropsItemsWhoseParentStoppedWaiting() {
+        WorkResult result = worker.execute(item(Echo.class, Instant.now().minusSeconds(1)));
+
+        assertThat(result.failed()).isTrue();
+        assertThat(result.error()).contains("expired");
+        assertThat(processes.runs.get()).isZero();
+    }
+}
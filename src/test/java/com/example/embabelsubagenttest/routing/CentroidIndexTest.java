@@ -0,0 +1,86 @@
+package com.example.embabelsubagenttest.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CentroidIndexTest {
+
+    private static float[] vector(String text) {
+        return NgramVectorizer.vectorize(text);
+    }
+
+    private static CentroidIndex index(Map<String, List<String>> examples) {
+        Map<String, List<float[]>> vectors = new LinkedHashMap<>();
+        examples.forEach((label, texts) -> vectors.put(label, texts.stream().map(CentroidIndexTest::vector).toList()));
+        return new CentroidIndex(vectors);
+    }
+
+    private final CentroidIndex index = index(Map.of(
+            "JOKE", List.of("tell me a joke", "tell me a funny joke"),
+            "BANANA", List.of("draw a banana", "show me banana art")));
+
+    @Test
+    void nearestPicksTheClosestCentroidAndReportsItsLead() {
+        float[] input = vector("tell me a joke please");
+        CentroidIndex.Match match = index.nearest(input);
+
+        assertThat(match.label()).isEqualTo("JOKE");
+        double joke = NgramVectorizer.cosine(input, centroid("tell me a joke", "tell me a funny joke"));
+        double banana = NgramVectorizer.cosine(input, centroid("draw a banana", "show me banana art"));
+        assertThat(match.similarity()).isCloseTo(joke, within(1e-5));
+        assertThat(match.margin()).isCloseTo(joke - banana, within(1e-5));
+    }
+
+    @Test
+    void singleLabelMarginIsItsSimilarity() {
+        CentroidIndex single = index(Map.of("JOKE", List.of("tell me a joke")));
+
+        CentroidIndex.Match match = single.nearest(vector("a joke"));
+
+        assertThat(match.label()).isEqualTo("JOKE");
+        assertThat(match.margin()).isEqualTo(match.similarity());
+    }
+
+    @Test
+    void leaveOneOutScoresAgainstTheOtherExamplesOnly() {
+        float[] seed = vector("tell me a joke");
+
+        CentroidIndex.Match included = index.nearest(seed);
+        CentroidIndex.Match leftOut = index.nearest(seed, "JOKE");
+
+        // Without the seed itself, the JOKE centroid is just the other example
+        double expected = NgramVectorizer.cosine(seed, vector("tell me a funny joke"));
+        assertThat(leftOut.label()).isEqualTo("JOKE");
+        assertThat(leftOut.similarity()).isCloseTo(expected, within(1e-5));
+        assertThat(leftOut.similarity()).isLessThan(included.similarity());
+    }
+
+    @Test
+    void leavingOutTheOnlyExampleEmptiesItsCentroid() {
+        CentroidIndex sparse = index(Map.of(
+                "JOKE", List.of("tell me a joke"),
+                "BANANA", List.of("draw a banana", "tell me about a banana")));
+
+        CentroidIndex.Match leftOut = sparse.nearest(vector("tell me a joke"), "JOKE");
+
+        assertThat(leftOut.label()).isEqualTo("BANANA");
+    }
+
+    private static float[] centroid(String... texts) {
+        float[] sum = new float[NgramVectorizer.DIMENSIONS];
+        for (String text : texts) {
+            float[] v = vector(text);
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += v[i];
+            }
+        }
+        NgramVectorizer.normalize(sum);
+        return sum;
+    }
+}
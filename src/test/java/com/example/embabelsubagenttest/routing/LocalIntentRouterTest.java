@@ -0,0 +1,129 @@
+package com.example.embabelsubagenttest.routing;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalIntentRouterTest {
+
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = TestIntent.Joke.class, name = "JOKE"),
+            @JsonSubTypes.Type(value = TestIntent.Banana.class, name = "BANANA"),
+            @JsonSubTypes.Type(value = TestIntent.Both.class, name = "BOTH")
+    })
+    sealed interface TestIntent {
+        record Joke(String text) implements TestIntent {
+        }
+
+        record Banana(String text) implements TestIntent {
+        }
+
+        record Both() implements TestIntent {
+        }
+    }
+
+    // Seeds are in src/test/resources/routing/router-test.txt
+    static final Route<TestIntent> ROUTE = Route.of("router-test", TestIntent.class, "router-test")
+            .direct(TestIntent.Joke.class, TestIntent.Joke::new)
+            .direct(TestIntent.Banana.class, TestIntent.Banana::new);
+
+    private LocalIntentRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new LocalIntentRouter(new RoutingProperties(true, 0.1, 0.25, Map.of()));
+        router.register(ROUTE);
+    }
+
+    @Test
+    void answersAClearInputLocally() {
+        AtomicInteger llmCalls = new AtomicInteger();
+
+        TestIntent intent = router.route(ROUTE, "tell me a dad joke", () -> {
+            llmCalls.incrementAndGet();
+            return new TestIntent.Both();
+        });
+
+        assertThat(intent).isEqualTo(new TestIntent.Joke("tell me a dad joke"));
+        assertThat(llmCalls.get()).isZero();
+        assertThat(router.stats().getFirst().local()).isEqualTo(1L);
+    }
+
+    @Test
+    void leavesLabelsThatAreNotDirectToTheLlm() {
+        TestIntent intent = router.route(ROUTE, "draw a banana and tell me a joke", TestIntent.Both::new);
+
+        assertThat(intent).isEqualTo(new TestIntent.Both());
+        LocalIntentRouter.RouteStats stats = router.stats().getFirst();
+        assertThat(stats.llmOnlyLabel()).isEqualTo(1L);
+        assertThat(stats.fallbackAgreed()).isEqualTo(1L);
+    }
+
+    @Test
+    void disabledRoutingAlwaysAsksTheLlm() {
+        LocalIntentRouter disabled = new LocalIntentRouter(new RoutingProperties(false, 0.1, 0.25, Map.of()));
+
+        assertThat(disabled.route(ROUTE, "tell me a dad joke", TestIntent.Both::new)).isEqualTo(new TestIntent.Both());
+    }
+
+    @Test
+    void routesMustBeRegistered() {
+        Route<TestIntent> other = Route.of("unregistered", TestIntent.class, "router-test");
+
+        assertThatThrownBy(() -> router.route(other, "tell me a joke", TestIntent.Both::new))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register(Route.of("router-test", TestIntent.class, "router-test")))
+                .isInstanceOf(IllegalStateException.class);
+        router.register(ROUTE);
+        assertThat(router.routeNames()).containsExactly("router-test");
+    }
+
+    @Test
+    void leaveOneOutCalibrationCoversEverySeed() {
+        LocalIntentRouter.Calibration calibration = router.calibrate("router-test", List.of(), 0.9);
+
+        assertThat(calibration.leaveOneOut()).isTrue();
+        assertThat(calibration.examples()).isEqualTo(11);
+        assertThat(calibration.rows()).hasSize(11);
+        double previousCoverage = 1;
+        for (LocalIntentRouter.Calibration.Row row : calibration.rows()) {
+            assertThat(row.coverage()).isLessThanOrEqualTo(previousCoverage);
+            assertThat(row.precision()).isLessThanOrEqualTo(1.0);
+            previousCoverage = row.coverage();
+        }
+        assertThat(calibration.rows().getFirst().margin()).isEqualTo(0.0);
+        assertThat(calibration.rows().getFirst().coverage()).isGreaterThan(0.0);
+    }
+
+    @Test
+    void heldOutCalibrationSuggestsTheSmallestPreciseMargin() {
+        List<LocalIntentRouter.Example> heldOut = List.of(
+                new LocalIntentRouter.Example("JOKE", "tell me a joke"),
+                new LocalIntentRouter.Example("BANANA", "draw a banana"));
+
+        LocalIntentRouter.Calibration calibration = router.calibrate("router-test", heldOut, 1.0);
+
+        assertThat(calibration.leaveOneOut()).isFalse();
+        assertThat(calibration.examples()).isEqualTo(2);
+        assertThat(calibration.suggestedMargin()).isEqualTo(0.0);
+        assertThat(calibration.rows().getFirst().coverage()).isEqualTo(1.0);
+        assertThat(calibration.rows().getFirst().precision()).isEqualTo(1.0);
+    }
+
+    @Test
+    void calibrationRejectsUnknownRoutesAndLabels() {
+        assertThatThrownBy(() -> router.calibrate("nope", List.of(), 0.9))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("router-test");
+        assertThatThrownBy(() -> router.calibrate("router-test",
+                List.of(new LocalIntentRouter.Example("FORTUNE", "a fortune")), 0.9))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.embabelsubagenttest.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class NgramVectorizerTest {
+
+    @Test
+    void vectorsAreUnitLengthAndStable() {
+        float[] vector = NgramVectorizer.vectorize("Tell me a joke");
+
+        assertThat(vector.length).isEqualTo(NgramVectorizer.DIMENSIONS);
+        assertThat(NgramVectorizer.cosine(vector, vector)).isCloseTo(1.0, within(1e-5));
+        assertThat(Arrays.equals(vector, NgramVectorizer.vectorize("Tell me a joke"))).isTrue();
+    }
+
+    @Test
+    void ignoresCaseAndPunctuationBetweenWords() {
+        assertThat(Arrays.equals(NgramVectorizer.vectorize("Tell me a JOKE"),
+                NgramVectorizer.vectorize("tell me -- a joke"))).isTrue();
+    }
+
+    @Test
+    void inflectionsStayCloserThanUnrelatedText() {
+        float[] joke = NgramVectorizer.vectorize("tell me a joke");
+
+        double inflected = NgramVectorizer.cosine(joke, NgramVectorizer.vectorize("tell me jokes"));
+        double unrelated = NgramVectorizer.cosine(joke, NgramVectorizer.vectorize("where is the banana stored"));
+
+        assertThat(inflected).isGreaterThan(unrelated);
+    }
+
+    @Test
+    void joinedClausesAndQuestionsChangeTheVector() {
+        float[] single = NgramVectorizer.vectorize("draw a banana");
+
+        assertThat(NgramVectorizer.cosine(single, NgramVectorizer.vectorize("draw a banana, a joke")))
+                .isLessThan(NgramVectorizer.cosine(single, NgramVectorizer.vectorize("draw a banana joke")));
+        assertThat(NgramVectorizer.cosine(single, NgramVectorizer.vectorize("draw a banana?"))).isLessThan(0.999);
+    }
+
+    @Test
+    void normalizeLeavesTheZeroVectorAlone() {
+        float[] zero = new float[8];
+
+        NgramVectorizer.normalize(zero);
+
+        assertThat(Arrays.equals(zero, new float[8])).isTrue();
+    }
+}
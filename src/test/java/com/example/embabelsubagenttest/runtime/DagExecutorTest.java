@@ -0,0 +1,60 @@
+package com.example.embabelsubagenttest.runtime;
+
+import com.example.embabelsubagenttest.runtime.DagExecutor.Edge;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DagExecutorTest {
+
+    @Test
+    void independentNodesHaveNoUpstreamAndKeepTheirOrder() {
+        List<List<Integer>> upstream = DagExecutor.upstreamOf(3, List.of());
+
+        assertThat(upstream).containsExactly(List.of(), List.of(), List.of());
+        assertThat(DagExecutor.topologicalOrder(upstream)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void chainRunsInEdgeOrder() {
+        List<List<Integer>> upstream = DagExecutor.upstreamOf(3, List.of(new Edge(2, 1), new Edge(1, 0)));
+
+        assertThat(upstream).containsExactly(List.of(1), List.of(2), List.of());
+        assertThat(DagExecutor.topologicalOrder(upstream)).containsExactly(2, 1, 0);
+    }
+
+    @Test
+    void diamondJoinsBothBranches() {
+        List<List<Integer>> upstream = DagExecutor.upstreamOf(4,
+                List.of(new Edge(0, 1), new Edge(0, 2), new Edge(1, 3), new Edge(2, 3), new Edge(1, 3)));
+
+        assertThat(upstream).containsExactly(List.of(), List.of(0), List.of(0), List.of(1, 2));
+        assertThat(DagExecutor.topologicalOrder(upstream)).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void cycleFallsBackToForwardEdges() {
+        List<List<Integer>> upstream = DagExecutor.upstreamOf(3,
+                List.of(new Edge(0, 1), new Edge(1, 2), new Edge(2, 0)));
+
+        assertThat(upstream).containsExactly(List.of(), List.of(0), List.of(1));
+        assertThat(DagExecutor.topologicalOrder(upstream)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void topologicalOrderLeavesOutNodesOnACycle() {
+        List<List<Integer>> cyclic = List.of(List.of(), List.of(0, 2), List.of(1));
+
+        assertThat(DagExecutor.topologicalOrder(cyclic)).containsExactly(0);
+    }
+
+    @Test
+    void dropsOutOfRangeEdgesAndSelfLoops() {
+        List<List<Integer>> upstream = DagExecutor.upstreamOf(2,
+                List.of(new Edge(-1, 0), new Edge(0, 2), new Edge(5, 1), new Edge(1, 1), new Edge(0, 1)));
+
+        assertThat(upstream).containsExactly(List.of(), List.of(0));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.embabelsubagenttest.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreakerProperties(
+            true, 4, 2, 0.5, 0.5, Duration.ofSeconds(15), OPEN_DURATION, 1, Duration.ofSeconds(60)), now::get);
+
+    @Test
+    void opensOnFailuresAndProbesAfterOpenDuration() {
+        fail();
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        now.addAndGet(OPEN_DURATION.toNanos());
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(probe).isNotNull();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        probe.onSuccess(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void lateOutcomeFromBeforeOpeningIsNotCountedAsProbe() {
+        CircuitBreaker.Permit stale = breaker.tryAcquire();
+        fail();
+        fail();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // Admitted while CLOSED, finishing during the half-open probe: must neither close the breaker nor free a probe slot
+        stale.onSuccess(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        probe.onFailure(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void lateFailureFromEarlierGenerationDoesNotReopen() {
+        CircuitBreaker.Permit stale = breaker.tryAcquire();
+        fail();
+        fail();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        breaker.tryAcquire().onSuccess(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        stale.onFailure(0);
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void permitCountsOnce() {
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        permit.onFailure(0);
+        permit.onFailure(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void releasedPermitsDoNotDiluteTheFailureRate() {
+        fail();
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquire().release();
+        }
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void releasedProbeFreesItsSlotWithoutDeciding() {
+        fail();
+        fail();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        breaker.tryAcquire().release();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.tryAcquire().onSuccess(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void fail() {
+        breaker.tryAcquire().onFailure(0);
+    }
+}